@@ -2,12 +2,19 @@ package net.darmo_creations.infinitecity;
 
 import net.darmo_creations.infinitecity.blocks.*;
 import net.darmo_creations.infinitecity.chunk_gen.*;
+import net.darmo_creations.infinitecity.commands.*;
+import net.darmo_creations.infinitecity.server.*;
 import net.fabricmc.api.*;
+import net.fabricmc.fabric.api.event.lifecycle.v1.*;
+import net.kyrptonaught.customportalapi.*;
 import net.kyrptonaught.customportalapi.api.*;
 import net.kyrptonaught.customportalapi.portal.*;
 import net.minecraft.block.*;
 import net.minecraft.registry.*;
+import net.minecraft.server.*;
+import net.minecraft.server.world.*;
 import net.minecraft.util.*;
+import org.slf4j.*;
 
 /**
  * This mod’s main initializer.
@@ -17,17 +24,58 @@ public class InfiniteCity implements ModInitializer {
    * This mod’s ID.
    */
   public static final String MOD_ID = "infinitecity";
+  /**
+   * This mod’s logger.
+   */
+  public static final Logger LOGGER = LoggerFactory.getLogger(MOD_ID);
+  /**
+   * ID of the dimension the city portal leads to.
+   */
+  private static final Identifier PORTAL_DESTINATION = new Identifier(MOD_ID, "city");
 
   @Override
   public void onInitialize() {
     Registry.register(Registries.CHUNK_GENERATOR, new Identifier(MOD_ID, "city"), InfiniteCityChunkGenerator.CODEC);
     ModBlocks.init();
+    ModCommands.init();
+    ServerConfig.load();
+    ChunkPregenerator.init();
+    GenerationScheduler.init();
+    ChunkPrefetcher.init();
+    PortalPrewarmer.init();
+    LazySections.init();
+    ChunkTemplateStore.init();
+    ChunkPortionOverrides.init();
+    CityLayoutSync.init();
+    SectionWindows.init();
     CustomPortalBuilder.beginPortal()
         .frameBlock(Blocks.LIGHT_GRAY_CONCRETE)
         .customIgnitionSource(PortalIgnitionSource.FIRE)
         .onlyLightInOverworld()
-        .destDimID(new Identifier(MOD_ID, "city"))
+        .destDimID(PORTAL_DESTINATION)
         .tintColor(100, 100, 100)
         .registerPortal();
+    final PortalLink link = CustomPortalApiRegistry.getPortalLinkFromBase(Blocks.LIGHT_GRAY_CONCRETE);
+    final var defaultSearchYBottom = link.portalSearchYBottom;
+    final var defaultSearchYTop = link.portalSearchYTop;
+    ServerLifecycleEvents.SERVER_STARTED.register(server -> {
+      link.portalSearchYBottom = defaultSearchYBottom;
+      link.portalSearchYTop = defaultSearchYTop;
+      setPortalSearchRange(server, link);
+    });
+  }
+
+  /**
+   * Restrict the search for and creation of portals to the floor that exists in every column of the city
+   * the given portal leads to, as defined by the layers of that dimension’s generator.
+   */
+  private static void setPortalSearchRange(MinecraftServer server, PortalLink link) {
+    for (final ServerWorld world : server.getWorlds())
+      if (world.getRegistryKey().getValue().equals(PORTAL_DESTINATION)
+          && world.getChunkManager().getChunkGenerator() instanceof InfiniteCityChunkGenerator generator) {
+        final CityFloors floors = generator.getFloors(world.getSeed());
+        link.portalSearchYBottom = floors.getUniversalFloorY();
+        link.portalSearchYTop = floors.getUniversalFloorY() + floors.getUniversalFloorHeadroom() - 1;
+      }
   }
 }
@@ -15,13 +15,26 @@ import net.minecraft.world.*;
 public abstract class AbstractPostBlock extends PillarBlock implements Waterloggable {
   public static final BooleanProperty WATERLOGGED = Properties.WATERLOGGED;
 
+  /**
+   * The shape of each axis, indexed by {@link Direction.Axis#ordinal()}.
+   */
+  private final VoxelShape[] shapes = new VoxelShape[Direction.Axis.values().length];
+
   public AbstractPostBlock(Settings settings) {
     super(settings);
     this.setDefaultState(this.getStateManager().getDefaultState()
         .with(AXIS, Direction.Axis.Y)
         .with(WATERLOGGED, false));
+    for (final Direction.Axis axis : Direction.Axis.values())
+      this.shapes[axis.ordinal()] = this.getShape(axis);
   }
 
+  /**
+   * Return the shape of this post along the given axis.
+   * Only called once per axis, when the block is created.
+   */
+  protected abstract VoxelShape getShape(Direction.Axis axis);
+
   @Override
   protected void appendProperties(StateManager.Builder<Block, BlockState> builder) {
     super.appendProperties(builder.add(WATERLOGGED));
@@ -29,7 +42,21 @@ public abstract class AbstractPostBlock extends PillarBlock implements Waterlogg
 
   @SuppressWarnings("deprecation")
   @Override
-  public abstract VoxelShape getOutlineShape(BlockState state, BlockView world, BlockPos pos, ShapeContext context);
+  public VoxelShape getOutlineShape(BlockState state, BlockView world, BlockPos pos, ShapeContext context) {
+    return this.shapes[state.get(AXIS).ordinal()];
+  }
+
+  @SuppressWarnings("deprecation")
+  @Override
+  public VoxelShape getCullingShape(BlockState state, BlockView world, BlockPos pos) {
+    return this.shapes[state.get(AXIS).ordinal()];
+  }
+
+  @SuppressWarnings("deprecation")
+  @Override
+  public boolean hasSidedTransparency(BlockState state) {
+    return true;
+  }
 
   @Override
   public BlockState getPlacementState(ItemPlacementContext ctx) {
@@ -1,5 +1,6 @@
 package net.darmo_creations.infinitecity.blocks;
 
+import it.unimi.dsi.fastutil.objects.*;
 import net.minecraft.block.*;
 import net.minecraft.entity.*;
 import net.minecraft.entity.player.*;
@@ -14,8 +15,6 @@ import net.minecraft.util.shape.*;
 import net.minecraft.world.*;
 import org.jetbrains.annotations.*;
 
-import java.util.*;
-
 /**
  * A block composed of simple 8x8x8 pixels corners.
  */
@@ -31,6 +30,9 @@ public class CompositeBlock extends Block implements Waterloggable {
   public static final BooleanProperty SOUTH_EAST_BOTTOM = BooleanProperty.of("south_east_bottom");
   public static final BooleanProperty SOUTH_WEST_BOTTOM = BooleanProperty.of("south_west_bottom");
 
+  /**
+   * The corner properties, indexed as in {@link CompositeCorners}.
+   */
   public static final BooleanProperty[] CORNER_PROPERTIES = {
       NORTH_EAST_TOP, NORTH_WEST_TOP, NORTH_EAST_BOTTOM, NORTH_WEST_BOTTOM,
       SOUTH_EAST_TOP, SOUTH_WEST_TOP, SOUTH_EAST_BOTTOM, SOUTH_WEST_BOTTOM,
@@ -45,13 +47,55 @@ public class CompositeBlock extends Block implements Waterloggable {
   private static final VoxelShape SOUTH_EAST_TOP_SHAPE = createCuboidShape(8, 8, 8, 16, 16, 16);
   private static final VoxelShape SOUTH_EAST_BOTTOM_SHAPE = createCuboidShape(8, 0, 8, 16, 8, 16);
 
+  /**
+   * Shape of each corner, in the same order as {@link #CORNER_PROPERTIES}.
+   */
+  private static final VoxelShape[] CORNER_SHAPES = {
+      NORTH_EAST_TOP_SHAPE, NORTH_WEST_TOP_SHAPE, NORTH_EAST_BOTTOM_SHAPE, NORTH_WEST_BOTTOM_SHAPE,
+      SOUTH_EAST_TOP_SHAPE, SOUTH_WEST_TOP_SHAPE, SOUTH_EAST_BOTTOM_SHAPE, SOUTH_WEST_BOTTOM_SHAPE,
+  };
+  /**
+   * The union of the shapes of the filled corners, indexed by corners mask (see {@link #getCornersMask(BlockState)}).
+   */
+  private static final VoxelShape[] SHAPES = new VoxelShape[CompositeCorners.FULL_MASK + 1];
+  /**
+   * Bit set in {@link #statesData} values of waterlogged states.
+   */
+  private static final int WATERLOGGED_BIT = CompositeCorners.FULL_MASK + 1;
+
+  static {
+    for (int mask = 0; mask <= CompositeCorners.FULL_MASK; mask++) {
+      VoxelShape shape = VoxelShapes.empty();
+      for (int i = 0; i < CORNER_SHAPES.length; i++)
+        if ((mask & (1 << i)) != 0)
+          shape = VoxelShapes.union(shape, CORNER_SHAPES[i]);
+      SHAPES[mask] = mask == CompositeCorners.FULL_MASK ? VoxelShapes.fullCube() : shape.simplify();
+    }
+  }
+
+  /**
+   * The corners mask of each state of this block, with {@link #WATERLOGGED_BIT} set if it is waterlogged.
+   */
+  private final Reference2IntMap<BlockState> statesData = new Reference2IntOpenHashMap<>();
+  /**
+   * The states of this block, indexed by their {@link #statesData} value.
+   */
+  private final BlockState[] states = new BlockState[2 * WATERLOGGED_BIT];
+
+  /**
+   * The state that replaces states of this block with all their corners filled.
+   */
+  private final BlockState baseBlockState;
+
   /**
    * Creates a corner block for the given color.
    *
-   * @param settings Block’s settings.
+   * @param baseBlockState The full block this block is made of.
+   * @param settings       Block’s settings.
    */
-  public CompositeBlock(Settings settings) {
+  public CompositeBlock(BlockState baseBlockState, Settings settings) {
     super(settings);
+    this.baseBlockState = baseBlockState;
     this.setDefaultState(this.getStateManager().getDefaultState()
         .with(NORTH_EAST_TOP, false)
         .with(NORTH_WEST_TOP, false)
@@ -62,15 +106,57 @@ public class CompositeBlock extends Block implements Waterloggable {
         .with(SOUTH_EAST_BOTTOM, false)
         .with(SOUTH_WEST_BOTTOM, false)
         .with(WATERLOGGED, false));
+    for (final BlockState state : this.getStateManager().getStates()) {
+      int data = state.get(WATERLOGGED) ? WATERLOGGED_BIT : 0;
+      for (int i = 0; i < CORNER_PROPERTIES.length; i++)
+        if (state.get(CORNER_PROPERTIES[i]))
+          data |= CompositeCorners.bit(i);
+      this.statesData.put(state, data);
+      this.states[data] = state;
+    }
+  }
+
+  /**
+   * Return the mask of the filled corners of the given state.
+   * Bit {@code i} is set if the corner of {@code CORNER_PROPERTIES[i]} is filled.
+   *
+   * @param state A state of this block.
+   * @return The state’s corners mask, between 0 and {@link CompositeCorners#FULL_MASK}.
+   */
+  public int getCornersMask(final BlockState state) {
+    return this.statesData.getInt(state) & CompositeCorners.FULL_MASK;
+  }
+
+  /**
+   * Return the state of this block with the given corners, waterlogged like the given state.
+   *
+   * @param state A state of this block.
+   * @param mask  The corners mask of the returned state.
+   * @return The state with the given corners.
+   */
+  public BlockState withCornersMask(final BlockState state, final int mask) {
+    return this.states[(this.statesData.getInt(state) & WATERLOGGED_BIT) | mask];
+  }
+
+  /**
+   * Return the base block state if all corners of the given state are filled, the state itself otherwise.
+   * Full composite blocks render and cull as plain cubes and states are shared with the base block,
+   * which keeps chunk palettes smaller.
+   *
+   * @param state A state of this block.
+   * @return The state to use in the world.
+   */
+  public BlockState getCollapsedState(final BlockState state) {
+    return this.isFullBlock(state) ? this.baseBlockState : state;
   }
 
   @SuppressWarnings("BooleanMethodIsAlwaysInverted")
   public boolean isFullBlock(final BlockState state) {
-    return Arrays.stream(CORNER_PROPERTIES).allMatch(state::get); // All true
+    return this.getCornersMask(state) == CompositeCorners.FULL_MASK;
   }
 
   public boolean isEmptyBlock(final BlockState state) {
-    return Arrays.stream(CORNER_PROPERTIES).noneMatch(state::get); // None true
+    return this.getCornersMask(state) == 0;
   }
 
   @Override
@@ -83,16 +169,19 @@ public class CompositeBlock extends Block implements Waterloggable {
   @SuppressWarnings("deprecation")
   @Override
   public VoxelShape getOutlineShape(BlockState state, BlockView world, BlockPos pos, ShapeContext context) {
-    return VoxelShapes.union(
-        state.get(NORTH_WEST_TOP) ? NORTH_WEST_TOP_SHAPE : VoxelShapes.empty(),
-        state.get(NORTH_WEST_BOTTOM) ? NORTH_WEST_BOTTOM_SHAPE : VoxelShapes.empty(),
-        state.get(NORTH_EAST_TOP) ? NORTH_EAST_TOP_SHAPE : VoxelShapes.empty(),
-        state.get(NORTH_EAST_BOTTOM) ? NORTH_EAST_BOTTOM_SHAPE : VoxelShapes.empty(),
-        state.get(SOUTH_WEST_TOP) ? SOUTH_WEST_TOP_SHAPE : VoxelShapes.empty(),
-        state.get(SOUTH_WEST_BOTTOM) ? SOUTH_WEST_BOTTOM_SHAPE : VoxelShapes.empty(),
-        state.get(SOUTH_EAST_TOP) ? SOUTH_EAST_TOP_SHAPE : VoxelShapes.empty(),
-        state.get(SOUTH_EAST_BOTTOM) ? SOUTH_EAST_BOTTOM_SHAPE : VoxelShapes.empty()
-    );
+    return SHAPES[this.getCornersMask(state)];
+  }
+
+  @SuppressWarnings("deprecation")
+  @Override
+  public VoxelShape getCollisionShape(BlockState state, BlockView world, BlockPos pos, ShapeContext context) {
+    return this.collidable ? SHAPES[this.getCornersMask(state)] : VoxelShapes.empty();
+  }
+
+  @SuppressWarnings("deprecation")
+  @Override
+  public VoxelShape getCullingShape(BlockState state, BlockView world, BlockPos pos) {
+    return SHAPES[this.getCornersMask(state)];
   }
 
   @SuppressWarnings("deprecation")
@@ -126,7 +215,7 @@ public class CompositeBlock extends Block implements Waterloggable {
     BlockState blockState = ctx.getWorld().getBlockState(blockPos);
     BlockState newState = this.getNewState(blockState.isOf(this) ? blockState : this.getDefaultState(), ctx);
     if (this.isFullBlock(newState)) {
-      return newState.with(WATERLOGGED, false);
+      return this.baseBlockState;
     }
     FluidState fluidState = ctx.getWorld().getFluidState(blockPos);
     return newState.with(WATERLOGGED, fluidState.getFluid() == Fluids.WATER);
@@ -139,7 +228,7 @@ public class CompositeBlock extends Block implements Waterloggable {
       return false;
     }
     BlockState newState = this.getNewState(state, context);
-    return Arrays.stream(CORNER_PROPERTIES).anyMatch(p -> state.get(p) != newState.get(p));
+    return this.getCornersMask(state) != this.getCornersMask(newState);
   }
 
   @SuppressWarnings("deprecation")
@@ -173,50 +262,13 @@ public class CompositeBlock extends Block implements Waterloggable {
   @SuppressWarnings("deprecation")
   @Override
   public BlockState rotate(BlockState state, BlockRotation rotation) {
-    return switch (rotation) {
-      case NONE -> state;
-      case CLOCKWISE_90 -> state
-          .with(NORTH_WEST_TOP, state.get(SOUTH_WEST_TOP))
-          .with(NORTH_EAST_TOP, state.get(NORTH_WEST_TOP))
-          .with(SOUTH_EAST_TOP, state.get(NORTH_EAST_TOP))
-          .with(SOUTH_WEST_TOP, state.get(SOUTH_EAST_TOP))
-          .with(NORTH_WEST_BOTTOM, state.get(SOUTH_WEST_BOTTOM))
-          .with(NORTH_EAST_BOTTOM, state.get(NORTH_WEST_BOTTOM))
-          .with(SOUTH_EAST_BOTTOM, state.get(NORTH_EAST_BOTTOM))
-          .with(SOUTH_WEST_BOTTOM, state.get(SOUTH_EAST_BOTTOM));
-      case COUNTERCLOCKWISE_90 -> state
-          .with(NORTH_WEST_TOP, state.get(NORTH_EAST_TOP))
-          .with(NORTH_EAST_TOP, state.get(SOUTH_EAST_TOP))
-          .with(SOUTH_EAST_TOP, state.get(SOUTH_WEST_TOP))
-          .with(SOUTH_WEST_TOP, state.get(NORTH_WEST_TOP))
-          .with(NORTH_WEST_BOTTOM, state.get(NORTH_EAST_BOTTOM))
-          .with(NORTH_EAST_BOTTOM, state.get(SOUTH_EAST_BOTTOM))
-          .with(SOUTH_EAST_BOTTOM, state.get(SOUTH_WEST_BOTTOM))
-          .with(SOUTH_WEST_BOTTOM, state.get(NORTH_WEST_BOTTOM));
-      case CLOCKWISE_180 -> swap(swap(swap(swap(state,
-                      NORTH_WEST_TOP, SOUTH_EAST_TOP),
-                  NORTH_EAST_TOP, SOUTH_WEST_TOP),
-              NORTH_WEST_BOTTOM, SOUTH_EAST_BOTTOM),
-          NORTH_EAST_BOTTOM, SOUTH_WEST_BOTTOM);
-    };
+    return this.withCornersMask(state, CompositeCorners.rotate(this.getCornersMask(state), rotation));
   }
 
   @SuppressWarnings("deprecation")
   @Override
   public BlockState mirror(BlockState state, BlockMirror mirror) {
-    return switch (mirror) {
-      case NONE -> state;
-      case LEFT_RIGHT -> swap(swap(swap(swap(state,
-                      NORTH_WEST_BOTTOM, SOUTH_WEST_BOTTOM),
-                  NORTH_EAST_BOTTOM, SOUTH_EAST_BOTTOM),
-              NORTH_WEST_TOP, SOUTH_WEST_TOP),
-          NORTH_EAST_TOP, SOUTH_EAST_TOP);
-      case FRONT_BACK -> swap(swap(swap(swap(state,
-                      NORTH_WEST_BOTTOM, NORTH_EAST_BOTTOM),
-                  NORTH_WEST_TOP, NORTH_EAST_TOP),
-              SOUTH_WEST_BOTTOM, SOUTH_EAST_BOTTOM),
-          SOUTH_WEST_TOP, SOUTH_EAST_TOP);
-    };
+    return this.withCornersMask(state, CompositeCorners.mirror(this.getCornersMask(state), mirror));
   }
 
   private BlockState getNewState(final BlockState currentState, final ItemPlacementContext ctx) {
@@ -224,26 +276,31 @@ public class CompositeBlock extends Block implements Waterloggable {
     double xHit = ctx.getHitPos().getX() - pos.getX();
     double yHit = ctx.getHitPos().getY() - pos.getY();
     double zHit = ctx.getHitPos().getZ() - pos.getZ();
-    boolean nwt = currentState.get(NORTH_WEST_TOP);
-    boolean net = currentState.get(NORTH_EAST_TOP);
-    boolean nwb = currentState.get(NORTH_WEST_BOTTOM);
-    boolean neb = currentState.get(NORTH_EAST_BOTTOM);
-    boolean swt = currentState.get(SOUTH_WEST_TOP);
-    boolean set = currentState.get(SOUTH_EAST_TOP);
-    boolean swb = currentState.get(SOUTH_WEST_BOTTOM);
-    boolean seb = currentState.get(SOUTH_EAST_BOTTOM);
-    return currentState
-        .with(NORTH_WEST_TOP, nwt || (xHit < 0.5 || xHit == 0.5 && net) && (yHit > 0.5 || yHit == 0.5 && nwb) && (zHit < 0.5 || zHit == 0.5 && swt))
-        .with(NORTH_EAST_TOP, net || (xHit > 0.5 || xHit == 0.5 && nwt) && (yHit > 0.5 || yHit == 0.5 && neb) && (zHit < 0.5 || zHit == 0.5 && set))
-        .with(NORTH_WEST_BOTTOM, nwb || (xHit < 0.5 || xHit == 0.5 && neb) && (yHit < 0.5 || yHit == 0.5 && nwt) && (zHit < 0.5 || zHit == 0.5 && swb))
-        .with(NORTH_EAST_BOTTOM, neb || (xHit > 0.5 || xHit == 0.5 && nwb) && (yHit < 0.5 || yHit == 0.5 && net) && (zHit < 0.5 || zHit == 0.5 && seb))
-        .with(SOUTH_WEST_TOP, swt || (xHit < 0.5 || xHit == 0.5 && set) && (yHit > 0.5 || yHit == 0.5 && swb) && (zHit > 0.5 || zHit == 0.5 && nwt))
-        .with(SOUTH_EAST_TOP, set || (xHit > 0.5 || xHit == 0.5 && swt) && (yHit > 0.5 || yHit == 0.5 && seb) && (zHit > 0.5 || zHit == 0.5 && net))
-        .with(SOUTH_WEST_BOTTOM, swb || (xHit < 0.5 || xHit == 0.5 && seb) && (yHit < 0.5 || yHit == 0.5 && swt) && (zHit > 0.5 || zHit == 0.5 && nwb))
-        .with(SOUTH_EAST_BOTTOM, seb || (xHit > 0.5 || xHit == 0.5 && swb) && (yHit < 0.5 || yHit == 0.5 && set) && (zHit > 0.5 || zHit == 0.5 && neb));
-  }
-
-  private static BlockState swap(final BlockState state, final BooleanProperty p1, final BooleanProperty p2) {
-    return state.with(p1, state.get(p2)).with(p2, state.get(p1));
+    int mask = this.getCornersMask(currentState);
+    boolean nwt = CompositeCorners.isFilled(mask, CompositeCorners.NORTH_WEST_TOP);
+    boolean net = CompositeCorners.isFilled(mask, CompositeCorners.NORTH_EAST_TOP);
+    boolean nwb = CompositeCorners.isFilled(mask, CompositeCorners.NORTH_WEST_BOTTOM);
+    boolean neb = CompositeCorners.isFilled(mask, CompositeCorners.NORTH_EAST_BOTTOM);
+    boolean swt = CompositeCorners.isFilled(mask, CompositeCorners.SOUTH_WEST_TOP);
+    boolean set = CompositeCorners.isFilled(mask, CompositeCorners.SOUTH_EAST_TOP);
+    boolean swb = CompositeCorners.isFilled(mask, CompositeCorners.SOUTH_WEST_BOTTOM);
+    boolean seb = CompositeCorners.isFilled(mask, CompositeCorners.SOUTH_EAST_BOTTOM);
+    if ((xHit < 0.5 || xHit == 0.5 && net) && (yHit > 0.5 || yHit == 0.5 && nwb) && (zHit < 0.5 || zHit == 0.5 && swt))
+      mask |= CompositeCorners.bit(CompositeCorners.NORTH_WEST_TOP);
+    if ((xHit > 0.5 || xHit == 0.5 && nwt) && (yHit > 0.5 || yHit == 0.5 && neb) && (zHit < 0.5 || zHit == 0.5 && set))
+      mask |= CompositeCorners.bit(CompositeCorners.NORTH_EAST_TOP);
+    if ((xHit < 0.5 || xHit == 0.5 && neb) && (yHit < 0.5 || yHit == 0.5 && nwt) && (zHit < 0.5 || zHit == 0.5 && swb))
+      mask |= CompositeCorners.bit(CompositeCorners.NORTH_WEST_BOTTOM);
+    if ((xHit > 0.5 || xHit == 0.5 && nwb) && (yHit < 0.5 || yHit == 0.5 && net) && (zHit < 0.5 || zHit == 0.5 && seb))
+      mask |= CompositeCorners.bit(CompositeCorners.NORTH_EAST_BOTTOM);
+    if ((xHit < 0.5 || xHit == 0.5 && set) && (yHit > 0.5 || yHit == 0.5 && swb) && (zHit > 0.5 || zHit == 0.5 && nwt))
+      mask |= CompositeCorners.bit(CompositeCorners.SOUTH_WEST_TOP);
+    if ((xHit > 0.5 || xHit == 0.5 && swt) && (yHit > 0.5 || yHit == 0.5 && seb) && (zHit > 0.5 || zHit == 0.5 && net))
+      mask |= CompositeCorners.bit(CompositeCorners.SOUTH_EAST_TOP);
+    if ((xHit < 0.5 || xHit == 0.5 && seb) && (yHit < 0.5 || yHit == 0.5 && swt) && (zHit > 0.5 || zHit == 0.5 && nwb))
+      mask |= CompositeCorners.bit(CompositeCorners.SOUTH_WEST_BOTTOM);
+    if ((xHit > 0.5 || xHit == 0.5 && swb) && (yHit < 0.5 || yHit == 0.5 && set) && (zHit > 0.5 || zHit == 0.5 && neb))
+      mask |= CompositeCorners.bit(CompositeCorners.SOUTH_EAST_BOTTOM);
+    return this.withCornersMask(currentState, mask);
   }
 }
@@ -0,0 +1,144 @@
+package net.darmo_creations.infinitecity.blocks;
+
+import net.minecraft.util.*;
+
+import java.util.function.*;
+
+/**
+ * Bitmasks of the corners of {@link CompositeBlock}s and their precomputed transformations.
+ * <p>
+ * Bit {@code i} of a mask is set if the corner at index {@code i} of {@link CompositeBlock#CORNER_PROPERTIES} is filled.
+ * A corner’s index is made of three bits: 1 if it is on the west side, 2 if it is on the bottom half
+ * and 4 if it is on the south side.
+ */
+public final class CompositeCorners {
+  public static final int NORTH_EAST_TOP = 0;
+  public static final int NORTH_WEST_TOP = 1;
+  public static final int NORTH_EAST_BOTTOM = 2;
+  public static final int NORTH_WEST_BOTTOM = 3;
+  public static final int SOUTH_EAST_TOP = 4;
+  public static final int SOUTH_WEST_TOP = 5;
+  public static final int SOUTH_EAST_BOTTOM = 6;
+  public static final int SOUTH_WEST_BOTTOM = 7;
+
+  /**
+   * Number of corners of a block.
+   */
+  public static final int COUNT = 8;
+  /**
+   * Mask of a block whose corners are all filled.
+   */
+  public static final int FULL_MASK = (1 << COUNT) - 1;
+
+  /**
+   * Bit of a corner’s index set if it is on the west side.
+   */
+  public static final int WEST = 1;
+  /**
+   * Bit of a corner’s index set if it is on the bottom half.
+   */
+  public static final int BOTTOM = 2;
+  /**
+   * Bit of a corner’s index set if it is on the south side.
+   */
+  public static final int SOUTH = 4;
+
+  /**
+   * The transformed masks, indexed by {@link BlockRotation#ordinal()} then by mask.
+   */
+  private static final int[][] ROTATIONS = new int[BlockRotation.values().length][];
+  /**
+   * The transformed masks, indexed by {@link BlockMirror#ordinal()} then by mask.
+   */
+  private static final int[][] MIRRORS = new int[BlockMirror.values().length][];
+
+  static {
+    for (final BlockRotation rotation : BlockRotation.values())
+      ROTATIONS[rotation.ordinal()] = buildTable(corner -> rotateCorner(corner, rotation));
+    for (final BlockMirror mirror : BlockMirror.values())
+      MIRRORS[mirror.ordinal()] = buildTable(corner -> mirrorCorner(corner, mirror));
+  }
+
+  /**
+   * Return the bit of the given corner.
+   *
+   * @param corner A corner’s index.
+   */
+  public static int bit(int corner) {
+    return 1 << corner;
+  }
+
+  /**
+   * Return whether the given corner is filled in a mask.
+   *
+   * @param mask   A corners mask.
+   * @param corner A corner’s index.
+   */
+  public static boolean isFilled(int mask, int corner) {
+    return (mask & bit(corner)) != 0;
+  }
+
+  /**
+   * Rotate a corners mask.
+   *
+   * @param mask     The mask to rotate.
+   * @param rotation The rotation to apply.
+   * @return The rotated mask.
+   */
+  public static int rotate(int mask, BlockRotation rotation) {
+    return ROTATIONS[rotation.ordinal()][mask];
+  }
+
+  /**
+   * Mirror a corners mask.
+   *
+   * @param mask   The mask to mirror.
+   * @param mirror The mirroring to apply.
+   * @return The mirrored mask.
+   */
+  public static int mirror(int mask, BlockMirror mirror) {
+    return MIRRORS[mirror.ordinal()][mask];
+  }
+
+  /**
+   * Build the table of all masks transformed by the given corner permutation.
+   */
+  private static int[] buildTable(IntUnaryOperator permutation) {
+    final int[] table = new int[FULL_MASK + 1];
+    for (int mask = 0; mask <= FULL_MASK; mask++)
+      for (int corner = 0; corner < COUNT; corner++)
+        if (isFilled(mask, corner))
+          table[mask] |= bit(permutation.applyAsInt(corner));
+    return table;
+  }
+
+  /**
+   * Return the index a corner is moved to by the given rotation around the vertical axis.
+   */
+  private static int rotateCorner(int corner, BlockRotation rotation) {
+    final boolean west = (corner & WEST) != 0;
+    final boolean south = (corner & SOUTH) != 0;
+    final int bottom = corner & BOTTOM;
+    return switch (rotation) {
+      case NONE -> corner;
+      // North-west -> north-east -> south-east -> south-west
+      case CLOCKWISE_90 -> (south ? WEST : 0) | bottom | (west ? 0 : SOUTH);
+      case COUNTERCLOCKWISE_90 -> (south ? 0 : WEST) | bottom | (west ? SOUTH : 0);
+      case CLOCKWISE_180 -> corner ^ WEST ^ SOUTH;
+    };
+  }
+
+  /**
+   * Return the index a corner is moved to by the given mirroring.
+   */
+  private static int mirrorCorner(int corner, BlockMirror mirror) {
+    return switch (mirror) {
+      case NONE -> corner;
+      case LEFT_RIGHT -> corner ^ SOUTH;
+      case FRONT_BACK -> corner ^ WEST;
+    };
+  }
+
+  private CompositeCorners() {
+  }
+}
@@ -38,9 +38,19 @@ public final class ModBlocks {
   );
   public static final CompositeBlock LIGHT_GRAY_CONCRETE_COMPOSITE_BLOCK = register(
       "light_gray_concrete_composite_block",
-      new CompositeBlock(Blocks.LIGHT_GRAY_CONCRETE.getSettings())
+      new CompositeBlock(Blocks.LIGHT_GRAY_CONCRETE.getDefaultState(), Blocks.LIGHT_GRAY_CONCRETE.getSettings())
   );
   public static final Block[] LIGHT_BLOCKS = new Block[15];
+  /**
+   * The block that fills deferred city sections, it has no item.
+   */
+  public static final PlaceholderBlock PLACEHOLDER = registerBlock(
+      "placeholder",
+      new PlaceholderBlock(AbstractBlock.Settings.copy(Blocks.LIGHT_GRAY_CONCRETE)
+          .strength(-1, 3600000)
+          .dropsNothing()
+          .allowsSpawning((state, world, pos, type) -> false))
+  );
 
   static {
     for (int i = 1; i < 16; i++) {
@@ -63,7 +73,7 @@ public final class ModBlocks {
    * @return The registered block.
    */
   private static <T extends Block> T register(String name, final T block) {
-    Registry.register(Registries.BLOCK, new Identifier(InfiniteCity.MOD_ID, name), block);
+    registerBlock(name, block);
     Item.Settings settings = new FabricItemSettings();
     if (block instanceof OperatorBlock) {
       settings = settings.rarity(Rarity.EPIC);
@@ -73,6 +83,18 @@ public final class ModBlocks {
     return block;
   }
 
+  /**
+   * Registers a block without any item.
+   *
+   * @param name  Block’s name.
+   * @param block Block to register.
+   * @param <T>   Type of the block to register.
+   * @return The registered block.
+   */
+  private static <T extends Block> T registerBlock(String name, final T block) {
+    return Registry.register(Registries.BLOCK, new Identifier(InfiniteCity.MOD_ID, name), block);
+  }
+
   /**
    * Register the items for this mod’s blocks.
    * <p>
@@ -0,0 +1,24 @@
+package net.darmo_creations.infinitecity.blocks;
+
+import net.minecraft.block.*;
+import net.minecraft.util.math.*;
+import net.minecraft.util.shape.*;
+import net.minecraft.world.*;
+
+/**
+ * This class represents the block that fills the sections of city chunks whose generation was deferred.
+ * <p>
+ * It is an opaque full cube like the terrain that will replace it, so it blocks light and hides the faces
+ * of its neighbors, but entities go through it and it cannot be mined.
+ */
+public class PlaceholderBlock extends Block {
+  public PlaceholderBlock(Settings settings) {
+    super(settings);
+  }
+
+  @SuppressWarnings("deprecation")
+  @Override
+  public VoxelShape getCollisionShape(BlockState state, BlockView world, BlockPos pos, ShapeContext context) {
+    return VoxelShapes.empty();
+  }
+}
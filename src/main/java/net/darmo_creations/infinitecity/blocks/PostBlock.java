@@ -1,9 +1,7 @@
 package net.darmo_creations.infinitecity.blocks;
 
-import net.minecraft.block.*;
 import net.minecraft.util.math.*;
 import net.minecraft.util.shape.*;
-import net.minecraft.world.*;
 
 /**
  * This class represents a single fence post.
@@ -18,8 +16,8 @@ public class PostBlock extends AbstractPostBlock {
   }
 
   @Override
-  public VoxelShape getOutlineShape(BlockState state, BlockView world, BlockPos pos, ShapeContext context) {
-    return switch (state.get(AXIS)) {
+  protected VoxelShape getShape(Direction.Axis axis) {
+    return switch (axis) {
       case X -> SHAPE_X;
       case Y -> SHAPE_Y;
       case Z -> SHAPE_Z;
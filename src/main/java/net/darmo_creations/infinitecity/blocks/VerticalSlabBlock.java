@@ -26,6 +26,21 @@ public class VerticalSlabBlock extends Block implements Waterloggable {
   protected static final VoxelShape SOUTH_SHAPE = createCuboidShape(0, 0, 8, 16, 16, 16);
   protected static final VoxelShape WEST_SHAPE = createCuboidShape(0, 0, 0, 8, 16, 16);
   protected static final VoxelShape EAST_SHAPE = createCuboidShape(8, 0, 0, 16, 16, 16);
+  /**
+   * The shape of each slab type, indexed by {@link VerticalSlabType#ordinal()}.
+   */
+  private static final VoxelShape[] SHAPES = new VoxelShape[VerticalSlabType.values().length];
+
+  static {
+    for (final VerticalSlabType type : VerticalSlabType.values())
+      SHAPES[type.ordinal()] = switch (type) {
+        case NORTH -> NORTH_SHAPE;
+        case SOUTH -> SOUTH_SHAPE;
+        case EAST -> EAST_SHAPE;
+        case WEST -> WEST_SHAPE;
+        case DOUBLE -> VoxelShapes.fullCube();
+      };
+  }
 
   public VerticalSlabBlock(Settings settings) {
     super(settings);
@@ -48,13 +63,13 @@ public class VerticalSlabBlock extends Block implements Waterloggable {
   @SuppressWarnings("deprecation")
   @Override
   public VoxelShape getOutlineShape(BlockState state, BlockView world, BlockPos pos, ShapeContext context) {
-    return switch (state.get(TYPE)) {
-      case NORTH -> NORTH_SHAPE;
-      case SOUTH -> SOUTH_SHAPE;
-      case EAST -> EAST_SHAPE;
-      case WEST -> WEST_SHAPE;
-      case DOUBLE -> VoxelShapes.fullCube();
-    };
+    return SHAPES[state.get(TYPE).ordinal()];
+  }
+
+  @SuppressWarnings("deprecation")
+  @Override
+  public VoxelShape getCullingShape(BlockState state, BlockView world, BlockPos pos) {
+    return SHAPES[state.get(TYPE).ordinal()];
   }
 
   @Override
@@ -1,5 +1,6 @@
 package net.darmo_creations.infinitecity.chunk_gen;
 
+import net.darmo_creations.infinitecity.server.*;
 import net.minecraft.block.*;
 import net.minecraft.util.math.*;
 import net.minecraft.world.chunk.*;
@@ -23,6 +24,34 @@ final class ChunkGenerationUtils {
     fill(chunk, mutable, chunkX, chunkZ, 0, 16, 0, 16, fromY, toY, blockState);
   }
 
+  /**
+   * Fill a chunk between two Y positions with the given block state, the sections entirely within these positions being known.
+   * These sections reference a shared container instead of being filled block by block.
+   *
+   * @param chunk       The chunk to fill.
+   * @param mutable     A mutable {@link BlockPos} to use internally.
+   * @param chunkX      The chunk’s X position.
+   * @param chunkZ      The chunk’s Z position.
+   * @param fromY       The lowest Y position to fill.
+   * @param toY         The highest Y position to fill (exclusive).
+   * @param fromSection The lowest section coordinate entirely between {@code fromY} and {@code toY}.
+   * @param toSection   The highest section coordinate entirely between {@code fromY} and {@code toY} (exclusive).
+   * @param blockState  The block state to use as filler.
+   */
+  public static void fillChunk(Chunk chunk, BlockPos.Mutable mutable, int chunkX, int chunkZ, int fromY, int toY, int fromSection, int toSection, BlockState blockState) {
+    if (fromSection >= toSection || blockState.isAir()) {
+      fill(chunk, mutable, chunkX, chunkZ, 0, 16, 0, 16, fromY, toY, blockState);
+      return;
+    }
+    fill(chunk, mutable, chunkX, chunkZ, 0, 16, 0, 16, fromY, ChunkSectionPos.getBlockCoord(fromSection), blockState);
+    for (int sectionY = fromSection; sectionY < toSection; sectionY++) {
+      final int index = chunk.sectionCoordToIndex(sectionY);
+      if (!LazySections.isPending(chunk, index))
+        SharedSections.fillSection(chunk, index, blockState);
+    }
+    fill(chunk, mutable, chunkX, chunkZ, 0, 16, 0, 16, ChunkSectionPos.getBlockCoord(toSection), toY, blockState);
+  }
+
   /**
    * Partially fill a chunk between two Y positions with the given block state.
    *
@@ -39,7 +68,21 @@ final class ChunkGenerationUtils {
    * @param blockState The block state to use as filler.
    */
   public static void fill(Chunk chunk, BlockPos.Mutable mutable, int chunkX, int chunkZ, int fromX, int toX, int fromZ, int toZ, int fromY, int toY, BlockState blockState) {
+    if (fromX == 0 && toX == 16 && fromZ == 0 && toZ == 16 && !blockState.isAir()) {
+      // Sections that are entirely within the range reference a shared container instead
+      final int fromSection = ChunkSectionPos.getSectionCoord(fromY + 15);
+      final int toSection = ChunkSectionPos.getSectionCoord(toY);
+      if (fromSection < toSection) {
+        fillChunk(chunk, mutable, chunkX, chunkZ, fromY, toY, fromSection, toSection, blockState);
+        return;
+      }
+    }
     for (int y = fromY; y < toY; y++) {
+      if (isDiscarded(chunk, y)) {
+        // Skip to the next section
+        y |= 15;
+        continue;
+      }
       for (int dx = fromX; dx < toX; dx++) {
         final int x = getHPos(chunkX, dx);
         for (int dz = fromZ; dz < toZ; dz++) {
@@ -50,6 +93,20 @@ final class ChunkGenerationUtils {
     }
   }
 
+  /**
+   * Indicate whether the blocks placed at the given Y position of a chunk are discarded,
+   * as they are in a section whose generation is deferred (see {@link LazySections}).
+   * Loops over many blocks skip these positions instead of placing blocks that would be discarded.
+   *
+   * @param chunk The chunk being generated.
+   * @param y     The Y position.
+   * @return True if blocks at this position are discarded, false otherwise.
+   */
+  public static boolean isDiscarded(Chunk chunk, int y) {
+    final int index = chunk.getSectionIndex(y);
+    return index >= 0 && index < chunk.countVerticalSections() && LazySections.isPending(chunk, index);
+  }
+
   /**
    * Set the block at the given position.
    *
@@ -2,6 +2,7 @@ package net.darmo_creations.infinitecity.chunk_gen;
 
 import net.darmo_creations.infinitecity.blocks.*;
 import net.minecraft.block.*;
+import net.minecraft.util.math.*;
 
 /**
  * The blocks available for terrain generation.
@@ -16,14 +17,35 @@ final class ChunkGeneratorBlocks {
   public static final BlockState SLAB = ModBlocks.LIGHT_GRAY_CONCRETE_SLAB.getDefaultState();
   public static final BlockState LIGHT_BLOCK = ModBlocks.LIGHT_BLOCKS[14].getDefaultState();
   public static final BlockState GLASS_PANE = Blocks.LIGHT_GRAY_STAINED_GLASS_PANE.getDefaultState();
-  public static final BlockState GLASS_PANE_X = GLASS_PANE.with(PaneBlock.WEST, true).with(PaneBlock.EAST, true);
-  public static final BlockState GLASS_PANE_Z = GLASS_PANE.with(PaneBlock.NORTH, true).with(PaneBlock.SOUTH, true);
   public static final BlockState SAND = Blocks.SAND.getDefaultState();
   public static final BlockState STAIRS = ModBlocks.LIGHT_GRAY_CONCRETE_STAIRS.getDefaultState();
   public static final BlockState COMPOSITE = ModBlocks.LIGHT_GRAY_CONCRETE_COMPOSITE_BLOCK.getDefaultState();
   public static final BlockState THICK_POST = ModBlocks.LIGHT_GRAY_CONCRETE_THICK_POST.getDefaultState();
   public static final BlockState POST = ModBlocks.LIGHT_GRAY_CONCRETE_POST.getDefaultState();
 
+  /**
+   * Glass panes indexed by their connections, see {@link FacadeLayout#getPaneConnections}.
+   */
+  private static final BlockState[] GLASS_PANES = new BlockState[16];
+
+  static {
+    for (int connections = 0; connections < GLASS_PANES.length; connections++) {
+      BlockState blockState = GLASS_PANE;
+      for (final Direction side : Direction.Type.HORIZONTAL)
+        blockState = blockState.with(HorizontalConnectingBlock.FACING_PROPERTIES.get(side), (connections & 1 << side.getHorizontal()) != 0);
+      GLASS_PANES[connections] = blockState;
+    }
+  }
+
+  /**
+   * Return the glass pane with the given connections.
+   *
+   * @param connections A mask where the bit {@code 1 << side.getHorizontal()} is set for each connected side.
+   */
+  public static BlockState getGlassPane(int connections) {
+    return GLASS_PANES[connections];
+  }
+
   private ChunkGeneratorBlocks() {
   }
 }
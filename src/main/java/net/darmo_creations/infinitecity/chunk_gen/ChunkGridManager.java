@@ -7,13 +7,38 @@ import java.util.*;
 
 /**
  * This chunk manager generates blocks of specific width and spacing.
+ * <p>
+ * The grid repeats itself every {@code blockSize + blockSpacing} chunks along both axes. The state of a chunk only
+ * depends on the kind of each of its grid coordinates (see {@link #computeKind(int)}), the state for all pairs
+ * of kinds is computed once when the manager is created and looked up afterwards.
  */
 class ChunkGridManager {
+  /**
+   * Number of kinds of grid coordinates.
+   */
+  private static final int KINDS = 6;
+
   private final int blockSize;
-  private final int blockSpacing;
   private final int offsetX;
   private final int offsetZ;
   private final boolean inverted;
+  private final int period;
+  /**
+   * The kind of each grid coordinate of a period.
+   */
+  private final byte[] kinds;
+  /**
+   * Whether chunks should be filled, indexed by {@link #getIndex(int, int)}.
+   */
+  private final boolean[] filled = new boolean[KINDS * KINDS];
+  /**
+   * The direction returned by {@link #isAtEdge(int, int)}, indexed by {@link #getIndex(int, int)}.
+   */
+  private final HoleDirection[] atEdge = new HoleDirection[KINDS * KINDS];
+  /**
+   * The direction returned by {@link #isPastEdge(int, int)}, indexed by {@link #getIndex(int, int)}.
+   */
+  private final HoleDirection[] pastEdge = new HoleDirection[KINDS * KINDS];
 
   /**
    * Create a chunk grid manager.
@@ -26,10 +51,27 @@ class ChunkGridManager {
    */
   public ChunkGridManager(int blockSize, int blockSpacing, int offsetX, int offsetZ, boolean inverted) {
     this.blockSize = blockSize;
-    this.blockSpacing = blockSpacing;
     this.offsetX = offsetX;
     this.offsetZ = offsetZ;
     this.inverted = inverted;
+    this.period = blockSize + blockSpacing;
+    this.kinds = new byte[this.period];
+    // A grid coordinate of each kind
+    final int[] coordinates = new int[KINDS];
+    for (int i = this.period - 1; i >= 0; i--) {
+      this.kinds[i] = (byte) this.computeKind(i);
+      coordinates[this.kinds[i]] = i;
+    }
+    for (int kindX = 0; kindX < KINDS; kindX++) {
+      for (int kindZ = 0; kindZ < KINDS; kindZ++) {
+        final int gx = coordinates[kindX];
+        final int gz = coordinates[kindZ];
+        final int i = kindX * KINDS + kindZ;
+        this.filled[i] = this.inverted != (this.isInBlock(gx) && this.isInBlock(gz));
+        this.atEdge[i] = this.computeAtEdge(gx, gz).orElse(null);
+        this.pastEdge[i] = this.computePastEdge(gx, gz).orElse(null);
+      }
+    }
   }
 
   /**
@@ -40,7 +82,7 @@ class ChunkGridManager {
    * @return True if the chunk should be filled, false if it should be empty.
    */
   public boolean shouldBeFilled(int chunkX, int chunkZ) {
-    return this.inverted != (this.isInBlock(chunkX, this.offsetX) && this.isInBlock(chunkZ, this.offsetZ));
+    return this.filled[this.getIndex(chunkX, chunkZ)];
   }
 
   /**
@@ -64,78 +106,116 @@ class ChunkGridManager {
    * @return The nearby hole’s direction or an empty value if the chunk is not near an edge.
    */
   public Optional<HoleDirection> isAtEdge(int chunkX, int chunkZ) {
+    return Optional.ofNullable(this.atEdge[this.getIndex(chunkX, chunkZ)]);
+  }
+
+  /**
+   * If the chunk at the given coordinates is right past a block’s edge,
+   * return the hole’s direction from the chunk’s position, relative to the edge.
+   *
+   * @param chunkX The chunk’s X position.
+   * @param chunkZ The chunk’s Z position.
+   * @return The hole’s direction or an empty value if the chunk is not right past an edge.
+   */
+  public Optional<HoleDirection> isPastEdge(int chunkX, int chunkZ) {
+    return Optional.ofNullable(this.pastEdge[this.getIndex(chunkX, chunkZ)]);
+  }
+
+  private int getIndex(int chunkX, int chunkZ) {
+    return this.kinds[this.getGridI(chunkX, this.offsetX)] * KINDS + this.kinds[this.getGridI(chunkZ, this.offsetZ)];
+  }
+
+  /**
+   * Return the kind of a grid coordinate. All coordinates of the same kind are in the same state along their axis:
+   * the block’s first coordinate, its inner coordinates, its last coordinate, the spacing’s first coordinate,
+   * its inner coordinates and its last coordinate. Sizes and spacings of at least 2 keep the first
+   * and last coordinates apart, kinds of inner coordinates may have none.
+   */
+  private int computeKind(int i) {
+    if (i == 0)
+      return 0;
+    else if (i < this.blockSize - 1)
+      return 1;
+    else if (i == this.blockSize - 1)
+      return 2;
+    else if (i == this.blockSize)
+      return 3;
+    else if (i < this.period - 1)
+      return 4;
+    else
+      return 5;
+  }
+
+  private Optional<HoleDirection> computeAtEdge(int gx, int gz) {
     if (this.inverted) {
-      final var pastX = this.isPastBlockEdge(chunkX, this.offsetX)
+      final var pastX = this.isPastBlockEdge(gx)
           .map(Direction.AxisDirection::getOpposite);
-      final var pastZ = this.isPastBlockEdge(chunkZ, this.offsetZ)
+      final var pastZ = this.isPastBlockEdge(gz)
           .map(Direction.AxisDirection::getOpposite);
 
       if (pastX.isPresent() && pastZ.isPresent())
         return Optional.of(HoleDirection.forDirections(pastX.get(), pastZ.get()));
-      else if (pastX.isPresent() && !this.shouldBeFilled(chunkZ, this.offsetZ))
+      else if (pastX.isPresent() && !this.isAxisFilled(gz))
         return pastX.map(d -> HoleDirection.forAxisAndDirection(Direction.Axis.X, d));
-      else if (pastZ.isPresent() && !this.shouldBeFilled(chunkX, this.offsetX))
+      else if (pastZ.isPresent() && !this.isAxisFilled(gx))
         return pastZ.map(d -> HoleDirection.forAxisAndDirection(Direction.Axis.Z, d));
 
     } else {
-      final var edgeX = this.isAtBlockEdge(chunkX, this.offsetX);
-      final var edgeZ = this.isAtBlockEdge(chunkZ, this.offsetZ);
+      final var edgeX = this.isAtBlockEdge(gx);
+      final var edgeZ = this.isAtBlockEdge(gz);
 
       if (edgeX.isPresent() && edgeZ.isPresent())
         return Optional.of(HoleDirection.forDirections(edgeX.get(), edgeZ.get()));
-      else if (edgeX.isPresent() && this.shouldBeFilled(chunkZ, this.offsetZ))
+      else if (edgeX.isPresent() && this.isAxisFilled(gz))
         return edgeX.map(d -> HoleDirection.forAxisAndDirection(Direction.Axis.X, d));
-      else if (edgeZ.isPresent() && this.shouldBeFilled(chunkX, this.offsetX))
+      else if (edgeZ.isPresent() && this.isAxisFilled(gx))
         return edgeZ.map(d -> HoleDirection.forAxisAndDirection(Direction.Axis.Z, d));
     }
 
     return Optional.empty();
   }
 
-  /**
-   * If the chunk at the given coordinates is right past a block’s edge,
-   * return the hole’s direction from the chunk’s position, relative to the edge.
-   *
-   * @param chunkX The chunk’s X position.
-   * @param chunkZ The chunk’s Z position.
-   * @return The hole’s direction or an empty value if the chunk is not right past an edge.
-   */
-  public Optional<HoleDirection> isPastEdge(int chunkX, int chunkZ) {
+  private Optional<HoleDirection> computePastEdge(int gx, int gz) {
     if (this.inverted) {
-      final var edgeX = this.isAtBlockEdge(chunkX, this.offsetX)
+      final var edgeX = this.isAtBlockEdge(gx)
           .map(Direction.AxisDirection::getOpposite);
-      final var edgeZ = this.isAtBlockEdge(chunkZ, this.offsetZ)
+      final var edgeZ = this.isAtBlockEdge(gz)
           .map(Direction.AxisDirection::getOpposite);
 
       if (edgeX.isPresent() && edgeZ.isPresent())
         return Optional.of(HoleDirection.forDirections(edgeX.get(), edgeZ.get()));
-      else if (edgeX.isPresent() && !this.shouldBeFilled(chunkZ, this.offsetZ))
+      else if (edgeX.isPresent() && !this.isAxisFilled(gz))
         return edgeX.map(d -> HoleDirection.forAxisAndDirection(Direction.Axis.X, d));
-      else if (edgeZ.isPresent() && !this.shouldBeFilled(chunkX, this.offsetX))
+      else if (edgeZ.isPresent() && !this.isAxisFilled(gx))
         return edgeZ.map(d -> HoleDirection.forAxisAndDirection(Direction.Axis.Z, d));
 
     } else {
-      final var pastX = this.isPastBlockEdge(chunkX, this.offsetX);
-      final var pastZ = this.isPastBlockEdge(chunkZ, this.offsetZ);
+      final var pastX = this.isPastBlockEdge(gx);
+      final var pastZ = this.isPastBlockEdge(gz);
 
       if (pastX.isPresent() && pastZ.isPresent())
         return Optional.of(HoleDirection.forDirections(pastX.get(), pastZ.get()));
-      else if (pastX.isPresent() && this.shouldBeFilled(chunkZ, this.offsetZ))
+      else if (pastX.isPresent() && this.isAxisFilled(gz))
         return pastX.map(d -> HoleDirection.forAxisAndDirection(Direction.Axis.X, d));
-      else if (pastZ.isPresent() && this.shouldBeFilled(chunkX, this.offsetX))
+      else if (pastZ.isPresent() && this.isAxisFilled(gx))
         return pastZ.map(d -> HoleDirection.forAxisAndDirection(Direction.Axis.Z, d));
     }
 
     return Optional.empty();
   }
 
-  private boolean isInBlock(int x, int offset) {
-    final int i = this.getGridI(x, offset);
+  /**
+   * Indicate whether the given grid coordinate is filled along its own axis.
+   */
+  private boolean isAxisFilled(int i) {
+    return this.inverted != this.isInBlock(i);
+  }
+
+  private boolean isInBlock(int i) {
     return i < this.blockSize;
   }
 
-  private Optional<Direction.AxisDirection> isAtBlockEdge(int x, int offset) {
-    final int i = this.getGridI(x, offset);
+  private Optional<Direction.AxisDirection> isAtBlockEdge(int i) {
     if (i == 0)
       return Optional.of(Direction.AxisDirection.NEGATIVE);
     else if (i == this.blockSize - 1)
@@ -144,26 +224,17 @@ class ChunkGridManager {
       return Optional.empty();
   }
 
-  private Optional<Direction.AxisDirection> isPastBlockEdge(int x, int offset) {
-    final int i = this.getGridI(x, offset);
+  private Optional<Direction.AxisDirection> isPastBlockEdge(int i) {
     if (i == this.blockSize)
       return Optional.of(Direction.AxisDirection.POSITIVE);
-    else if (i == this.blockSize + this.blockSpacing - 1)
+    else if (i == this.period - 1)
       return Optional.of(Direction.AxisDirection.NEGATIVE);
     else
       return Optional.empty();
   }
 
   private int getGridI(int x, int offset) {
-    x -= offset;
-    final int i;
-    final int mod = this.blockSize + this.blockSpacing;
-    if (x >= 0) {
-      i = x % mod;
-    } else {
-      i = (mod - (-x) % mod) % mod;
-    }
-    return i;
+    return Math.floorMod(x - offset, this.period);
   }
 
   /**
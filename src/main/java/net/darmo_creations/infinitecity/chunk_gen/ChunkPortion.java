@@ -5,7 +5,9 @@ import net.minecraft.util.*;
 import net.minecraft.util.math.*;
 import net.minecraft.world.chunk.*;
 
+import java.io.*;
 import java.util.*;
+import java.util.function.*;
 
 /**
  * A chunk portion contains block states that may be placed in a world chunk.
@@ -53,6 +55,91 @@ class ChunkPortion {
     }
   }
 
+  /**
+   * Create a chunk portion for the given blockstates and bounding boxes.
+   *
+   * @param blockStates The blockstates.
+   * @param bBoxes      The bounding box of each layer.
+   */
+  private ChunkPortion(final BlockState[][][] blockStates, final ChunkLayerBBox[] bBoxes) {
+    this.blockStates = blockStates;
+    this.bBoxes = bBoxes;
+  }
+
+  /**
+   * Read a chunk portion written by {@link #write(DataOutput, ToIntFunction)}.
+   *
+   * @param in      The stream to read from.
+   * @param palette The block states referenced by the portion’s indices.
+   * @return The chunk portion.
+   * @throws IOException If the stream could not be read.
+   */
+  static ChunkPortion read(DataInput in, BlockState[] palette) throws IOException {
+    final int height = in.readShort();
+    final BlockState[][][] blockStates = new BlockState[height][16][16];
+    final ChunkLayerBBox[] bBoxes = new ChunkLayerBBox[height];
+    for (int y = 0; y < height; y++) {
+      bBoxes[y] = new ChunkLayerBBox();
+      final int minX = in.readByte(), maxX = in.readByte(), minZ = in.readByte(), maxZ = in.readByte();
+      if (maxX < minX || maxZ < minZ)
+        continue;
+      bBoxes[y].update(minX, maxX, minZ, maxZ);
+      for (int z = minZ; z <= maxZ; z++) {
+        for (int x = minX; x <= maxX; x++) {
+          final int index = in.readShort();
+          if (index != 0)
+            blockStates[y][z][x] = palette[index - 1];
+        }
+      }
+    }
+    return new ChunkPortion(blockStates, bBoxes);
+  }
+
+  /**
+   * Write this chunk portion: its height then, for each layer, its bounding box
+   * and the palette index of each block in it (0 for no block, index + 1 otherwise).
+   *
+   * @param out     The stream to write to.
+   * @param palette A function that returns the palette index of a block state.
+   * @throws IOException If the stream could not be written to.
+   */
+  void write(DataOutput out, ToIntFunction<BlockState> palette) throws IOException {
+    out.writeShort(this.blockStates.length);
+    for (int y = 0; y < this.blockStates.length; y++) {
+      final ChunkLayerBBox bBox = this.bBoxes[y];
+      out.writeByte(bBox.minX());
+      out.writeByte(bBox.maxX());
+      out.writeByte(bBox.minZ());
+      out.writeByte(bBox.maxZ());
+      for (int z = bBox.minZ(); z <= bBox.maxZ(); z++) {
+        for (int x = bBox.minX(); x <= bBox.maxX(); x++) {
+          final BlockState state = this.blockStates[y][z][x];
+          out.writeShort(state == null ? 0 : palette.applyAsInt(state) + 1);
+        }
+      }
+    }
+  }
+
+  /**
+   * Return this chunk portion’s height.
+   */
+  public int getHeight() {
+    return this.blockStates.length;
+  }
+
+  /**
+   * Call the given action on every block of this chunk portion.
+   *
+   * @param action The action to perform.
+   */
+  void forEachBlockState(Consumer<BlockState> action) {
+    for (final var layer : this.blockStates)
+      for (final var row : layer)
+        for (final BlockState state : row)
+          if (state != null)
+            action.accept(state);
+  }
+
   /**
    * Fill the given area of this chunk portion.
    *
@@ -169,6 +256,7 @@ class ChunkPortion {
     for (int dy = 0; dy < this.blockStates.length; dy++) {
       final ChunkLayerBBox bBox = this.bBoxes[dy];
       final int y = atY + dy;
+      if (ChunkGenerationUtils.isDiscarded(chunk, y)) continue;
       for (int dz = bBox.minZ(); dz <= bBox.maxZ(); dz++) {
         final int trueZ = atZ + dz;
         if (trueZ < 0 || trueZ >= 16) continue;
@@ -0,0 +1,224 @@
+package net.darmo_creations.infinitecity.chunk_gen;
+
+import com.google.common.hash.*;
+import net.darmo_creations.infinitecity.*;
+import net.darmo_creations.infinitecity.blocks.*;
+import net.fabricmc.fabric.api.resource.*;
+import net.fabricmc.loader.api.*;
+import net.minecraft.block.*;
+import net.minecraft.datafixer.*;
+import net.minecraft.nbt.*;
+import net.minecraft.registry.*;
+import net.minecraft.resource.*;
+import net.minecraft.util.*;
+import net.minecraft.util.profiler.*;
+import org.jetbrains.annotations.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * This reload listener replaces the default {@link ChunkPortion}s with structure files from data packs.
+ * <p>
+ * A portion is overridden by a file at {@code data/infinitecity/portions/<type>.nbt}, where {@code <type>}
+ * is the lowercase name of one of the {@link ChunkPortions.Type}s (e.g. {@code column_corner.nbt}).
+ * Files are regular structure files, as saved by structure blocks. They must be at most 16×16 blocks wide,
+ * be as high as the portion they replace and be directed towards the east (south-east for corners).
+ * Structure voids leave the blocks already in the world untouched.
+ * <p>
+ * Converted portions are cached in the game directory under {@code .cache/infinitecity/portions},
+ * keyed by the hash of their structure file and {@link #CONVERTER_VERSION}, so that unchanged files are not parsed again
+ * on later reloads.
+ * Files are converted in parallel on the reload’s worker threads.
+ */
+public final class ChunkPortionOverrides implements SimpleResourceReloadListener<Map<ChunkPortions.Type, ChunkPortionOverrides.LoadedPortion>> {
+  private static final Identifier ID = new Identifier(InfiniteCity.MOD_ID, "portions");
+  private static final String DIRECTORY = "portions";
+  private static final String EXTENSION = ".nbt";
+  /**
+   * Version of the conversion of structure files into portions.
+   * Must be incremented whenever a change alters the portions converted from existing files.
+   */
+  private static final int CONVERTER_VERSION = 2;
+
+  /**
+   * Register the reload listener.
+   */
+  public static void init() {
+    ResourceManagerHelper.get(ResourceType.SERVER_DATA).registerReloadListener(new ChunkPortionOverrides());
+  }
+
+  /**
+   * Return a hash of the portions data packs currently override, 0 if there are none.
+   * Chunks generated with different hashes may have different contents.
+   */
+  public static long getHash() {
+    return ChunkPortions.getOverridesHash();
+  }
+
+  private static Path getCacheDirectory() {
+    return FabricLoader.getInstance().getGameDir().resolve(".cache").resolve(InfiniteCity.MOD_ID).resolve(DIRECTORY);
+  }
+
+  @Override
+  public Identifier getFabricId() {
+    return ID;
+  }
+
+  @Override
+  public CompletableFuture<Map<ChunkPortions.Type, LoadedPortion>> load(ResourceManager manager, Profiler profiler, Executor executor) {
+    final Map<Identifier, Resource> resources = manager.findResources(DIRECTORY,
+        id -> id.getNamespace().equals(InfiniteCity.MOD_ID) && id.getPath().endsWith(EXTENSION));
+    final Map<ChunkPortions.Type, CompletableFuture<LoadedPortion>> futures = new EnumMap<>(ChunkPortions.Type.class);
+    resources.forEach((id, resource) -> {
+      final String name = id.getPath().substring(DIRECTORY.length() + 1, id.getPath().length() - EXTENSION.length());
+      final ChunkPortions.Type type;
+      try {
+        type = ChunkPortions.Type.valueOf(name.toUpperCase(Locale.ROOT));
+      } catch (IllegalArgumentException e) {
+        InfiniteCity.LOGGER.warn("Ignoring chunk portion {}: unknown portion type {}", id, name);
+        return;
+      }
+      futures.put(type, CompletableFuture.supplyAsync(() -> loadOverride(id, resource, type), executor));
+    });
+    return CompletableFuture.allOf(futures.values().toArray(CompletableFuture[]::new)).thenApply(v -> {
+      final Map<ChunkPortions.Type, LoadedPortion> overrides = new EnumMap<>(ChunkPortions.Type.class);
+      futures.forEach((type, future) -> {
+        final LoadedPortion override = future.join();
+        if (override != null)
+          overrides.put(type, override);
+      });
+      return overrides;
+    });
+  }
+
+  @Override
+  public CompletableFuture<Void> apply(Map<ChunkPortions.Type, LoadedPortion> data, ResourceManager manager, Profiler profiler, Executor executor) {
+    return CompletableFuture.runAsync(() -> {
+      long hash = 0;
+      final Map<ChunkPortions.Type, ChunkPortion> portions = new EnumMap<>(ChunkPortions.Type.class);
+      for (final var entry : data.entrySet()) {
+        hash = 31 * hash + entry.getKey().ordinal();
+        hash = 31 * hash + entry.getValue().hash().asLong();
+        hash = 31 * hash + CONVERTER_VERSION;
+        portions.put(entry.getKey(), entry.getValue().portion());
+      }
+      ChunkPortions.setOverrides(portions, hash);
+      if (!portions.isEmpty())
+        InfiniteCity.LOGGER.info("Loaded {} chunk portion override(s)", portions.size());
+    }, executor);
+  }
+
+  /**
+   * Load the portion in the given structure file, from the cache if it was already converted.
+   *
+   * @return The portion or null if the file is invalid.
+   */
+  @Nullable
+  private static LoadedPortion loadOverride(Identifier id, Resource resource, ChunkPortions.Type type) {
+    try {
+      final byte[] bytes;
+      try (final InputStream stream = resource.getInputStream()) {
+        bytes = stream.readAllBytes();
+      }
+      final HashCode hash = Hashing.sha256().hashBytes(bytes);
+      final Path cacheFile = getCacheDirectory().resolve(hash + "-" + CONVERTER_VERSION + ".bin");
+
+      ChunkPortion portion = readCache(cacheFile);
+      if (portion == null) {
+        portion = convert(id, bytes, type);
+        if (portion == null)
+          return null;
+        writeCache(cacheFile, portion);
+      }
+      if (portion.getHeight() != ChunkPortions.getDefaultHeight(type)) {
+        InfiniteCity.LOGGER.warn("Ignoring chunk portion {}: expected a height of {}, got {}",
+            id, ChunkPortions.getDefaultHeight(type), portion.getHeight());
+        return null;
+      }
+      return new LoadedPortion(portion, hash);
+    } catch (IOException | RuntimeException e) {
+      InfiniteCity.LOGGER.error("Could not load chunk portion {}", id, e);
+      return null;
+    }
+  }
+
+  /**
+   * Convert a structure file into a portion.
+   *
+   * @return The portion or null if the structure does not fit in a chunk.
+   */
+  @Nullable
+  private static ChunkPortion convert(Identifier id, byte[] bytes, ChunkPortions.Type type) throws IOException {
+    NbtCompound nbt = NbtIo.readCompressed(new ByteArrayInputStream(bytes), NbtTagSizeTracker.ofUnlimitedBytes());
+    nbt = DataFixTypes.STRUCTURE.update(Schemas.getFixer(), nbt, NbtHelper.getDataVersion(nbt, 500));
+
+    final NbtList size = nbt.getList("size", NbtElement.INT_TYPE);
+    final int sizeX = size.getInt(0), sizeY = size.getInt(1), sizeZ = size.getInt(2);
+    if (sizeX > 16 || sizeZ > 16 || sizeY <= 0) {
+      InfiniteCity.LOGGER.warn("Ignoring chunk portion {}: structures must be at most 16×16 blocks wide, got {}×{}",
+          id, sizeX, sizeZ);
+      return null;
+    }
+
+    // Structures saved with several palettes pick one at random, only the first one is used here
+    final NbtList paletteNbt = nbt.contains("palettes", NbtElement.LIST_TYPE)
+        ? nbt.getList("palettes", NbtElement.LIST_TYPE).getList(0)
+        : nbt.getList("palette", NbtElement.COMPOUND_TYPE);
+    final RegistryEntryLookup<Block> blockLookup = Registries.BLOCK.getReadOnlyWrapper();
+    final BlockState[] palette = new BlockState[paletteNbt.size()];
+    for (int i = 0; i < palette.length; i++) {
+      palette[i] = NbtHelper.toBlockState(blockLookup, paletteNbt.getCompound(i));
+      if (palette[i].getBlock() instanceof CompositeBlock compositeBlock)
+        palette[i] = compositeBlock.getCollapsedState(palette[i]);
+    }
+
+    final ChunkPortion portion = new ChunkPortion(sizeY);
+    final NbtList blocks = nbt.getList("blocks", NbtElement.COMPOUND_TYPE);
+    for (int i = 0; i < blocks.size(); i++) {
+      final NbtCompound block = blocks.getCompound(i);
+      final NbtList pos = block.getList("pos", NbtElement.INT_TYPE);
+      portion.setBlock(pos.getInt(0), pos.getInt(2), pos.getInt(1), palette[block.getInt("state")]);
+    }
+    InfiniteCity.LOGGER.debug("Converted chunk portion {} for type {}", id, type);
+    return portion;
+  }
+
+  @Nullable
+  private static ChunkPortion readCache(Path file) {
+    if (!Files.isRegularFile(file))
+      return null;
+    try (final var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      return ChunkPortions.readPortion(in);
+    } catch (IOException | RuntimeException e) {
+      // The cache will be overwritten with a fresh conversion
+      InfiniteCity.LOGGER.warn("Could not read cached chunk portion {}", file, e);
+      return null;
+    }
+  }
+
+  private static void writeCache(Path file, ChunkPortion portion) {
+    try {
+      Files.createDirectories(file.getParent());
+      // Write to a temporary file first so that a concurrent reader never sees a partial file
+      final Path tmpFile = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+      try (final var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile)))) {
+        ChunkPortions.writePortion(portion, out);
+      }
+      Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      InfiniteCity.LOGGER.warn("Could not cache chunk portion {}", file, e);
+    }
+  }
+
+  /**
+   * A portion loaded from a data pack.
+   *
+   * @param portion The portion.
+   * @param hash    The hash of its structure file.
+   */
+  record LoadedPortion(ChunkPortion portion, HashCode hash) {
+  }
+}
@@ -1,12 +1,21 @@
 package net.darmo_creations.infinitecity.chunk_gen;
 
+import com.mojang.brigadier.exceptions.*;
+import net.darmo_creations.infinitecity.*;
 import net.darmo_creations.infinitecity.blocks.*;
+import net.fabricmc.loader.api.*;
+import net.fabricmc.loader.api.metadata.*;
 import net.minecraft.block.*;
 import net.minecraft.block.enums.*;
+import net.minecraft.command.argument.*;
+import net.minecraft.registry.*;
 import net.minecraft.util.*;
 import net.minecraft.util.math.*;
+import org.jetbrains.annotations.*;
 
+import java.io.*;
 import java.util.*;
+import java.util.function.*;
 
 import static net.darmo_creations.infinitecity.chunk_gen.ChunkGeneratorBlocks.*;
 
@@ -16,102 +25,107 @@ import static net.darmo_creations.infinitecity.chunk_gen.ChunkGeneratorBlocks.*;
  * All {@link ChunkPortion}s are directed towards the east (south-east for corners) by default,
  * i.e. when no rotation nor mirroring is applied.
  * <p>
- * {@link ChunkPortion}s for all rotations and mirrorings are lazily created and cached.
+ * {@link ChunkPortion}s for all rotations and mirrorings are loaded when this class is initialized
+ * from the resource at {@link #RESOURCE_PATH}, which is written by {@link ChunkPortionsProvider} when running
+ * the {@code runDatagen} Gradle task and packaged by the {@code jar} task, which runs it.
+ * If the resource is missing, was built for another {@link InfiniteCityChunkGenerator#VERSION} or from other
+ * sources than those of the running mod (see {@link #getSourcesHash()}), they are built from the definitions
+ * in this class instead.
+ * <p>
+ * Data packs may replace the default portion of each type, see {@link ChunkPortionOverrides}.
  *
  * @see InfiniteCityChunkGenerator
  */
 final class ChunkPortions {
-  // Chunk portion caches
-  private static final Map<BlockRotation, ChunkPortion> COLUMN_CORNER = new HashMap<>();
-  private static final Map<BlockRotation, Map<BlockMirror, ChunkPortion>> COLUMN_SIDE = new HashMap<>();
-  private static final Map<BlockRotation, ChunkPortion> FACADE_EDGES_CORNER = new HashMap<>();
-  private static final Map<BlockRotation, ChunkPortion> FACADE_EDGES_SIDE = new HashMap<>();
-  private static final Map<BlockRotation, ChunkPortion> INNER_RING_CORNER = new HashMap<>();
-  private static final Map<BlockRotation, ChunkPortion> INNER_RING_SIDE = new HashMap<>();
-  private static final Map<BlockRotation, ChunkPortion> DESERT_OUTER_EDGE_CORNER = new HashMap<>();
-  private static final Map<BlockRotation, ChunkPortion> DESERT_OUTER_EDGE_SIDE = new HashMap<>();
-  private static final Map<BlockRotation, ChunkPortion> DESERT_INNER_EDGE_CORNER = new HashMap<>();
-  private static final Map<BlockRotation, ChunkPortion> DESERT_INNER_EDGE_SIDE = new HashMap<>();
-  private static final Map<BlockRotation, ChunkPortion> SMALL_ANTENNA_HORIZ = new HashMap<>();
+  /**
+   * Path of the resource that holds all portions.
+   */
+  static final String RESOURCE_PATH = InfiniteCity.MOD_ID + "/chunk_portions.bin";
+  private static final int FORMAT_VERSION = 2;
+  /**
+   * Key of the custom value of this mod’s metadata that holds the hash of the sources portions are built from,
+   * computed by the build script.
+   */
+  private static final String SOURCES_HASH_KEY = InfiniteCity.MOD_ID + ":portion_sources_hash";
+
+  /**
+   * The portions defined by this mod, indexed by type, rotation and mirroring.
+   */
+  private static final ChunkPortion[][][] DEFAULT_PORTIONS = load();
+  /**
+   * The portions currently in use, indexed by type, rotation and mirroring.
+   */
+  private static volatile ChunkPortion[][][] portions = DEFAULT_PORTIONS;
+  private static volatile long overridesHash;
 
   /**
    * Return the column corner for the given rotation.
    */
   public static ChunkPortion getColumnCorner(BlockRotation rotation) {
-    return forRotation(COLUMN_CORNER, rotation, ChunkPortions::initDefaultColumnCorner);
+    return get(Type.COLUMN_CORNER, rotation, BlockMirror.NONE);
   }
 
   /**
    * Return the column side for the given rotation and mirroring.
    */
   public static ChunkPortion getColumnSide(BlockRotation rotation, BlockMirror mirror) {
-    if (!COLUMN_SIDE.containsKey(BlockRotation.NONE)
-        || !COLUMN_SIDE.get(BlockRotation.NONE).containsKey(BlockMirror.NONE))
-      initDefaultColumnSide();
-    if (!COLUMN_SIDE.containsKey(rotation))
-      COLUMN_SIDE.put(rotation, new HashMap<>());
-    final var forRotation = COLUMN_SIDE.get(rotation);
-    if (!forRotation.containsKey(mirror)) {
-      ChunkPortion defaultCP = COLUMN_SIDE.get(BlockRotation.NONE).get(BlockMirror.NONE);
-      forRotation.put(mirror, defaultCP.withRotation(rotation).withMirror(mirror));
-    }
-    return forRotation.get(mirror);
+    return get(Type.COLUMN_SIDE, rotation, mirror);
   }
 
   /**
    * Return the building facade edge corner (top + bottom) for the given rotation.
    */
   public static ChunkPortion getFacadeEdgesCorner(BlockRotation rotation) {
-    return forRotation(FACADE_EDGES_CORNER, rotation, ChunkPortions::initDefaultFacadeEdgesCorner);
+    return get(Type.FACADE_EDGES_CORNER, rotation, BlockMirror.NONE);
   }
 
   /**
    * Return the building facade edge side (top + bottom) for the given rotation.
    */
   public static ChunkPortion getFacadeEdgesSide(BlockRotation rotation) {
-    return forRotation(FACADE_EDGES_SIDE, rotation, ChunkPortions::initDefaultFacadeEdgesSide);
+    return get(Type.FACADE_EDGES_SIDE, rotation, BlockMirror.NONE);
   }
 
   /**
    * Return the hole inner ring corner for the given rotation.
    */
   public static ChunkPortion getInnerRingCorner(BlockRotation rotation) {
-    return forRotation(INNER_RING_CORNER, rotation, ChunkPortions::initDefaultInnerRingCorner);
+    return get(Type.INNER_RING_CORNER, rotation, BlockMirror.NONE);
   }
 
   /**
    * Return the hole inner ring side for the given rotation.
    */
   public static ChunkPortion getInnerRingSide(BlockRotation rotation) {
-    return forRotation(INNER_RING_SIDE, rotation, ChunkPortions::initDefaultInnerRingSide);
+    return get(Type.INNER_RING_SIDE, rotation, BlockMirror.NONE);
   }
 
   /**
    * Return the desert block outer edge corner for the given rotation.
    */
   public static ChunkPortion getDesertOuterEdgeCorner(BlockRotation rotation) {
-    return forRotation(DESERT_OUTER_EDGE_CORNER, rotation, ChunkPortions::initDefaultDesertOuterEdgeCorner);
+    return get(Type.DESERT_OUTER_EDGE_CORNER, rotation, BlockMirror.NONE);
   }
 
   /**
    * Return the desert block outer edge side for the given rotation.
    */
   public static ChunkPortion getDesertOuterEdgeSide(BlockRotation rotation) {
-    return forRotation(DESERT_OUTER_EDGE_SIDE, rotation, ChunkPortions::initDefaultDesertOuterEdgeSide);
+    return get(Type.DESERT_OUTER_EDGE_SIDE, rotation, BlockMirror.NONE);
   }
 
   /**
    * Return the desert block inner edge corner for the given rotation.
    */
   public static ChunkPortion getDesertInnerEdgeCorner(BlockRotation rotation) {
-    return forRotation(DESERT_INNER_EDGE_CORNER, rotation, ChunkPortions::initDefaultDesertInnerEdgeCorner);
+    return get(Type.DESERT_INNER_EDGE_CORNER, rotation, BlockMirror.NONE);
   }
 
   /**
    * Return the desert block inner edge side for the given rotation.
    */
   public static ChunkPortion getDesertInnerEdgeSide(BlockRotation rotation) {
-    return forRotation(DESERT_INNER_EDGE_SIDE, rotation, ChunkPortions::initDefaultDesertInnerEdgeSide);
+    return get(Type.DESERT_INNER_EDGE_SIDE, rotation, BlockMirror.NONE);
   }
 
   /**
@@ -119,33 +133,220 @@ final class ChunkPortions {
    * The antenna is centered at (x = 8, z = 8) when no rotation is applied.
    */
   public static ChunkPortion getSmallHorizontalAntenna(BlockRotation rotation) {
-    return forRotation(SMALL_ANTENNA_HORIZ, rotation, ChunkPortions::initSmallHorizontalAntenna);
+    return get(Type.SMALL_ANTENNA_HORIZ, rotation, BlockMirror.NONE);
+  }
+
+  private static ChunkPortion get(Type type, BlockRotation rotation, BlockMirror mirror) {
+    return portions[type.ordinal()][rotation.ordinal()][mirror.ordinal()];
+  }
+
+  /**
+   * Replace the default portions of some types. Portions of the other types are reset to their default.
+   *
+   * @param overrides The portions to use instead of the default ones, by type.
+   * @param hash      A hash of the overrides, 0 if there are none.
+   */
+  static void setOverrides(Map<Type, ChunkPortion> overrides, long hash) {
+    final ChunkPortion[][][] newPortions = DEFAULT_PORTIONS.clone();
+    overrides.forEach((type, portion) -> newPortions[type.ordinal()] = buildRotations(type, portion));
+    portions = newPortions;
+    overridesHash = hash;
+  }
+
+  /**
+   * Return the height of the default portion of the given type.
+   */
+  static int getDefaultHeight(Type type) {
+    return DEFAULT_PORTIONS[type.ordinal()][0][0].getHeight();
+  }
+
+  /**
+   * Return the hash of the portions that currently replace the default ones, 0 if there are none.
+   */
+  static long getOverridesHash() {
+    return overridesHash;
+  }
+
+  /**
+   * Build all portions from the definitions in this class.
+   *
+   * @return All portions, indexed by type, rotation and mirroring.
+   * Portion types that are never mirrored only have a portion for {@link BlockMirror#NONE}.
+   */
+  static ChunkPortion[][][] build() {
+    final Type[] types = Type.values();
+    final ChunkPortion[][][] portions = new ChunkPortion[types.length][][];
+    for (final Type type : types)
+      portions[type.ordinal()] = buildRotations(type, type.factory.get());
+    return portions;
+  }
+
+  /**
+   * Build all rotations and mirrorings of a portion.
+   *
+   * @param type           The portion’s type.
+   * @param defaultPortion The portion, with no rotation nor mirroring applied.
+   * @return The portions, indexed by rotation and mirroring.
+   */
+  private static ChunkPortion[][] buildRotations(Type type, ChunkPortion defaultPortion) {
+    final BlockRotation[] rotations = BlockRotation.values();
+    final BlockMirror[] mirrors = type.getMirrors();
+    final ChunkPortion[][] portions = new ChunkPortion[rotations.length][mirrors.length];
+    for (final BlockRotation rotation : rotations) {
+      final ChunkPortion rotated = defaultPortion.withRotation(rotation);
+      for (final BlockMirror mirror : mirrors)
+        portions[rotation.ordinal()][mirror.ordinal()] = rotated.withMirror(mirror);
+    }
+    return portions;
   }
 
   /**
-   * Return the {@link ChunkPortion} from the given map for a specific rotation,
-   * calling {@code initDefault} first if it does not exist yet.
+   * Return the hash of the sources portions are built from, as computed by the build script.
+   *
+   * @return The hash or an empty string if the mod’s metadata does not have it.
+   */
+  private static String getSourcesHash() {
+    return FabricLoader.getInstance().getModContainer(InfiniteCity.MOD_ID)
+        .map(mod -> mod.getMetadata().getCustomValue(SOURCES_HASH_KEY))
+        .filter(value -> value.getType() == CustomValue.CvType.STRING)
+        .map(CustomValue::getAsString)
+        .orElse("");
+  }
+
+  /**
+   * Write the given portions in the format of the resource at {@link #RESOURCE_PATH}.
    * <p>
-   * This method handles lazy creation and caching.
+   * The resource starts with the format and generator versions and the hash of the sources
+   * (see {@link #getSourcesHash()}), followed by the palette of all block states
+   * and the portions of each type, in the order of {@link #build()}.
    *
-   * @param map         The map to query the portion from.
-   * @param rotation    The rotation to apply to the default portion.
-   * @param initDefault A callback to invoke if the default portion has not been created yet.
-   * @return The portion for the given rotation.
+   * @param portions The portions to write, as returned by {@link #build()}.
+   * @param out      The stream to write to.
+   * @throws IOException If the stream could not be written to.
    */
-  private static ChunkPortion forRotation(Map<BlockRotation, ChunkPortion> map, BlockRotation rotation, Callback initDefault) {
-    if (!map.containsKey(BlockRotation.NONE))
-      initDefault.invoke();
-    if (!map.containsKey(rotation))
-      map.put(rotation, map.get(BlockRotation.NONE).withRotation(rotation));
-    return map.get(rotation);
+  static void write(ChunkPortion[][][] portions, DataOutputStream out) throws IOException {
+    final Map<BlockState, Integer> palette = new LinkedHashMap<>();
+    for (final var forType : portions)
+      for (final var forRotation : forType)
+        for (final ChunkPortion portion : forRotation)
+          portion.forEachBlockState(state -> palette.putIfAbsent(state, palette.size()));
+
+    out.writeInt(FORMAT_VERSION);
+    out.writeInt(InfiniteCityChunkGenerator.VERSION);
+    out.writeUTF(getSourcesHash());
+    writePalette(palette.keySet(), out);
+    for (final Type type : Type.values()) {
+      out.writeUTF(type.name());
+      for (final ChunkPortion portion : flatten(portions[type.ordinal()]))
+        portion.write(out, palette::get);
+    }
+  }
+
+  /**
+   * Load all portions from the resource at {@link #RESOURCE_PATH}, building them if it cannot be used.
+   */
+  private static ChunkPortion[][][] load() {
+    try (final InputStream stream = ChunkPortions.class.getResourceAsStream("/" + RESOURCE_PATH)) {
+      if (stream != null) {
+        final ChunkPortion[][][] portions = read(new DataInputStream(new BufferedInputStream(stream)));
+        if (portions != null)
+          return portions;
+        InfiniteCity.LOGGER.warn("Chunk portions resource is outdated, building portions instead");
+      } else
+        InfiniteCity.LOGGER.warn("Chunk portions resource is missing, building portions instead");
+    } catch (IOException | RuntimeException e) {
+      InfiniteCity.LOGGER.error("Could not read chunk portions resource, building portions instead", e);
+    }
+    return build();
+  }
+
+  /**
+   * Read portions written by {@link #write(ChunkPortion[][][], DataOutputStream)}.
+   *
+   * @return The portions or null if they were written for another version of the format or generator,
+   * or from other sources.
+   */
+  @Nullable
+  private static ChunkPortion[][][] read(DataInputStream in) throws IOException {
+    if (in.readInt() != FORMAT_VERSION || in.readInt() != InfiniteCityChunkGenerator.VERSION)
+      return null;
+    final String sourcesHash = getSourcesHash();
+    if (sourcesHash.isEmpty() || !in.readUTF().equals(sourcesHash))
+      return null;
+    final BlockState[] palette = readPalette(in);
+    final Type[] types = Type.values();
+    final BlockRotation[] rotations = BlockRotation.values();
+    final ChunkPortion[][][] portions = new ChunkPortion[types.length][rotations.length][];
+    for (final Type type : types) {
+      if (!in.readUTF().equals(type.name()))
+        return null;
+      final BlockMirror[] mirrors = type.getMirrors();
+      for (final BlockRotation rotation : rotations) {
+        portions[type.ordinal()][rotation.ordinal()] = new ChunkPortion[mirrors.length];
+        for (final BlockMirror mirror : mirrors)
+          portions[type.ordinal()][rotation.ordinal()][mirror.ordinal()] = ChunkPortion.read(in, palette);
+      }
+    }
+    return portions;
+  }
+
+  /**
+   * Write a single portion along with its palette.
+   *
+   * @param portion The portion to write.
+   * @param out     The stream to write to.
+   * @throws IOException If the stream could not be written to.
+   */
+  static void writePortion(ChunkPortion portion, DataOutputStream out) throws IOException {
+    final Map<BlockState, Integer> palette = new LinkedHashMap<>();
+    portion.forEachBlockState(state -> palette.putIfAbsent(state, palette.size()));
+    out.writeInt(FORMAT_VERSION);
+    writePalette(palette.keySet(), out);
+    portion.write(out, palette::get);
+  }
+
+  /**
+   * Read a portion written by {@link #writePortion(ChunkPortion, DataOutputStream)}.
+   *
+   * @return The portion or null if it was written for another version of the format.
+   */
+  @Nullable
+  static ChunkPortion readPortion(DataInputStream in) throws IOException {
+    if (in.readInt() != FORMAT_VERSION)
+      return null;
+    return ChunkPortion.read(in, readPalette(in));
+  }
+
+  private static void writePalette(Collection<BlockState> palette, DataOutput out) throws IOException {
+    out.writeInt(palette.size());
+    for (final BlockState state : palette)
+      out.writeUTF(BlockArgumentParser.stringifyBlockState(state));
+  }
+
+  private static BlockState[] readPalette(DataInput in) throws IOException {
+    final BlockState[] palette = new BlockState[in.readInt()];
+    for (int i = 0; i < palette.length; i++) {
+      try {
+        palette[i] = BlockArgumentParser.block(Registries.BLOCK.getReadOnlyWrapper(), in.readUTF(), false).blockState();
+      } catch (CommandSyntaxException e) {
+        throw new IOException(e);
+      }
+    }
+    return palette;
+  }
+
+  private static List<ChunkPortion> flatten(ChunkPortion[][] portions) {
+    final List<ChunkPortion> list = new ArrayList<>();
+    for (final var forRotation : portions)
+      list.addAll(Arrays.asList(forRotation));
+    return list;
   }
 
   /*
    * Methods that create the default chunk portions.
    */
 
-  private static void initDefaultColumnCorner() {
+  private static ChunkPortion createDefaultColumnCorner() {
     final int height = InfiniteCityChunkGenerator.COLUMN_HEIGHT;
     final ChunkPortion chunkPortion = new ChunkPortion(height);
 
@@ -154,12 +355,10 @@ final class ChunkPortions {
 
     chunkPortion.fill(0, 4, 0, 4, 24, height - 24, TERRAIN);
 
-    COLUMN_CORNER.put(BlockRotation.NONE, chunkPortion);
+    return chunkPortion;
   }
 
-  private static void initDefaultColumnSide() {
-    if (!COLUMN_SIDE.containsKey(BlockRotation.NONE))
-      COLUMN_SIDE.put(BlockRotation.NONE, new HashMap<>());
+  private static ChunkPortion createDefaultColumnSide() {
     final int height = InfiniteCityChunkGenerator.COLUMN_HEIGHT;
     final ChunkPortion chunkPortion = new ChunkPortion(height);
 
@@ -186,14 +385,14 @@ final class ChunkPortions {
     chunkPortion.fillMirrorTop(8, 9, 0, 8, 29, 30, stairsWest, stairsWestTop);
     chunkPortion.fillMirrorTop(8, 9, 0, 8, 28, 29, TERRAIN);
 
-    COLUMN_SIDE.get(BlockRotation.NONE).put(BlockMirror.NONE, chunkPortion);
+    return chunkPortion;
   }
 
-  private static void initDefaultFacadeEdgesCorner() {
+  private static ChunkPortion createDefaultFacadeEdgesCorner() {
     final int height = InfiniteCityChunkGenerator.FACADE_HEIGHT;
     final ChunkPortion chunkPortion = new ChunkPortion(height);
 
-    final int edgeHeight = 8;
+    final int edgeHeight = FacadeLayout.EDGE_HEIGHT;
     final int width = 4;
     final int x0 = width - 1;
     final int z0 = width - 1;
@@ -214,14 +413,14 @@ final class ChunkPortions {
     chunkPortion.setBlockMirror(x0, z0, edgeHeight - 1, stairsCorner, stairsCornerTop);
     chunkPortion.setBlockMirror(x0, z0, 0, stairsCornerTop, stairsCorner);
 
-    FACADE_EDGES_CORNER.put(BlockRotation.NONE, chunkPortion);
+    return chunkPortion;
   }
 
-  private static void initDefaultFacadeEdgesSide() {
+  private static ChunkPortion createDefaultFacadeEdgesSide() {
     final int height = InfiniteCityChunkGenerator.FACADE_HEIGHT;
     final ChunkPortion chunkPortion = new ChunkPortion(height);
 
-    final int edgeHeight = 8;
+    final int edgeHeight = FacadeLayout.EDGE_HEIGHT;
     final int width = 4;
     final int x0 = width - 1;
     final BlockState stairsWest = STAIRS.with(StairsBlock.FACING, Direction.WEST);
@@ -230,10 +429,10 @@ final class ChunkPortions {
     chunkPortion.fillMirrorTop(x0, x0 + 1, 0, 16, edgeHeight - 1, edgeHeight, stairsWest, stairsWestTop);
     chunkPortion.fillMirrorTop(x0, x0 + 1, 0, 16, 0, 1, stairsWestTop, stairsWest);
 
-    FACADE_EDGES_SIDE.put(BlockRotation.NONE, chunkPortion);
+    return chunkPortion;
   }
 
-  private static void initDefaultInnerRingCorner() {
+  private static ChunkPortion createDefaultInnerRingCorner() {
     final int height = InfiniteCityChunkGenerator.INNER_RING_HEIGHT;
     final ChunkPortion chunkPortion = new ChunkPortion(height);
 
@@ -255,10 +454,10 @@ final class ChunkPortions {
     chunkPortion.fill(x0, x0 + 1, cornerWidth, 16, height - 1, height, stairsWest);
     chunkPortion.fill(x0, x0 + 1, cornerWidth, 16, 0, 1, stairsWestTop);
 
-    INNER_RING_CORNER.put(BlockRotation.NONE, chunkPortion);
+    return chunkPortion;
   }
 
-  private static void initDefaultInnerRingSide() {
+  private static ChunkPortion createDefaultInnerRingSide() {
     final int height = InfiniteCityChunkGenerator.INNER_RING_HEIGHT;
     final ChunkPortion chunkPortion = new ChunkPortion(height);
 
@@ -270,7 +469,7 @@ final class ChunkPortions {
     chunkPortion.fill(x0, x0 + 1, 0, 16, height - 1, height, stairsWest);
     chunkPortion.fill(x0, x0 + 1, 0, 16, 0, 1, stairsWestTop);
 
-    INNER_RING_SIDE.put(BlockRotation.NONE, chunkPortion);
+    return chunkPortion;
   }
 
   private static final int DESERT_EDGE_BLOCK_HALF_SIZE = 2;
@@ -280,7 +479,7 @@ final class ChunkPortions {
           + DESERT_EDGE_BLOCK_HALF_SIZE
           + 1;
 
-  private static void initDefaultDesertOuterEdgeCorner() {
+  private static ChunkPortion createDefaultDesertOuterEdgeCorner() {
     final int h = DESERT_EDGE_BLOCK_HALF_SIZE;
     final int height = DESERT_BLOCK_HEIGHT;
     final ChunkPortion chunkPortion = new ChunkPortion(height);
@@ -289,10 +488,10 @@ final class ChunkPortions {
     chunkPortion.fill(0, 1, 0, 1, 0, smallBlockBottomY, TERRAIN);
     chunkPortion.fill(0, h, 0, h, smallBlockBottomY, height, TERRAIN);
 
-    DESERT_OUTER_EDGE_CORNER.put(BlockRotation.NONE, chunkPortion);
+    return chunkPortion;
   }
 
-  private static void initDefaultDesertOuterEdgeSide() {
+  private static ChunkPortion createDefaultDesertOuterEdgeSide() {
     final int h = DESERT_EDGE_BLOCK_HALF_SIZE;
     final int height = DESERT_BLOCK_HEIGHT;
     final ChunkPortion chunkPortion = new ChunkPortion(height);
@@ -304,10 +503,10 @@ final class ChunkPortions {
     chunkPortion.fill(0, h, 0, h, smallBlockBottomY, height, TERRAIN);
     chunkPortion.fill(0, h, 16 - h, 16, smallBlockBottomY, height, TERRAIN);
 
-    DESERT_OUTER_EDGE_SIDE.put(BlockRotation.NONE, chunkPortion);
+    return chunkPortion;
   }
 
-  private static void initDefaultDesertInnerEdgeCorner() {
+  private static ChunkPortion createDefaultDesertInnerEdgeCorner() {
     final int h = DESERT_EDGE_BLOCK_HALF_SIZE;
     final int height = DESERT_BLOCK_HEIGHT;
     final ChunkPortion chunkPortion = new ChunkPortion(height);
@@ -319,10 +518,10 @@ final class ChunkPortions {
     chunkPortion.fill(16 - h, 16, 16 - h, 16, smallBlockBottomY, height, TERRAIN);
     chunkPortion.fill(0, h, 16 - h, 16, smallBlockBottomY, height, TERRAIN);
 
-    DESERT_INNER_EDGE_CORNER.put(BlockRotation.NONE, chunkPortion);
+    return chunkPortion;
   }
 
-  private static void initDefaultDesertInnerEdgeSide() {
+  private static ChunkPortion createDefaultDesertInnerEdgeSide() {
     final int h = DESERT_EDGE_BLOCK_HALF_SIZE;
     final int height = DESERT_BLOCK_HEIGHT;
     final ChunkPortion chunkPortion = new ChunkPortion(height);
@@ -332,10 +531,10 @@ final class ChunkPortions {
     chunkPortion.fill(16 - h, 16, 0, h, smallBlockBottomY, height, TERRAIN);
     chunkPortion.fill(16 - h, 16, 16 - h, 16, smallBlockBottomY, height, TERRAIN);
 
-    DESERT_INNER_EDGE_SIDE.put(BlockRotation.NONE, chunkPortion);
+    return chunkPortion;
   }
 
-  private static void initSmallHorizontalAntenna() {
+  private static ChunkPortion createSmallHorizontalAntenna() {
     final ChunkPortion chunkPortion = new ChunkPortion(3);
 
     final BlockState stairsWest = STAIRS.with(StairsBlock.FACING, Direction.WEST);
@@ -355,18 +554,40 @@ final class ChunkPortions {
     chunkPortion.fill(2, 9, 8, 9, 1, 2, thickPostH);
     chunkPortion.fill(9, 16, 8, 9, 1, 2, postH);
 
-    SMALL_ANTENNA_HORIZ.put(BlockRotation.NONE, chunkPortion);
+    return chunkPortion;
   }
 
   /**
-   * A callback takes no argument and returns nothing.
+   * Enumeration of all types of portions.
    */
-  @FunctionalInterface
-  private interface Callback {
+  enum Type {
+    COLUMN_CORNER(ChunkPortions::createDefaultColumnCorner, false),
+    COLUMN_SIDE(ChunkPortions::createDefaultColumnSide, true),
+    FACADE_EDGES_CORNER(ChunkPortions::createDefaultFacadeEdgesCorner, false),
+    FACADE_EDGES_SIDE(ChunkPortions::createDefaultFacadeEdgesSide, false),
+    INNER_RING_CORNER(ChunkPortions::createDefaultInnerRingCorner, false),
+    INNER_RING_SIDE(ChunkPortions::createDefaultInnerRingSide, false),
+    DESERT_OUTER_EDGE_CORNER(ChunkPortions::createDefaultDesertOuterEdgeCorner, false),
+    DESERT_OUTER_EDGE_SIDE(ChunkPortions::createDefaultDesertOuterEdgeSide, false),
+    DESERT_INNER_EDGE_CORNER(ChunkPortions::createDefaultDesertInnerEdgeCorner, false),
+    DESERT_INNER_EDGE_SIDE(ChunkPortions::createDefaultDesertInnerEdgeSide, false),
+    SMALL_ANTENNA_HORIZ(ChunkPortions::createSmallHorizontalAntenna, false),
+    ;
+
+    private final Supplier<ChunkPortion> factory;
+    private final boolean mirrored;
+
+    Type(Supplier<ChunkPortion> factory, boolean mirrored) {
+      this.factory = factory;
+      this.mirrored = mirrored;
+    }
+
     /**
-     * Invoke this callback.
+     * The mirrorings portions of this type exist for.
      */
-    void invoke();
+    private BlockMirror[] getMirrors() {
+      return this.mirrored ? BlockMirror.values() : new BlockMirror[]{BlockMirror.NONE};
+    }
   }
 
   private ChunkPortions() {
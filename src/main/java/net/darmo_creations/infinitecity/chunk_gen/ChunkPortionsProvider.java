@@ -0,0 +1,46 @@
+package net.darmo_creations.infinitecity.chunk_gen;
+
+import com.google.common.hash.*;
+import net.fabricmc.fabric.api.datagen.v1.*;
+import net.minecraft.data.*;
+import net.minecraft.util.*;
+
+import java.io.*;
+import java.util.concurrent.*;
+
+/**
+ * This data provider builds all {@link ChunkPortion}s and writes them into the resource
+ * that {@link ChunkPortions} loads at startup.
+ */
+public class ChunkPortionsProvider implements DataProvider {
+  private final FabricDataOutput output;
+
+  /**
+   * Create a provider that writes into the given output.
+   *
+   * @param output The data generator’s output.
+   */
+  public ChunkPortionsProvider(FabricDataOutput output) {
+    this.output = output;
+  }
+
+  @SuppressWarnings("deprecation") // Data providers hash their files with SHA-1
+  @Override
+  public CompletableFuture<?> run(DataWriter writer) {
+    return CompletableFuture.runAsync(() -> {
+      final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (final var out = new DataOutputStream(bytes)) {
+        ChunkPortions.write(ChunkPortions.build(), out);
+        final byte[] data = bytes.toByteArray();
+        writer.write(this.output.getPath().resolve(ChunkPortions.RESOURCE_PATH), data, Hashing.sha1().hashBytes(data));
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }, Util.getMainWorkerExecutor());
+  }
+
+  @Override
+  public String getName() {
+    return "Chunk portions";
+  }
+}
@@ -0,0 +1,197 @@
+package net.darmo_creations.infinitecity.chunk_gen;
+
+import net.minecraft.util.math.*;
+import net.minecraft.util.math.noise.*;
+
+import java.util.*;
+import java.util.function.*;
+
+import static net.darmo_creations.infinitecity.chunk_gen.InfiniteCityChunkGenerator.*;
+
+/**
+ * This class computes the positions of the floors entities can stand on in a city dimension
+ * directly from the generator’s layers and grids, without having to generate any chunk.
+ * <p>
+ * Only floors with enough free space above them are returned, i.e. areas that may contain
+ * columns, facade edges or edge structures are skipped.
+ * <p>
+ * Each generator keeps its own instance, see {@link InfiniteCityChunkGenerator#getFloors(long)}.
+ */
+public final class CityFloors {
+  /**
+   * Y position of a floor that exists in every column of worlds with the default {@link LayerPlan}, the roof of layer 4.
+   * It has {@link #UNIVERSAL_FLOOR_HEADROOM} blocks of free space above it.
+   */
+  public static final int UNIVERSAL_FLOOR_Y = LayerPlan.DEFAULT.getLayerY(5);
+  /**
+   * Height of the free space above {@link #UNIVERSAL_FLOOR_Y}.
+   */
+  public static final int UNIVERSAL_FLOOR_HEADROOM = LayerPlan.DEFAULT.getLayerY(6) - LayerPlan.DEFAULT.getLayerY(5);
+
+  private final LayerPlan plan;
+  private final long seed;
+  private final DoublePerlinNoiseSampler baseLayerSampler;
+  private final DoublePerlinNoiseSampler dunesSampler;
+
+  /**
+   * Create the floors of worlds with the given plan and seed.
+   *
+   * @param plan The layer plan of the world’s generator.
+   * @param seed The world’s seed.
+   */
+  CityFloors(LayerPlan plan, long seed) {
+    this.plan = plan;
+    this.seed = seed;
+    this.baseLayerSampler = createBaseLayerElevationSampler(seed);
+    this.dunesSampler = createDunesSampler(seed);
+  }
+
+  /**
+   * The seed of the world these floors are in.
+   */
+  long getSeed() {
+    return this.seed;
+  }
+
+  /**
+   * Return the Y position of a floor that exists in every column of the world, the roof of layer 4.
+   */
+  public int getUniversalFloorY() {
+    return this.plan.getLayerY(5);
+  }
+
+  /**
+   * Return the height of the free space above the floor returned by {@link #getUniversalFloorY()}.
+   */
+  public int getUniversalFloorHeadroom() {
+    return this.plan.getLayerY(6) - this.plan.getLayerY(5);
+  }
+
+  /**
+   * Return all floors of the given column, from bottom to top.
+   *
+   * @param x The column’s X position.
+   * @param z The column’s Z position.
+   * @return The floors of the column.
+   */
+  public List<Floor> getFloors(int x, int z) {
+    final int chunkX = ChunkSectionPos.getSectionCoord(x);
+    final int chunkZ = ChunkSectionPos.getSectionCoord(z);
+    final List<Floor> floors = new ArrayList<>(5);
+
+    floors.add(new Floor(FloorType.BASE, this.getBaseLayerFloorY(x, z)));
+    floors.add(new Floor(FloorType.RINGS_ROOF, this.getUniversalFloorY()));
+    final boolean hasBuilding = this.plan.getBuildingsManager().shouldBeFilled(chunkX, chunkZ);
+    final boolean hasColumns = hasBuilding && this.plan.getColumnsManagers().stream().anyMatch(
+        gm -> gm.shouldBeFilled(chunkX, chunkZ) || gm.isPastEdge(chunkX, chunkZ).isPresent());
+    if (hasBuilding && !hasColumns)
+      floors.add(new Floor(FloorType.BUILDING_ROOF, this.plan.getLayerY(7)));
+    // Edges of layer 10 hang one block below it, right above the roof
+    final ChunkGridManager bigBlocksManager = this.plan.getBigBlocksManager();
+    if (!hasColumns && this.plan.getHolesManagers().stream().allMatch(gm -> gm.shouldBeFilled(chunkX, chunkZ))
+        && bigBlocksManager.isAtEdge(chunkX, chunkZ).isEmpty() && bigBlocksManager.isPastEdge(chunkX, chunkZ).isEmpty())
+      floors.add(new Floor(FloorType.HOLES_LAYER_ROOF, this.plan.getLayerY(9)));
+    if (this.isInDesert(chunkX, chunkZ))
+      floors.add(new Floor(FloorType.DESERT, this.plan.getLayerY(11)
+          + (int) Math.ceil(sampleDunesHeight(this.dunesSampler, this.plan, x, z))));
+
+    return floors;
+  }
+
+  /**
+   * Find the floor position nearest to the given position.
+   * Only the center column of each chunk is considered.
+   *
+   * @param target The position to search around.
+   * @param radius The maximum distance (in chunks) to search at.
+   * @param filter A predicate that floors have to match.
+   * @return The position right above the nearest floor or an empty value if none were found.
+   */
+  public Optional<BlockPos> findNearestFloor(BlockPos target, int radius, Predicate<Floor> filter) {
+    final ChunkPos center = new ChunkPos(target);
+    BlockPos best = null;
+    double bestDistance = Double.POSITIVE_INFINITY;
+    for (int r = 0; r <= radius; r++) {
+      // Columns in farther rings are at least that far from the target
+      final double minDistance = Math.max(0, (r - 1) * 16);
+      if (minDistance * minDistance > bestDistance)
+        break;
+      for (int dx = -r; dx <= r; dx++) {
+        for (int dz = -r; dz <= r; dz++) {
+          if (Math.max(Math.abs(dx), Math.abs(dz)) != r)
+            continue;
+          final int x = (center.x + dx) * 16 + 8;
+          final int z = (center.z + dz) * 16 + 8;
+          for (final Floor floor : this.getFloors(x, z)) {
+            if (!filter.test(floor))
+              continue;
+            final BlockPos pos = new BlockPos(x, floor.y(), z);
+            final double distance = pos.getSquaredDistance(target);
+            if (distance < bestDistance) {
+              best = pos;
+              bestDistance = distance;
+            }
+          }
+        }
+      }
+    }
+    return Optional.ofNullable(best);
+  }
+
+  private int getBaseLayerFloorY(int x, int z) {
+    // Elevation is constant over squares whose north-west corner is sampled
+    final int mask = ~(BASE_LAYER_ELEVATION_PRECISION - 1);
+    final double sample = sampleBaseLayerElevation(this.baseLayerSampler, x & mask, z & mask);
+    final int floor = MathHelper.floor(sample);
+    final int slab = sample - floor >= 0.5 ? 1 : 0;
+    return Math.max(LAYER_3, LAYER_2 + floor + slab);
+  }
+
+  /**
+   * Indicate whether the given chunk has dunes whose height is not altered by a nearby edge.
+   */
+  private boolean isInDesert(int chunkX, int chunkZ) {
+    final ChunkGridManager gridManager = this.plan.getBigBlocksManager();
+    return gridManager.shouldBeFilled(chunkX, chunkZ)
+        && gridManager.isAtEdge(chunkX, chunkZ).isEmpty()
+        && gridManager.isAtEdge(chunkX - 1, chunkZ).isEmpty()
+        && gridManager.isAtEdge(chunkX + 1, chunkZ).isEmpty()
+        && gridManager.isAtEdge(chunkX, chunkZ - 1).isEmpty()
+        && gridManager.isAtEdge(chunkX, chunkZ + 1).isEmpty();
+  }
+
+  /**
+   * A floor entities can stand on.
+   *
+   * @param type The type of floor.
+   * @param y    The Y position of the first air block above the floor.
+   */
+  public record Floor(FloorType type, int y) {
+  }
+
+  /**
+   * Enumeration of the types of floors.
+   */
+  public enum FloorType {
+    /**
+     * The thin terrain layer at the bottom of the world.
+     */
+    BASE,
+    /**
+     * The roof of the layer with concentric rings.
+     */
+    RINGS_ROOF,
+    /**
+     * The roof of a building of layer 6.
+     */
+    BUILDING_ROOF,
+    /**
+     * The roof of the layer with square holes.
+     */
+    HOLES_LAYER_ROOF,
+    /**
+     * The dunes atop a block of layer 10.
+     */
+    DESERT,
+  }
+}
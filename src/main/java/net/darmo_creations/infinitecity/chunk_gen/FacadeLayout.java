@@ -0,0 +1,110 @@
+package net.darmo_creations.infinitecity.chunk_gen;
+
+import net.minecraft.block.*;
+import net.minecraft.util.math.*;
+
+/**
+ * The layout of the windows of building facades.
+ * <p>
+ * Facades are generated on the sides of building chunks that face a hole of the buildings layer. Each window
+ * is a glass pane on the chunk’s outermost row, backed by a black or light block. Windows are never next
+ * to each other nor at the ends of a chunk’s side, so panes are surrounded by solid blocks on the sides
+ * along the facade and behind them. The edges of the facade (see {@link ChunkPortions#getFacadeEdgesSide})
+ * only cover the {@link #EDGE_HEIGHT} top and bottom blocks of the hole and windows are placed between them,
+ * so the block in front of a pane, in the neighbor chunk, is always air.
+ * <p>
+ * The connections of panes are thus fully determined by the layout. Panes are placed with their final
+ * connections by {@link #placeWindows} and are never marked for post-processing, so loading the chunks
+ * around a facade does not cause any shape update.
+ */
+final class FacadeLayout {
+  /**
+   * Height of the edges at the top and bottom of building facades.
+   */
+  public static final int EDGE_HEIGHT = 8;
+  /**
+   * Positions of the windows along a chunk’s side, leaving a 4-block wide wall in the middle.
+   */
+  public static final int[] WINDOWS = {1, 3, 5, 10, 12, 14};
+
+  /**
+   * Place the windows of a facade chunk. Windows are two blocks high and placed every three blocks
+   * from the top of the facade downwards.
+   *
+   * @param holeDirection The directions of the holes the chunk faces.
+   * @param topY          The Y position of the top of the facade, below its top edge.
+   * @param bottomY       The Y position of the bottom of the facade, above its bottom edge.
+   * @param backBlocks    Returns the block to put behind the window at the given chunk-relative position.
+   * @param placer        Places a block at the given chunk-relative position.
+   */
+  public static void placeWindows(ChunkGridManager.HoleDirection holeDirection, int topY, int bottomY,
+                                  BlockProvider backBlocks, BlockPlacer placer) {
+    for (int y = topY; y - 3 > bottomY; y -= 3) {
+      for (final int d : WINDOWS) {
+        if (holeDirection.faces(Direction.NORTH) || holeDirection.faces(Direction.SOUTH))
+          placeWindow(holeDirection, d, y, holeDirection.faces(Direction.NORTH) ? 0 : 15,
+              0, holeDirection.faces(Direction.NORTH) ? 1 : -1, backBlocks, placer);
+        if (holeDirection.faces(Direction.WEST) || holeDirection.faces(Direction.EAST))
+          placeWindow(holeDirection, holeDirection.faces(Direction.WEST) ? 0 : 15, y, d,
+              holeDirection.faces(Direction.WEST) ? 1 : -1, 0, backBlocks, placer);
+      }
+    }
+  }
+
+  private static void placeWindow(ChunkGridManager.HoleDirection holeDirection, int x, int y, int z, int backDx, int backDz,
+                                  BlockProvider backBlocks, BlockPlacer placer) {
+    final BlockState pane = ChunkGeneratorBlocks.getGlassPane(getPaneConnections(holeDirection, x, z));
+    final BlockState back = backBlocks.get(x + backDx, y, z + backDz);
+    for (int dy = 2; dy <= 3; dy++) {
+      placer.place(x, y - dy, z, pane);
+      placer.place(x + backDx, y - dy, z + backDz, back);
+    }
+  }
+
+  /**
+   * Return the sides a window pane connects to.
+   *
+   * @param holeDirection The directions of the holes the pane’s chunk faces.
+   * @param x             The pane’s chunk-relative X position.
+   * @param z             The pane’s chunk-relative Z position.
+   * @return A mask where the bit {@code 1 << side.getHorizontal()} is set for each connected side.
+   */
+  public static int getPaneConnections(ChunkGridManager.HoleDirection holeDirection, int x, int z) {
+    int connections = 0;
+    for (final Direction side : Direction.Type.HORIZONTAL)
+      if (!isInHole(holeDirection, x + side.getOffsetX(), z + side.getOffsetZ()))
+        connections |= 1 << side.getHorizontal();
+    return connections;
+  }
+
+  /**
+   * Return whether the given chunk-relative position is in one of the holes faced by a chunk.
+   * Other positions next to a pane are terrain, another pane or a window’s back block,
+   * all of which panes connect to.
+   */
+  private static boolean isInHole(ChunkGridManager.HoleDirection holeDirection, int x, int z) {
+    return x < 0 && holeDirection.faces(Direction.WEST)
+        || x > 15 && holeDirection.faces(Direction.EAST)
+        || z < 0 && holeDirection.faces(Direction.NORTH)
+        || z > 15 && holeDirection.faces(Direction.SOUTH);
+  }
+
+  /**
+   * Returns the block to place at a chunk-relative position.
+   */
+  @FunctionalInterface
+  public interface BlockProvider {
+    BlockState get(int x, int y, int z);
+  }
+
+  /**
+   * Places a block at a chunk-relative position.
+   */
+  @FunctionalInterface
+  public interface BlockPlacer {
+    void place(int x, int y, int z, BlockState blockState);
+  }
+
+  private FacadeLayout() {
+  }
+}
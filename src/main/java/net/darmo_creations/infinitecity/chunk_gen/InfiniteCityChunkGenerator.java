@@ -3,21 +3,29 @@ package net.darmo_creations.infinitecity.chunk_gen;
 import com.mojang.serialization.*;
 import com.mojang.serialization.codecs.*;
 import net.darmo_creations.infinitecity.mixins.*;
+import net.darmo_creations.infinitecity.server.*;
 import net.minecraft.block.*;
+import net.minecraft.registry.*;
+import net.minecraft.registry.entry.*;
+import net.minecraft.server.world.*;
+import net.minecraft.structure.*;
 import net.minecraft.util.*;
 import net.minecraft.util.math.*;
 import net.minecraft.util.math.noise.*;
 import net.minecraft.util.math.random.*;
 import net.minecraft.world.*;
+import net.minecraft.world.biome.*;
 import net.minecraft.world.biome.source.*;
 import net.minecraft.world.chunk.*;
 import net.minecraft.world.gen.*;
 import net.minecraft.world.gen.chunk.*;
+import net.minecraft.world.gen.chunk.placement.*;
 import net.minecraft.world.gen.noise.*;
+import org.jetbrains.annotations.*;
 
 import java.util.*;
 import java.util.concurrent.*;
-import java.util.function.*;
+import java.util.concurrent.atomic.*;
 
 import static net.darmo_creations.infinitecity.chunk_gen.ChunkGenerationUtils.*;
 import static net.darmo_creations.infinitecity.chunk_gen.ChunkGeneratorBlocks.*;
@@ -26,7 +34,7 @@ import static net.darmo_creations.infinitecity.chunk_gen.ChunkPortions.*;
 /**
  * This chunk generator builds a world whose architecture is inspired by the game NaissanceE.
  * <p>
- * Layers:
+ * Layers, with the default {@link LayerPlan} (see {@link InfiniteCityChunkGeneratorConfig.LayerSettings}):
  * <ol>
  *  <li>[-2032] Single layer of bedrock
  *  <li>[-2031, -2030[ Thin layer of terrain blocks with small random elevation changes
@@ -55,39 +63,51 @@ public class InfiniteCityChunkGenerator extends ChunkGenerator {
           .apply(instance, instance.stable(InfiniteCityChunkGenerator::new))
   );
 
+  /**
+   * Version of the terrain built by this generator.
+   * Must be incremented whenever a change alters the blocks generated in existing chunks.
+   */
+  public static final int VERSION = 1;
+
   public static final int FACADE_HEIGHT = 401;
   public static final int COLUMN_HEIGHT = 128;
   public static final int INNER_RING_HEIGHT = 8;
+  public static final int RINGS_ROOF_HEIGHT = 32;
   public static final int DESERT_BLOCK_HEIGHT = 200;
   public static final int DESERT_BLOCK_EDGE_HEIGHT = 8;
+  public static final int BASE_LAYER_ELEVATION_PRECISION = 8;
 
   public static final int LAYER_1 = -2032; // Bedrock
   public static final int LAYER_2 = LAYER_1 + 1; // Thin terrain layer
   public static final int LAYER_3 = LAYER_2 + 1; // Empty space with columns, bridges, arches, etc.
-  public static final int LAYER_4 = LAYER_3 + 200; // Plain layer with concentric hollow rings with suspended bridges spanning the gap
-  public static final int LAYER_5 = LAYER_4 + 400; // TODO define
-  public static final int LAYER_6 = LAYER_5 + 200; // On-grid blocks with windowed facades
-  public static final int LAYER_7 = LAYER_6 + FACADE_HEIGHT; // Empty space with structures, hanging walkways and columns around holes of next layer
-  public static final int LAYER_8 = LAYER_7 + COLUMN_HEIGHT; // Plain layer with on-grid square holes containing various structures
-  public static final int LAYER_9 = LAYER_8 + 412; // Empty space with… TODO define
-  public static final int LAYER_10 = LAYER_9 + COLUMN_HEIGHT; // On-grid blocks
-  public static final int LAYER_11 = LAYER_10 + DESERT_BLOCK_HEIGHT; // Empty space with desert landscapes atop blocks of previous layer
   public static final int TOP = 2032; // Max allowed value
   public static final int WORLD_HEIGHT = TOP - LAYER_1;
-
-  private static final ChunkTorusesManager LAYER_4_CIRCLE_MANAGER = new ChunkTorusesManager(20, 50, 0, 0);
-  private static final ChunkGridManager LAYER_6_GRID_MANAGER = new ChunkGridManager(14, 4, 0, 0, false);
-  private static final List<ChunkGridManager> LAYER_8_GRID_MANAGERS = List.of(
-      new ChunkGridManager(8, 28, 12, 12, true),
-      new ChunkGridManager(8, 28, -6, -6, true)
-  );
-  private static final List<ChunkGridManager> COLUMNS_GRID_MANAGERS = List.of(
-      new ChunkGridManager(2, 10, 9, 9, false),
-      new ChunkGridManager(2, 10, -9, -9, false)
-  );
-  private static final ChunkGridManager LAYER_10_GRID_MANAGER = new ChunkGridManager(32, 4, 0, 0, false);
+  /**
+   * Vertical distance from players within which natural spawning is attempted.
+   * Mobs farther than this from every player despawn immediately, see {@link net.minecraft.entity.SpawnGroup#getImmediateDespawnRange()}.
+   */
+  private static final int SPAWN_RANGE = 128;
 
   private final InfiniteCityChunkGeneratorConfig config;
+  private final LayerPlan plan;
+  private final GenerationScheduler scheduler = new GenerationScheduler();
+  @Nullable
+  private volatile ChunkTemplateStore templateStore;
+  private final Map<RegistryEntry<Biome>, ReadableContainer<RegistryEntry<Biome>>> sharedBiomeContainers = new ConcurrentHashMap<>();
+  /**
+   * The shared container holding the single biome of this generator’s config.
+   */
+  @Nullable
+  private volatile ReadableContainer<RegistryEntry<Biome>> fixedBiomeContainer;
+  @Nullable
+  private volatile CityFloors floors;
+  private long spawnAttempts;
+  private long naturalSpawns;
+  // Total duration of each generation stage, in nanoseconds
+  private final AtomicLong biomesNanos = new AtomicLong();
+  private final AtomicLong noiseNanos = new AtomicLong();
+  private final AtomicLong surfaceNanos = new AtomicLong();
+  private final AtomicLong generatedChunks = new AtomicLong();
 
   /**
    * Create a chunk generator for the given config.
@@ -97,6 +117,9 @@ public class InfiniteCityChunkGenerator extends ChunkGenerator {
   public InfiniteCityChunkGenerator(InfiniteCityChunkGeneratorConfig config) {
     super(new FixedBiomeSource(config.biome()));
     this.config = config;
+    this.plan = config.layers().equals(InfiniteCityChunkGeneratorConfig.LayerSettings.DEFAULT)
+        ? LayerPlan.DEFAULT
+        : LayerPlan.compile(config.layers());
   }
 
   /**
@@ -106,68 +129,267 @@ public class InfiniteCityChunkGenerator extends ChunkGenerator {
     return this.config;
   }
 
+  /**
+   * Return a hash of everything the blocks of generated chunks depend on besides the seed:
+   * {@link #VERSION}, the chunk portions overridden by data packs, and this generator’s layers and biome.
+   * Chunks generated with different stamps may have different contents.
+   */
+  public long getContentStamp() {
+    long stamp = VERSION;
+    stamp = 31 * stamp + ChunkPortionOverrides.getHash();
+    stamp = 31 * stamp + this.config.layers().hashCode();
+    return 31 * stamp + this.config.biome().getKey().map(k -> k.getValue().toString()).orElse("").hashCode();
+  }
+
+  /**
+   * Get the layer plan compiled from this generator’s config.
+   */
+  public LayerPlan getPlan() {
+    return this.plan;
+  }
+
+  /**
+   * Return the floors of this generator’s world.
+   *
+   * @param seed The world’s seed.
+   * @return The floors of the world.
+   */
+  public CityFloors getFloors(long seed) {
+    // Creating the samplers is expensive, reuse them as long as the seed does not change
+    CityFloors floors = this.floors;
+    if (floors == null || floors.getSeed() != seed)
+      this.floors = floors = new CityFloors(this.plan, seed);
+    return floors;
+  }
+
+  /**
+   * Get the scheduler that starts this generator’s asynchronous tasks.
+   */
+  public GenerationScheduler getScheduler() {
+    return this.scheduler;
+  }
+
+  /**
+   * Get the store this generator copies the seed-independent parts of chunks from.
+   *
+   * @return The store or null if there is none.
+   */
+  @Nullable
+  public ChunkTemplateStore getTemplateStore() {
+    return this.templateStore;
+  }
+
+  /**
+   * Set the store this generator copies the seed-independent parts of chunks from.
+   *
+   * @param templateStore The store or null to generate all parts of chunks.
+   */
+  public void setTemplateStore(@Nullable ChunkTemplateStore templateStore) {
+    this.templateStore = templateStore;
+  }
+
   /**
    * Generate the base shape of the chunk out of the basic
    * block states as decided by this chunk generator’s config.
+   * <p>
+   * The task is started by this generator’s {@link GenerationScheduler}. Surface blocks only depend
+   * on the chunk itself, so they are placed by the same task instead of in
+   * {@link #buildSurface(ChunkRegion, StructureAccessor, NoiseConfig, Chunk)}.
    */
   @Override
   public CompletableFuture<Chunk> populateNoise(Executor executor, Blender blender, NoiseConfig noiseConfig, StructureAccessor structureAccessor, Chunk chunk) {
-    return CompletableFuture.supplyAsync(Util.debugSupplier(
+    final long seed = getSeed(structureAccessor);
+    ((SectionModificationTracker) chunk).infinitecity$setContentStamp(this.getContentStamp());
+    if (ServerConfig.shouldGenerateLazySections())
+      LazySections.deferSections(chunk, this.scheduler.getNearbyPlayersY(chunk.getPos()));
+    return this.scheduler.submit(chunk.getPos(), Util.debugSupplier(
         "wgen_fill_noise",
-        () -> populateNoise(chunk, structureAccessor)
+        () -> {
+          final long start = System.nanoTime();
+          this.populateNoise(chunk, seed);
+          final long surfaceStart = System.nanoTime();
+          this.buildSurface(chunk, seed);
+          final long surfaceEnd = System.nanoTime();
+          LazySections.fillPendingSections(chunk);
+          this.noiseNanos.addAndGet(surfaceStart - start + System.nanoTime() - surfaceEnd);
+          this.surfaceNanos.addAndGet(surfaceEnd - surfaceStart);
+          this.generatedChunks.incrementAndGet();
+          return chunk;
+        }
     ), Util.getMainWorkerExecutor());
   }
 
-  private static Chunk populateNoise(Chunk chunk, StructureAccessor structureAccessor) {
+  /**
+   * Synchronously generate all blocks of the given chunk, as {@link #populateNoise(Executor, Blender, NoiseConfig, StructureAccessor, Chunk)}
+   * and {@link #buildSurface(ChunkRegion, StructureAccessor, NoiseConfig, Chunk)} would.
+   *
+   * @param chunk The chunk to fill.
+   * @param seed  The world’s seed.
+   */
+  public void generateBlocks(Chunk chunk, long seed) {
+    this.populateNoise(chunk, seed);
+    this.buildSurface(chunk, seed);
+  }
+
+  /**
+   * Return the shared container equivalent to the given biome container.
+   *
+   * @param container A biome container.
+   * @return The shared container holding the same single biome,
+   * or the given container if it holds several biomes.
+   */
+  public ReadableContainer<RegistryEntry<Biome>> getSharedBiomeContainer(ReadableContainer<RegistryEntry<Biome>> container) {
+    final RegistryEntry<Biome> biome = container.get(0, 0, 0);
+    if (SharedSections.isShared(container) || container.hasAny(b -> b != biome))
+      return container;
+    return this.sharedBiomeContainers.computeIfAbsent(biome, b -> SharedSections.markShared(container));
+  }
+
+  /**
+   * Return the shared container holding the single biome of this generator’s config.
+   *
+   * @param biomeRegistry The registry of the biomes of this generator’s world.
+   * @return The shared container.
+   */
+  public ReadableContainer<RegistryEntry<Biome>> getFixedBiomeContainer(Registry<Biome> biomeRegistry) {
+    ReadableContainer<RegistryEntry<Biome>> container = this.fixedBiomeContainer;
+    if (container == null)
+      this.fixedBiomeContainer = container = this.getSharedBiomeContainer(
+          new PalettedContainer<>(biomeRegistry.getIndexedEntries(), this.config.biome(), PalettedContainer.PaletteProvider.BIOME));
+    return container;
+  }
+
+  /**
+   * Set the biomes of the given chunk. As the biome source is fixed, all sections reference
+   * the shared container holding the single biome of this generator’s config, no sampling is done.
+   */
+  @Override
+  public CompletableFuture<Chunk> populateBiomes(NoiseConfig noiseConfig, Blender blender, StructureAccessor structureAccessor, Chunk chunk) {
+    final long start = System.nanoTime();
+    final var biomes = this.getFixedBiomeContainer(((StructureAccessorAccessor) structureAccessor).getWorld()
+        .getRegistryManager().get(RegistryKeys.BIOME));
+    for (final ChunkSection section : chunk.getSectionArray())
+      ((ChunkSectionAccessor) section).setBiomeContainer(biomes);
+    this.biomesNanos.addAndGet(System.nanoTime() - start);
+    return CompletableFuture.completedFuture(chunk);
+  }
+
+  private Chunk populateNoise(Chunk chunk, long seed) {
     final var mutable = new BlockPos.Mutable();
     final ChunkPos chunkPos = chunk.getPos();
     final int chunkX = chunkPos.x;
     final int chunkZ = chunkPos.z;
-    generateBedrockLayer(chunk, mutable, chunkX, chunkZ);
-    generateBottomLayer(chunk, mutable, chunkX, chunkZ);
-    generateCirclesLayer(chunk, mutable, chunkX, chunkZ);
-    generateBuildingsLayer(chunk, mutable, chunkX, chunkZ, structureAccessor);
-    generateColumnsAroundHoles(chunk, mutable, chunkX, chunkZ, LAYER_7, LAYER_8);
-    generateLayerWithHoles(chunk, mutable, chunkX, chunkZ);
-    generateColumnsAroundHoles(chunk, mutable, chunkX, chunkZ, LAYER_9, LAYER_10);
-    generateBigBlocksAndDesertLayer(chunk, mutable, chunkX, chunkZ, structureAccessor);
+    final ChunkTemplateStore templateStore = this.templateStore;
+    final long archetype = this.getArchetype(chunkX, chunkZ);
+    if (templateStore == null || !templateStore.copyTemplate(chunk, archetype)) {
+      this.generateArchetype(chunk, mutable, chunkX, chunkZ);
+      if (templateStore != null)
+        templateStore.addTemplate(chunk, archetype);
+    }
+    // Parts that depend on the seed are generated on top of the archetype
+    if (this.plan.getBuildingsManager().shouldBeFilled(chunkX, chunkZ))
+      this.plan.getBuildingsManager().isAtEdge(chunkX, chunkZ).ifPresent(
+          d -> this.generateBuildingFacade(chunk, mutable, chunkX, chunkZ, d, seed));
+    if (this.plan.getBigBlocksManager().shouldBeFilled(chunkX, chunkZ) && this.plan.getBigBlocksManager().isAtEdge(chunkX, chunkZ).isEmpty()) {
+      this.generateDunes(chunk, mutable, chunkX, chunkZ, seed);
+      this.erodeDunesNearEdge(chunk, mutable, chunkX, chunkZ);
+    }
     return chunk;
   }
 
-  private static void generateBedrockLayer(Chunk chunk, BlockPos.Mutable mutable, int chunkX, int chunkZ) {
-    fillChunk(chunk, mutable, chunkX, chunkZ, LAYER_1, LAYER_2, BEDROCK);
+  /**
+   * Generate the parts of a chunk that do not depend on the world’s seed.
+   * These parts are the same for all chunks with the same {@link #getArchetype(int, int)}.
+   */
+  private void generateArchetype(Chunk chunk, BlockPos.Mutable mutable, int chunkX, int chunkZ) {
+    this.generateBedrockLayer(chunk, mutable, chunkX, chunkZ);
+    this.generateBottomLayer(chunk, mutable, chunkX, chunkZ);
+    this.generateCirclesLayer(chunk, mutable, chunkX, chunkZ);
+    this.generateBuildingsLayer(chunk, mutable, chunkX, chunkZ);
+    this.generateColumnsAroundHoles(chunk, mutable, chunkX, chunkZ, this.plan.getLayerY(7), this.plan.getLayerY(8));
+    this.generateLayerWithHoles(chunk, mutable, chunkX, chunkZ);
+    this.generateColumnsAroundHoles(chunk, mutable, chunkX, chunkZ, this.plan.getLayerY(9), this.plan.getLayerY(10));
+    this.generateBigBlocksLayer(chunk, mutable, chunkX, chunkZ);
   }
 
-  private static void generateBottomLayer(Chunk chunk, BlockPos.Mutable mutable, int chunkX, int chunkZ) {
-    fillChunkTerrain(chunk, mutable, chunkX, chunkZ, LAYER_2, LAYER_3);
+  /**
+   * Return the archetype of the given chunk, i.e. a value that identifies the seed-independent parts of the chunk.
+   * Two chunks with the same archetype have the same seed-independent parts.
+   *
+   * @param chunkX The chunk’s X position.
+   * @param chunkZ The chunk’s Z position.
+   * @return The chunk’s archetype.
+   */
+  long getArchetype(int chunkX, int chunkZ) {
+    long archetype = this.plan.getRingsManager().shouldBeFilled(chunkX, chunkZ) ? 1 : 0;
+
+    final boolean hasBuilding = this.plan.getBuildingsManager().shouldBeFilled(chunkX, chunkZ);
+    archetype = archetype << 1 | (hasBuilding ? 1 : 0);
+    archetype = archetype << 4 | (hasBuilding ? 0 : encodeDirection(this.plan.getBuildingsManager().isPastEdge(chunkX, chunkZ)));
+    for (final var gm : this.plan.getColumnsManagers()) {
+      // Columns are only generated on top of buildings
+      final boolean filled = hasBuilding && gm.shouldBeFilled(chunkX, chunkZ);
+      final var pastEdge = hasBuilding && !filled ? gm.isPastEdge(chunkX, chunkZ) : Optional.<ChunkGridManager.HoleDirection>empty();
+      final var xz = gm.getGridXZ(chunkX, chunkZ);
+      // Whether the column’s side is mirrored, see this.generateColumnsAroundHoles()
+      final boolean mirrored = pastEdge.map(d -> switch (d) {
+        case NORTH -> xz.getLeft() != 0;
+        case SOUTH -> xz.getLeft() != 1;
+        case WEST -> xz.getRight() != 1;
+        case EAST -> xz.getRight() != 0;
+        default -> false;
+      }).orElse(false);
+      archetype = archetype << 1 | (filled ? 1 : 0);
+      archetype = archetype << 4 | encodeDirection(pastEdge);
+      archetype = archetype << 1 | (mirrored ? 1 : 0);
+    }
+
+    archetype = archetype << 1 | (this.plan.getHolesManagers().stream().allMatch(gm -> gm.shouldBeFilled(chunkX, chunkZ)) ? 1 : 0);
+    for (final var gm : this.plan.getHolesManagers())
+      archetype = archetype << 4 | encodeDirection(gm.isPastEdge(chunkX, chunkZ));
+
+    final boolean hasBigBlock = this.plan.getBigBlocksManager().shouldBeFilled(chunkX, chunkZ);
+    archetype = archetype << 1 | (hasBigBlock ? 1 : 0);
+    archetype = archetype << 4 | encodeDirection(hasBigBlock
+        ? this.plan.getBigBlocksManager().isAtEdge(chunkX, chunkZ)
+        : this.plan.getBigBlocksManager().isPastEdge(chunkX, chunkZ));
+    return archetype;
   }
 
-  private static void generateBigBlocksAndDesertLayer(Chunk chunk, BlockPos.Mutable mutable, int chunkX, int chunkZ, StructureAccessor structureAccessor) {
-    if (LAYER_10_GRID_MANAGER.shouldBeFilled(chunkX, chunkZ)) {
-      fillChunkTerrain(chunk, mutable, chunkX, chunkZ, LAYER_10, LAYER_11);
-      final var atEdge = LAYER_10_GRID_MANAGER.isAtEdge(chunkX, chunkZ);
-      if (atEdge.isPresent()) {
-        fillChunkTerrain(chunk, mutable, chunkX, chunkZ, LAYER_11, LAYER_11 + DESERT_BLOCK_EDGE_HEIGHT); // Desert edge
-        generateDesertEgdePillars(chunk, mutable, chunkX, chunkZ);
-        generateBigBlocksInnerEdges(chunk, mutable, chunkX, chunkZ, atEdge.get());
-      } else {
-        generateDunes(chunk, mutable, chunkX, chunkZ, structureAccessor);
-        erodeDunesNearEdge(chunk, mutable, chunkX, chunkZ);
-      }
+  private static int encodeDirection(Optional<ChunkGridManager.HoleDirection> direction) {
+    return direction.map(d -> d.ordinal() + 1).orElse(0);
+  }
+
+  private void generateBedrockLayer(Chunk chunk, BlockPos.Mutable mutable, int chunkX, int chunkZ) {
+    this.fillLayer(chunk, mutable, chunkX, chunkZ, 1, BEDROCK);
+  }
+
+  private void generateBottomLayer(Chunk chunk, BlockPos.Mutable mutable, int chunkX, int chunkZ) {
+    this.fillLayer(chunk, mutable, chunkX, chunkZ, 2, TERRAIN);
+  }
+
+  private void generateBigBlocksLayer(Chunk chunk, BlockPos.Mutable mutable, int chunkX, int chunkZ) {
+    if (this.plan.getBigBlocksManager().shouldBeFilled(chunkX, chunkZ)) {
+      this.fillLayer(chunk, mutable, chunkX, chunkZ, 10, TERRAIN);
+      this.plan.getBigBlocksManager().isAtEdge(chunkX, chunkZ).ifPresent(d -> {
+        fillChunkTerrain(chunk, mutable, chunkX, chunkZ, this.plan.getLayerY(11), this.plan.getLayerY(11) + DESERT_BLOCK_EDGE_HEIGHT); // Desert edge
+        this.generateDesertEgdePillars(chunk, mutable, chunkX, chunkZ);
+        this.generateBigBlocksInnerEdges(chunk, mutable, chunkX, chunkZ, d);
+      });
     } else
-      LAYER_10_GRID_MANAGER.isPastEdge(chunkX, chunkZ)
-          .ifPresent(d -> generateBigBlocksOuterEdges(chunk, mutable, chunkX, chunkZ, d));
+      this.plan.getBigBlocksManager().isPastEdge(chunkX, chunkZ)
+          .ifPresent(d -> this.generateBigBlocksOuterEdges(chunk, mutable, chunkX, chunkZ, d));
   }
 
-  private static void generateDesertEgdePillars(Chunk chunk, BlockPos.Mutable mutable, int chunkX, int chunkZ) {
-    int y = LAYER_11 + DESERT_BLOCK_EDGE_HEIGHT;
+  private void generateDesertEgdePillars(Chunk chunk, BlockPos.Mutable mutable, int chunkX, int chunkZ) {
+    int y = this.plan.getLayerY(11) + DESERT_BLOCK_EDGE_HEIGHT;
     fill(chunk, mutable, chunkX, chunkZ, 6, 10, 6, 10, y, y += 4, TERRAIN);
     fill(chunk, mutable, chunkX, chunkZ, 5, 11, 5, 11, y, y += 6, TERRAIN);
     fill(chunk, mutable, chunkX, chunkZ, 4, 12, 4, 12, y, y + 8, TERRAIN);
   }
 
-  private static void generateBigBlocksInnerEdges(Chunk chunk, BlockPos.Mutable mutable, int chunkX, int chunkZ, ChunkGridManager.HoleDirection holeDirection) {
-    final int y = LAYER_10 - 1;
+  private void generateBigBlocksInnerEdges(Chunk chunk, BlockPos.Mutable mutable, int chunkX, int chunkZ, ChunkGridManager.HoleDirection holeDirection) {
+    final int y = this.plan.getLayerY(10) - 1;
     switch (holeDirection) {
       case NORTH -> getDesertInnerEdgeSide(BlockRotation.COUNTERCLOCKWISE_90)
           .placeInWorld(chunk, mutable, chunkX, chunkZ, y);
@@ -195,8 +417,8 @@ public class InfiniteCityChunkGenerator extends ChunkGenerator {
     }
   }
 
-  private static void generateBigBlocksOuterEdges(Chunk chunk, BlockPos.Mutable mutable, int chunkX, int chunkZ, ChunkGridManager.HoleDirection holeDirection) {
-    final int y = LAYER_10 - 1;
+  private void generateBigBlocksOuterEdges(Chunk chunk, BlockPos.Mutable mutable, int chunkX, int chunkZ, ChunkGridManager.HoleDirection holeDirection) {
+    final int y = this.plan.getLayerY(10) - 1;
     switch (holeDirection) {
       case NORTH -> getDesertOuterEdgeSide(BlockRotation.COUNTERCLOCKWISE_90)
           .placeInWorld(chunk, mutable, chunkX, chunkZ, y);
@@ -224,124 +446,97 @@ public class InfiniteCityChunkGenerator extends ChunkGenerator {
     }
   }
 
-  private static void generateDunes(Chunk chunk, BlockPos.Mutable mutable, int chunkX, int chunkZ, StructureAccessor structureAccessor) {
-    final var sampler = DoublePerlinNoiseSampler.create(getRandom(structureAccessor), -6, 1.0, 0.5);
+  private void generateDunes(Chunk chunk, BlockPos.Mutable mutable, int chunkX, int chunkZ, long seed) {
+    final var sampler = createDunesSampler(seed);
     for (int dx = 0; dx < 16; dx++) {
       final int x = getHPos(chunkX, dx);
       for (int dz = 0; dz < 16; dz++) {
         final int z = getHPos(chunkZ, dz);
-        final double sample = (sampler.sample(x, LAYER_11, z) + 1) * 10;
+        final double sample = sampleDunesHeight(sampler, this.plan, x, z);
         for (int dy = 0; dy < sample; dy++) {
-          chunk.setBlockState(mutable.set(x, LAYER_11 + dy, z), SAND, false);
+          chunk.setBlockState(mutable.set(x, this.plan.getLayerY(11) + dy, z), SAND, false);
         }
       }
     }
   }
 
-  private static void erodeDunesNearEdge(Chunk chunk, BlockPos.Mutable mutable, int chunkX, int chunkZ) {
-    final int edgeTop = LAYER_11 + DESERT_BLOCK_EDGE_HEIGHT;
+  private void erodeDunesNearEdge(Chunk chunk, BlockPos.Mutable mutable, int chunkX, int chunkZ) {
+    final int edgeTop = this.plan.getLayerY(11) + DESERT_BLOCK_EDGE_HEIGHT;
     final int erosionHeight = 10;
-    if (LAYER_10_GRID_MANAGER.isAtEdge(chunkX - 1, chunkZ).isPresent()) {
+    if (this.plan.getBigBlocksManager().isAtEdge(chunkX - 1, chunkZ).isPresent()) {
       for (int i = 0; i < erosionHeight; i++)
         fill(chunk, mutable, chunkX, chunkZ, i, i + 1, 0, 16, edgeTop + i, edgeTop + 16, AIR);
-    } else if (LAYER_10_GRID_MANAGER.isAtEdge(chunkX + 1, chunkZ).isPresent()) {
+    } else if (this.plan.getBigBlocksManager().isAtEdge(chunkX + 1, chunkZ).isPresent()) {
       for (int i = 0; i < erosionHeight; i++)
         fill(chunk, mutable, chunkX, chunkZ, 15 - i, 16 - i, 0, 16, edgeTop + i, edgeTop + 16, AIR);
     }
 
-    if (LAYER_10_GRID_MANAGER.isAtEdge(chunkX, chunkZ - 1).isPresent()) {
+    if (this.plan.getBigBlocksManager().isAtEdge(chunkX, chunkZ - 1).isPresent()) {
       for (int i = 0; i < erosionHeight; i++)
         fill(chunk, mutable, chunkX, chunkZ, 0, 16, i, i + 1, edgeTop + i, edgeTop + 16, AIR);
-    } else if (LAYER_10_GRID_MANAGER.isAtEdge(chunkX, chunkZ + 1).isPresent()) {
+    } else if (this.plan.getBigBlocksManager().isAtEdge(chunkX, chunkZ + 1).isPresent()) {
       for (int i = 0; i < erosionHeight; i++)
         fill(chunk, mutable, chunkX, chunkZ, 0, 16, 15 - i, 16 - i, edgeTop + i, edgeTop + 16, AIR);
     }
   }
 
-  private static void generateCirclesLayer(Chunk chunk, BlockPos.Mutable mutable, int chunkX, int chunkZ) {
-    if (LAYER_4_CIRCLE_MANAGER.shouldBeFilled(chunkX, chunkZ))
-      fillChunkTerrain(chunk, mutable, chunkX, chunkZ, LAYER_4, LAYER_5);
+  private void generateCirclesLayer(Chunk chunk, BlockPos.Mutable mutable, int chunkX, int chunkZ) {
+    if (this.plan.getRingsManager().shouldBeFilled(chunkX, chunkZ))
+      this.fillLayer(chunk, mutable, chunkX, chunkZ, 4, TERRAIN);
     else
-      fill(chunk, mutable, chunkX, chunkZ, 0, 16, 0, 16, LAYER_5 - 32, LAYER_5, TERRAIN);
+      fill(chunk, mutable, chunkX, chunkZ, 0, 16, 0, 16, this.plan.getLayerY(5) - RINGS_ROOF_HEIGHT, this.plan.getLayerY(5), TERRAIN);
   }
 
-  private static void generateBuildingsLayer(Chunk chunk, BlockPos.Mutable mutable, int chunkX, int chunkZ, StructureAccessor structureAccessor) {
-    if (LAYER_6_GRID_MANAGER.shouldBeFilled(chunkX, chunkZ)) {
-      fillChunkTerrain(chunk, mutable, chunkX, chunkZ, LAYER_6, LAYER_7);
-      LAYER_6_GRID_MANAGER.isAtEdge(chunkX, chunkZ).ifPresent(
-          d -> generateBuildingFacade(chunk, mutable, chunkX, chunkZ, d, structureAccessor));
-    } else {
-      LAYER_6_GRID_MANAGER.isPastEdge(chunkX, chunkZ).ifPresent(
-          d -> generateBuildingFacadeEdge(chunk, mutable, chunkX, chunkZ, d));
-    }
+  private void generateBuildingsLayer(Chunk chunk, BlockPos.Mutable mutable, int chunkX, int chunkZ) {
+    if (this.plan.getBuildingsManager().shouldBeFilled(chunkX, chunkZ))
+      this.fillLayer(chunk, mutable, chunkX, chunkZ, 6, TERRAIN);
+    else
+      this.plan.getBuildingsManager().isPastEdge(chunkX, chunkZ).ifPresent(
+          d -> this.generateBuildingFacadeEdge(chunk, mutable, chunkX, chunkZ, d));
   }
 
-  private static void generateBuildingFacade(Chunk chunk, BlockPos.Mutable mutable, int chunkX, int chunkZ, ChunkGridManager.HoleDirection holeDirection, StructureAccessor structureAccessor) {
-    final var sampler = DoublePerlinNoiseSampler.create(getRandom(structureAccessor), 0, 1.0);
-    final int edgeHeight = 8;
-    final int topY = LAYER_7 - edgeHeight;
-    final int bottomY = LAYER_6 + edgeHeight;
-    final Function<Double, BlockState> getBlockState = sample -> sample > 0.25 ? LIGHT_BLOCK : BLACK;
-    for (int y = topY; y - 3 > bottomY; y -= 3) {
-      for (int d = 1; d < 15; d += 2) {
-        if (holeDirection.faces(Direction.NORTH) || holeDirection.faces(Direction.SOUTH)) {
-          final int dz = holeDirection.faces(Direction.NORTH) ? 0 : 15;
-          setBlock(chunk, mutable, chunkX, chunkZ, d, dz, y - 2, GLASS_PANE_X);
-          setBlock(chunk, mutable, chunkX, chunkZ, d, dz, y - 3, GLASS_PANE_X);
-          final int dz1 = dz + (holeDirection.faces(Direction.NORTH) ? 1 : -1);
-          final double sample = sampler.sample(getHPos(chunkX, d), y, getHPos(chunkZ, dz1));
-          final BlockState blockState = getBlockState.apply(sample);
-          setBlock(chunk, mutable, chunkX, chunkZ, d, dz1, y - 2, blockState);
-          setBlock(chunk, mutable, chunkX, chunkZ, d, dz1, y - 3, blockState);
-        }
-        if (holeDirection.faces(Direction.WEST) || holeDirection.faces(Direction.EAST)) {
-          final int dx = holeDirection.faces(Direction.WEST) ? 0 : 15;
-          setBlock(chunk, mutable, chunkX, chunkZ, dx, d, y - 2, GLASS_PANE_Z);
-          setBlock(chunk, mutable, chunkX, chunkZ, dx, d, y - 3, GLASS_PANE_Z);
-          final int dx1 = dx + (holeDirection.faces(Direction.WEST) ? 1 : -1);
-          final double sample = sampler.sample(getHPos(chunkX, dx1), y, getHPos(chunkZ, d));
-          final BlockState blockState = getBlockState.apply(sample);
-          setBlock(chunk, mutable, chunkX, chunkZ, dx1, d, y - 2, blockState);
-          setBlock(chunk, mutable, chunkX, chunkZ, dx1, d, y - 3, blockState);
-        }
-        if (d == 5) d += 3; // Leave 4-block empty space at middle
-      }
-    }
+  private void generateBuildingFacade(Chunk chunk, BlockPos.Mutable mutable, int chunkX, int chunkZ, ChunkGridManager.HoleDirection holeDirection, long seed) {
+    final var sampler = DoublePerlinNoiseSampler.create(getRandom(seed), 0, 1.0);
+    final int topY = this.plan.getLayerY(7) - FacadeLayout.EDGE_HEIGHT;
+    final int bottomY = this.plan.getLayerY(6) + FacadeLayout.EDGE_HEIGHT;
+    FacadeLayout.placeWindows(holeDirection, topY, bottomY,
+        (x, y, z) -> sampler.sample(getHPos(chunkX, x), y, getHPos(chunkZ, z)) > 0.25 ? LIGHT_BLOCK : BLACK,
+        (x, y, z, blockState) -> setBlock(chunk, mutable, chunkX, chunkZ, x, z, y, blockState));
   }
 
-  private static void generateBuildingFacadeEdge(Chunk chunk, BlockPos.Mutable mutable, int chunkX, int chunkZ, ChunkGridManager.HoleDirection holeDirection) {
+  private void generateBuildingFacadeEdge(Chunk chunk, BlockPos.Mutable mutable, int chunkX, int chunkZ, ChunkGridManager.HoleDirection holeDirection) {
     switch (holeDirection) {
       case NORTH -> getFacadeEdgesSide(BlockRotation.COUNTERCLOCKWISE_90)
-          .placeInWorld(chunk, mutable, chunkX, chunkZ, LAYER_6);
+          .placeInWorld(chunk, mutable, chunkX, chunkZ, this.plan.getLayerY(6));
 
       case SOUTH -> getFacadeEdgesSide(BlockRotation.CLOCKWISE_90)
-          .placeInWorld(chunk, mutable, chunkX, chunkZ, LAYER_6);
+          .placeInWorld(chunk, mutable, chunkX, chunkZ, this.plan.getLayerY(6));
 
       case WEST -> getFacadeEdgesSide(BlockRotation.CLOCKWISE_180)
-          .placeInWorld(chunk, mutable, chunkX, chunkZ, LAYER_6);
+          .placeInWorld(chunk, mutable, chunkX, chunkZ, this.plan.getLayerY(6));
 
       case EAST -> getFacadeEdgesSide(BlockRotation.NONE)
-          .placeInWorld(chunk, mutable, chunkX, chunkZ, LAYER_6);
+          .placeInWorld(chunk, mutable, chunkX, chunkZ, this.plan.getLayerY(6));
 
       case NORTH_WEST -> getFacadeEdgesCorner(BlockRotation.CLOCKWISE_180)
-          .placeInWorld(chunk, mutable, chunkX, chunkZ, LAYER_6);
+          .placeInWorld(chunk, mutable, chunkX, chunkZ, this.plan.getLayerY(6));
 
       case NORTH_EAST -> getFacadeEdgesCorner(BlockRotation.COUNTERCLOCKWISE_90)
-          .placeInWorld(chunk, mutable, chunkX, chunkZ, LAYER_6);
+          .placeInWorld(chunk, mutable, chunkX, chunkZ, this.plan.getLayerY(6));
 
       case SOUTH_WEST -> getFacadeEdgesCorner(BlockRotation.CLOCKWISE_90)
-          .placeInWorld(chunk, mutable, chunkX, chunkZ, LAYER_6);
+          .placeInWorld(chunk, mutable, chunkX, chunkZ, this.plan.getLayerY(6));
 
       case SOUTH_EAST -> getFacadeEdgesCorner(BlockRotation.NONE)
-          .placeInWorld(chunk, mutable, chunkX, chunkZ, LAYER_6);
+          .placeInWorld(chunk, mutable, chunkX, chunkZ, this.plan.getLayerY(6));
     }
   }
 
-  private static void generateColumnsAroundHoles(Chunk chunk, BlockPos.Mutable mutable, int chunkX, int chunkZ, int bottomY, int topY) {
+  private void generateColumnsAroundHoles(Chunk chunk, BlockPos.Mutable mutable, int chunkX, int chunkZ, int bottomY, int topY) {
     // Avoid floating columns
-    if (!LAYER_6_GRID_MANAGER.shouldBeFilled(chunkX, chunkZ)) return;
+    if (!this.plan.getBuildingsManager().shouldBeFilled(chunkX, chunkZ)) return;
 
-    for (final var gm : COLUMNS_GRID_MANAGERS) {
+    for (final var gm : this.plan.getColumnsManagers()) {
       if (gm.shouldBeFilled(chunkX, chunkZ))
         fillChunkTerrain(chunk, mutable, chunkX, chunkZ, bottomY, topY);
       else {
@@ -380,17 +575,17 @@ public class InfiniteCityChunkGenerator extends ChunkGenerator {
     }
   }
 
-  private static void generateLayerWithHoles(Chunk chunk, BlockPos.Mutable mutable, int chunkX, int chunkZ) {
-    if (LAYER_8_GRID_MANAGERS.stream().allMatch(gm -> gm.shouldBeFilled(chunkX, chunkZ)))
-      fillChunkTerrain(chunk, mutable, chunkX, chunkZ, LAYER_8, LAYER_9);
-    for (final var chunkGridManager : LAYER_8_GRID_MANAGERS) {
+  private void generateLayerWithHoles(Chunk chunk, BlockPos.Mutable mutable, int chunkX, int chunkZ) {
+    if (this.plan.getHolesManagers().stream().allMatch(gm -> gm.shouldBeFilled(chunkX, chunkZ)))
+      this.fillLayer(chunk, mutable, chunkX, chunkZ, 8, TERRAIN);
+    for (final var chunkGridManager : this.plan.getHolesManagers()) {
       chunkGridManager.isPastEdge(chunkX, chunkZ)
-          .ifPresent(d -> generateHoleInnerRings(chunk, mutable, chunkX, chunkZ, d));
+          .ifPresent(d -> this.generateHoleInnerRings(chunk, mutable, chunkX, chunkZ, d));
     }
   }
 
-  private static void generateHoleInnerRings(Chunk chunk, BlockPos.Mutable mutable, int chunkX, int chunkZ, ChunkGridManager.HoleDirection holeDirection) {
-    for (int y = LAYER_8 - 1; y < LAYER_9; y += 50 + INNER_RING_HEIGHT) {
+  private void generateHoleInnerRings(Chunk chunk, BlockPos.Mutable mutable, int chunkX, int chunkZ, ChunkGridManager.HoleDirection holeDirection) {
+    for (int y = this.plan.getLayerY(8) - 1; y < this.plan.getLayerY(9); y += 50 + INNER_RING_HEIGHT) {
       switch (holeDirection) {
         case NORTH -> getInnerRingSide(BlockRotation.COUNTERCLOCKWISE_90)
             .placeInWorld(chunk, mutable, chunkX, chunkZ, y);
@@ -419,31 +614,43 @@ public class InfiniteCityChunkGenerator extends ChunkGenerator {
     }
   }
 
+  /**
+   * Fill the given layer of a chunk. Sections entirely within the layer are looked up in {@link #plan}.
+   */
+  private void fillLayer(Chunk chunk, BlockPos.Mutable mutable, int chunkX, int chunkZ, int layer, BlockState blockState) {
+    fillChunk(chunk, mutable, chunkX, chunkZ, this.plan.getLayerY(layer), this.plan.getLayerY(layer + 1),
+        this.plan.getFromSection(layer), this.plan.getToSection(layer), blockState);
+  }
+
   private static void fillChunkTerrain(Chunk chunk, BlockPos.Mutable mutable, int chunkX, int chunkZ, int bottomY, int topY) {
     fillChunk(chunk, mutable, chunkX, chunkZ, bottomY, topY, TERRAIN);
   }
 
   /**
-   * Place the surface blocks of the biomes after the noise has been generated.
+   * Surface blocks are placed along with the noise by the task scheduled in
+   * {@link #populateNoise(Executor, Blender, NoiseConfig, StructureAccessor, Chunk)}, this stage is skipped.
    */
   @Override
   public void buildSurface(ChunkRegion region, StructureAccessor structureAccessor, NoiseConfig noiseConfig, Chunk chunk) {
+  }
+
+  private void buildSurface(Chunk chunk, long seed) {
     final var mutable = new BlockPos.Mutable();
     final ChunkPos chunkPos = chunk.getPos();
     final int chunkX = chunkPos.x;
     final int chunkZ = chunkPos.z;
     // TODO generate structures in layers 3, 7, 9 and 11
     // TODO generate features in gaps between windows on facades of layer 6
-    generateFacadeStructures(chunk, mutable, chunkX, chunkZ, structureAccessor);
-    generateBaseLayerElevation(chunk, mutable, chunkX, chunkZ, structureAccessor);
+    this.generateFacadeStructures(chunk, mutable, chunkX, chunkZ, seed);
+    this.generateBaseLayerElevation(chunk, mutable, chunkX, chunkZ, seed);
   }
 
-  private static void generateFacadeStructures(Chunk chunk, BlockPos.Mutable mutable, int chunkX, int chunkZ, StructureAccessor structureAccessor) {
+  private void generateFacadeStructures(Chunk chunk, BlockPos.Mutable mutable, int chunkX, int chunkZ, long seed) {
     final int yOffset = 10;
-    final var sampler = DoublePerlinNoiseSampler.create(getRandom(structureAccessor), 0, 1.0);
+    final var sampler = DoublePerlinNoiseSampler.create(getRandom(seed), 0, 1.0);
     final double threshold = 0.75;
-    LAYER_6_GRID_MANAGER.isPastEdge(chunkX, chunkZ).ifPresent(dir -> {
-      for (int y = LAYER_6 + yOffset; y < LAYER_7 - yOffset; y++) {
+    this.plan.getBuildingsManager().isPastEdge(chunkX, chunkZ).ifPresent(dir -> {
+      for (int y = this.plan.getLayerY(6) + yOffset; y < this.plan.getLayerY(7) - yOffset; y++) {
         for (int d = 7; d < 9; d++) {
           final int dOffset = d - 8; // 8 = offset of antenna’s center
           switch (dir) {
@@ -463,30 +670,147 @@ public class InfiniteCityChunkGenerator extends ChunkGenerator {
     });
   }
 
-  private static void generateBaseLayerElevation(Chunk chunk, BlockPos.Mutable mutable, int chunkX, int chunkZ, StructureAccessor structureAccessor) {
-    final var sampler = DoublePerlinNoiseSampler.create(getRandom(structureAccessor), 0, 1.0);
-    final int precision = 8;
-    for (int dx = 0; dx < 16; dx += precision) {
+  private void generateBaseLayerElevation(Chunk chunk, BlockPos.Mutable mutable, int chunkX, int chunkZ, long seed) {
+    final var sampler = createBaseLayerElevationSampler(seed);
+    for (int dx = 0; dx < 16; dx += BASE_LAYER_ELEVATION_PRECISION) {
       final int x = getHPos(chunkX, dx);
-      for (int dz = 0; dz < 16; dz += precision) {
+      for (int dz = 0; dz < 16; dz += BASE_LAYER_ELEVATION_PRECISION) {
         final int z = getHPos(chunkZ, dz);
-        final double sample = Math.abs(sampler.sample(x, LAYER_2, z)) * 3;
+        final double sample = sampleBaseLayerElevation(sampler, x, z);
         int floor = MathHelper.floor(sample);
         int topY = LAYER_2 + floor;
         if (floor > 0)
-          fill(chunk, mutable, chunkX, chunkZ, dx, dx + precision, dz, dz + precision, LAYER_2, topY, TERRAIN);
+          fill(chunk, mutable, chunkX, chunkZ, dx, dx + BASE_LAYER_ELEVATION_PRECISION, dz, dz + BASE_LAYER_ELEVATION_PRECISION, LAYER_2, topY, TERRAIN);
         if (sample - floor >= 0.5)
-          fill(chunk, mutable, chunkX, chunkZ, dx, dx + precision, dz, dz + precision, topY, topY + 1, SLAB);
+          fill(chunk, mutable, chunkX, chunkZ, dx, dx + BASE_LAYER_ELEVATION_PRECISION, dz, dz + BASE_LAYER_ELEVATION_PRECISION, topY, topY + 1, SLAB);
       }
     }
   }
 
-  @SuppressWarnings({"deprecation", "resource"})
-  private static ChunkRandom getRandom(StructureAccessor structureAccessor) {
-    final long seed = ((ChunkRegion) ((StructureAccessorAccessor) structureAccessor).getWorld()).toServerWorld().getSeed();
+  /**
+   * Create the noise sampler used to generate the elevation of the base layer.
+   *
+   * @param seed The world’s seed.
+   * @return A new sampler.
+   */
+  static DoublePerlinNoiseSampler createBaseLayerElevationSampler(long seed) {
+    return DoublePerlinNoiseSampler.create(getRandom(seed), 0, 1.0);
+  }
+
+  /**
+   * Return the elevation of the base layer above {@link #LAYER_2} at the given position.
+   * Only positions at the north-west corner of {@link #BASE_LAYER_ELEVATION_PRECISION}-wide squares are sampled.
+   *
+   * @param sampler A sampler returned by {@link #createBaseLayerElevationSampler(long)}.
+   * @param x       The X position.
+   * @param z       The Z position.
+   * @return The elevation, between 0 and 3.
+   */
+  static double sampleBaseLayerElevation(DoublePerlinNoiseSampler sampler, int x, int z) {
+    return Math.abs(sampler.sample(x, LAYER_2, z)) * 3;
+  }
+
+  /**
+   * Create the noise sampler used to generate the dunes atop the blocks of layer 10.
+   *
+   * @param seed The world’s seed.
+   * @return A new sampler.
+   */
+  static DoublePerlinNoiseSampler createDunesSampler(long seed) {
+    return DoublePerlinNoiseSampler.create(getRandom(seed), -6, 1.0, 0.5);
+  }
+
+  /**
+   * Return the height of the dunes above layer 11 at the given position.
+   *
+   * @param sampler A sampler returned by {@link #createDunesSampler(long)}.
+   * @param plan    The layer plan of the world.
+   * @param x       The X position.
+   * @param z       The Z position.
+   * @return The height, between 0 and 20.
+   */
+  static double sampleDunesHeight(DoublePerlinNoiseSampler sampler, LayerPlan plan, int x, int z) {
+    return (sampler.sample(x, plan.getLayerY(11), z) + 1) * 10;
+  }
+
+  @SuppressWarnings("deprecation")
+  private static ChunkRandom getRandom(long seed) {
     return new ChunkRandom(new CheckedRandom(seed));
   }
 
+  @SuppressWarnings("resource")
+  private static long getSeed(StructureAccessor structureAccessor) {
+    return ((ChunkRegion) ((StructureAccessorAccessor) structureAccessor).getWorld()).toServerWorld().getSeed();
+  }
+
+  /**
+   * Return a random position to attempt natural mob spawning at in the given chunk.
+   * Unlike vanilla which picks any Y position below the surface, the returned position
+   * is always right above one of the floors of the sampled column that are within {@link #SPAWN_RANGE}
+   * of the Y position of a player near the chunk, or any of its floors if there are none.
+   *
+   * @param world The world the chunk is in.
+   * @param chunk The chunk to spawn mobs in.
+   * @return A position to attempt spawning at.
+   */
+  public BlockPos getRandomSpawnPos(ServerWorld world, WorldChunk chunk) {
+    final ChunkPos chunkPos = chunk.getPos();
+    final int x = chunkPos.getStartX() + world.random.nextInt(16);
+    final int z = chunkPos.getStartZ() + world.random.nextInt(16);
+    final List<CityFloors.Floor> floors = this.getFloors(world.getSeed()).getFloors(x, z);
+    final int[] playersY = this.scheduler.getNearbyPlayersY(chunkPos);
+    final List<CityFloors.Floor> candidates = floors.stream()
+        .filter(floor -> Arrays.stream(playersY).anyMatch(y -> Math.abs(floor.y() - y) <= SPAWN_RANGE))
+        .toList();
+    final List<CityFloors.Floor> spawnFloors = candidates.isEmpty() ? floors : candidates;
+    this.spawnAttempts++;
+    return new BlockPos(x, spawnFloors.get(world.random.nextInt(spawnFloors.size())).y(), z);
+  }
+
+  /**
+   * Notify this generator that a mob was spawned naturally in its world.
+   */
+  public void onNaturalSpawn() {
+    this.naturalSpawns++;
+  }
+
+  /**
+   * Return the number of natural spawning attempts and of naturally spawned mobs in this generator’s world.
+   */
+  public SpawnStats getSpawnStats() {
+    return new SpawnStats(this.spawnAttempts, this.naturalSpawns);
+  }
+
+  /**
+   * Return the average duration of the generation stages of this generator’s chunks.
+   */
+  public StageStats getStageStats() {
+    final long chunks = this.generatedChunks.get();
+    final double divisor = Math.max(1, chunks) * 1000.0;
+    return new StageStats(chunks, this.biomesNanos.get() / divisor, this.noiseNanos.get() / divisor, this.surfaceNanos.get() / divisor);
+  }
+
+  /**
+   * City dimensions have no structures, this stage is skipped.
+   */
+  @Override
+  public void setStructureStarts(DynamicRegistryManager registryManager, StructurePlacementCalculator placementCalculator, StructureAccessor structureAccessor, Chunk chunk, StructureTemplateManager structureTemplateManager) {
+  }
+
+  /**
+   * City dimensions have no structures, this stage is skipped.
+   */
+  @Override
+  public void addStructureReferences(StructureWorldAccess world, StructureAccessor structureAccessor, Chunk chunk) {
+  }
+
+  /**
+   * The city biome has no features and there are no structures to place, this stage is skipped.
+   */
+  @Override
+  public void generateFeatures(StructureWorldAccess world, Chunk chunk, StructureAccessor structureAccessor) {
+  }
+
   /**
    * Generates caves for the given chunk.
    */
@@ -549,4 +873,25 @@ public class InfiniteCityChunkGenerator extends ChunkGenerator {
   protected Codec<? extends ChunkGenerator> getCodec() {
     return CODEC;
   }
-}
\ No newline at end of file
+
+  /**
+   * Natural spawning statistics of a generator’s world.
+   *
+   * @param attempts Number of positions returned by {@link #getRandomSpawnPos(ServerWorld, WorldChunk)}.
+   * @param spawns   Number of mobs that were spawned naturally.
+   */
+  public record SpawnStats(long attempts, long spawns) {
+  }
+
+  /**
+   * Average duration of the generation stages of a generator’s chunks.
+   * Stages skipped by the generator (structures, carvers and features) are not listed.
+   *
+   * @param chunks    Number of chunks whose noise was generated.
+   * @param biomesUs  Average duration of the biomes stage, in microseconds.
+   * @param noiseUs   Average duration of the noise stage, in microseconds.
+   * @param surfaceUs Average duration of the surface stage, in microseconds.
+   */
+  public record StageStats(long chunks, double biomesUs, double noiseUs, double surfaceUs) {
+  }
+}
@@ -5,15 +5,176 @@ import com.mojang.serialization.codecs.*;
 import net.minecraft.registry.entry.*;
 import net.minecraft.world.biome.*;
 
+import java.util.*;
+
+import static net.darmo_creations.infinitecity.chunk_gen.InfiniteCityChunkGenerator.*;
+
 /**
  * The configuration class for {@link InfiniteCityChunkGenerator}.
  *
- * @param biome The single biome to use.
+ * @param biome  The single biome to use.
+ * @param layers The layer stack and the grids of the layers.
  */
-public record InfiniteCityChunkGeneratorConfig(RegistryEntry<Biome> biome) {
+public record InfiniteCityChunkGeneratorConfig(RegistryEntry<Biome> biome, LayerSettings layers) {
   public static final Codec<InfiniteCityChunkGeneratorConfig> CODEC = RecordCodecBuilder.<InfiniteCityChunkGeneratorConfig>create(
       instance -> instance
-          .group(Biome.REGISTRY_CODEC.fieldOf("biome").forGetter(config -> config.biome))
+          .group(
+              Biome.REGISTRY_CODEC.fieldOf("biome").forGetter(config -> config.biome),
+              LayerSettings.CODEC.optionalFieldOf("layers", LayerSettings.DEFAULT).forGetter(config -> config.layers)
+          )
           .apply(instance, InfiniteCityChunkGeneratorConfig::new)
   ).stable();
+
+  /**
+   * The configurable parts of the layer stack. Layers whose height depends on {@link ChunkPortion}s
+   * (facades, columns and big blocks) cannot be resized.
+   * Settings are compiled into a {@link LayerPlan} when the generator is created.
+   *
+   * @param bottomSpaceHeight    Height of layer 3, the empty space above the base layer.
+   * @param ringsLayerHeight     Height of layer 4, the plain layer with concentric rings.
+   * @param ringsRoofSpaceHeight Height of layer 5, the empty space above the rings.
+   * @param holesLayerHeight     Height of layer 8, the plain layer with square holes.
+   * @param rings                The rings of layer 4.
+   * @param buildings            The grid of the buildings of layer 6.
+   * @param columns              The grids of the columns of layers 7 and 9. Columns are always 2 chunks wide.
+   * @param holes                The grids of the holes of layer 8.
+   * @param bigBlocks            The grid of the big blocks of layer 10.
+   */
+  public record LayerSettings(
+      int bottomSpaceHeight,
+      int ringsLayerHeight,
+      int ringsRoofSpaceHeight,
+      int holesLayerHeight,
+      TorusSettings rings,
+      GridSettings buildings,
+      List<GridSettings> columns,
+      List<GridSettings> holes,
+      GridSettings bigBlocks
+  ) {
+    /**
+     * Minimum free space above the big blocks, enough for their edges and the dunes.
+     */
+    public static final int MIN_DESERT_SPACE_HEIGHT = 64;
+    /**
+     * Maximum number of column and hole grids, so that archetypes fit in a long.
+     */
+    public static final int MAX_GRIDS = 4;
+
+    public static final LayerSettings DEFAULT = new LayerSettings(
+        200,
+        400,
+        200,
+        412,
+        new TorusSettings(20, 50, 0, 0),
+        new GridSettings(14, 4, 0, 0, false),
+        List.of(
+            new GridSettings(2, 10, 9, 9, false),
+            new GridSettings(2, 10, -9, -9, false)
+        ),
+        List.of(
+            new GridSettings(8, 28, 12, 12, true),
+            new GridSettings(8, 28, -6, -6, true)
+        ),
+        new GridSettings(32, 4, 0, 0, false)
+    );
+
+    private static final Codec<Integer> HEIGHT_CODEC = Codec.intRange(1, WORLD_HEIGHT);
+    // The roof of the rings layer must not extend below the layer
+    private static final Codec<Integer> RINGS_HEIGHT_CODEC = Codec.intRange(RINGS_ROOF_HEIGHT, WORLD_HEIGHT);
+    private static final Codec<List<GridSettings>> GRIDS_CODEC = GridSettings.CODEC.listOf();
+
+    public static final Codec<LayerSettings> CODEC = RecordCodecBuilder.<LayerSettings>create(
+        instance -> instance
+            .group(
+                HEIGHT_CODEC.fieldOf("bottom_space_height").forGetter(LayerSettings::bottomSpaceHeight),
+                RINGS_HEIGHT_CODEC.fieldOf("rings_layer_height").forGetter(LayerSettings::ringsLayerHeight),
+                HEIGHT_CODEC.fieldOf("rings_roof_space_height").forGetter(LayerSettings::ringsRoofSpaceHeight),
+                HEIGHT_CODEC.fieldOf("holes_layer_height").forGetter(LayerSettings::holesLayerHeight),
+                TorusSettings.CODEC.fieldOf("rings").forGetter(LayerSettings::rings),
+                GridSettings.CODEC.fieldOf("buildings").forGetter(LayerSettings::buildings),
+                GRIDS_CODEC.fieldOf("columns").forGetter(LayerSettings::columns),
+                GRIDS_CODEC.fieldOf("holes").forGetter(LayerSettings::holes),
+                GridSettings.CODEC.fieldOf("big_blocks").forGetter(LayerSettings::bigBlocks)
+            )
+            .apply(instance, LayerSettings::new)
+    ).flatXmap(LayerSettings::validate, LayerSettings::validate);
+
+    /**
+     * Return the Y position of the top of the big blocks of layer 10.
+     */
+    int getBigBlocksTopY() {
+      return LAYER_3 + this.bottomSpaceHeight + this.ringsLayerHeight + this.ringsRoofSpaceHeight
+          + FACADE_HEIGHT + COLUMN_HEIGHT + this.holesLayerHeight + COLUMN_HEIGHT + DESERT_BLOCK_HEIGHT;
+    }
+
+    private static DataResult<LayerSettings> validate(LayerSettings settings) {
+      if (settings.getBigBlocksTopY() > TOP - MIN_DESERT_SPACE_HEIGHT)
+        return DataResult.error(() -> "Layers are too high, %d blocks must be left above the big blocks"
+            .formatted(MIN_DESERT_SPACE_HEIGHT));
+      if (settings.columns.isEmpty() || settings.columns.size() > MAX_GRIDS
+          || settings.holes.isEmpty() || settings.holes.size() > MAX_GRIDS)
+        return DataResult.error(() -> "There must be between 1 and %d column and hole grids".formatted(MAX_GRIDS));
+      if (settings.columns.stream().anyMatch(grid -> grid.size() != 2))
+        return DataResult.error(() -> "Columns must be 2 chunks wide");
+      return DataResult.success(settings);
+    }
+  }
+
+  /**
+   * Settings of a {@link ChunkGridManager}.
+   *
+   * @param size     The size of each block (in chunks).
+   * @param spacing  The space between each block (in chunks).
+   * @param offsetX  The offset of the first block’s north-west corner from the 0 coordinate along the X axis.
+   * @param offsetZ  The offset of the first block’s north-west corner from the 0 coordinate along the Z axis.
+   * @param inverted Whether to invert the filled/empty regions.
+   */
+  public record GridSettings(int size, int spacing, int offsetX, int offsetZ, boolean inverted) {
+    public static final Codec<GridSettings> CODEC = RecordCodecBuilder.create(
+        instance -> instance
+            .group(
+                Codec.intRange(2, 1024).fieldOf("size").forGetter(GridSettings::size),
+                Codec.intRange(2, 1024).fieldOf("spacing").forGetter(GridSettings::spacing),
+                Codec.INT.optionalFieldOf("offset_x", 0).forGetter(GridSettings::offsetX),
+                Codec.INT.optionalFieldOf("offset_z", 0).forGetter(GridSettings::offsetZ),
+                Codec.BOOL.optionalFieldOf("inverted", false).forGetter(GridSettings::inverted)
+            )
+            .apply(instance, GridSettings::new)
+    );
+
+    /**
+     * Create the grid manager for these settings.
+     */
+    ChunkGridManager createManager() {
+      return new ChunkGridManager(this.size, this.spacing, this.offsetX, this.offsetZ, this.inverted);
+    }
+  }
+
+  /**
+   * Settings of a {@link ChunkTorusesManager}.
+   *
+   * @param width   The width of each torus (in chunks).
+   * @param spacing The space between each torus (in chunks).
+   * @param offsetX The offset of the center from the 0-coordinate chunk along the X axis.
+   * @param offsetZ The offset of the center from the 0-coordinate chunk along the Z axis.
+   */
+  public record TorusSettings(int width, int spacing, int offsetX, int offsetZ) {
+    public static final Codec<TorusSettings> CODEC = RecordCodecBuilder.create(
+        instance -> instance
+            .group(
+                Codec.intRange(1, 1024).fieldOf("width").forGetter(TorusSettings::width),
+                Codec.intRange(1, 1024).fieldOf("spacing").forGetter(TorusSettings::spacing),
+                Codec.INT.optionalFieldOf("offset_x", 0).forGetter(TorusSettings::offsetX),
+                Codec.INT.optionalFieldOf("offset_z", 0).forGetter(TorusSettings::offsetZ)
+            )
+            .apply(instance, TorusSettings::new)
+    );
+
+    /**
+     * Create the toruses manager for these settings.
+     */
+    ChunkTorusesManager createManager() {
+      return new ChunkTorusesManager(this.width, this.spacing, this.offsetX, this.offsetZ);
+    }
+  }
 }
@@ -0,0 +1,199 @@
+package net.darmo_creations.infinitecity.chunk_gen;
+
+import it.unimi.dsi.fastutil.ints.*;
+import net.minecraft.util.math.*;
+
+import java.util.*;
+
+import static net.darmo_creations.infinitecity.chunk_gen.InfiniteCityChunkGenerator.*;
+
+/**
+ * The layer stack of a city dimension, compiled from its {@link InfiniteCityChunkGeneratorConfig.LayerSettings}.
+ * <p>
+ * Plans are immutable. They hold the Y position of each layer, the range of sections that each layer entirely covers
+ * and the grid managers of the layers, which precompute the state of all chunks of their grid.
+ * Layers are numbered from 1 to 11 as in the documentation of {@link InfiniteCityChunkGenerator}.
+ */
+public final class LayerPlan {
+  /**
+   * The plan of the default layer settings.
+   */
+  public static final LayerPlan DEFAULT = compile(InfiniteCityChunkGeneratorConfig.LayerSettings.DEFAULT);
+  /**
+   * Number of layers in a plan.
+   */
+  public static final int LAYERS_COUNT = 11;
+
+  /**
+   * The bottom Y position of each layer, indexed by layer number. The last value is {@link InfiniteCityChunkGenerator#TOP}.
+   */
+  private final int[] layersY;
+  /**
+   * The lowest section coordinate entirely within each layer, indexed by layer number.
+   */
+  private final int[] fromSections;
+  /**
+   * The highest section coordinate (exclusive) entirely within each layer, indexed by layer number.
+   */
+  private final int[] toSections;
+  private final ChunkTorusesManager ringsManager;
+  private final ChunkGridManager buildingsManager;
+  private final List<ChunkGridManager> columnsManagers;
+  private final List<ChunkGridManager> holesManagers;
+  private final ChunkGridManager bigBlocksManager;
+
+  /**
+   * Compile the given settings into a plan.
+   *
+   * @param settings The settings to compile.
+   * @return The plan.
+   */
+  public static LayerPlan compile(InfiniteCityChunkGeneratorConfig.LayerSettings settings) {
+    return new LayerPlan(settings);
+  }
+
+  private LayerPlan(InfiniteCityChunkGeneratorConfig.LayerSettings settings) {
+    // Heights of layers 1 to 10, the last layer goes up to the top of the world
+    final int[] heights = {
+        0,
+        LAYER_2 - LAYER_1,
+        LAYER_3 - LAYER_2,
+        settings.bottomSpaceHeight(),
+        settings.ringsLayerHeight(),
+        settings.ringsRoofSpaceHeight(),
+        FACADE_HEIGHT,
+        COLUMN_HEIGHT,
+        settings.holesLayerHeight(),
+        COLUMN_HEIGHT,
+        DESERT_BLOCK_HEIGHT,
+    };
+    this.layersY = new int[LAYERS_COUNT + 2];
+    this.fromSections = new int[LAYERS_COUNT + 1];
+    this.toSections = new int[LAYERS_COUNT + 1];
+    this.layersY[1] = LAYER_1;
+    for (int layer = 2; layer <= LAYERS_COUNT; layer++)
+      this.layersY[layer] = this.layersY[layer - 1] + heights[layer - 1];
+    this.layersY[LAYERS_COUNT + 1] = TOP;
+    for (int layer = 1; layer <= LAYERS_COUNT; layer++) {
+      this.fromSections[layer] = ChunkSectionPos.getSectionCoord(this.layersY[layer] + 15);
+      this.toSections[layer] = Math.max(this.fromSections[layer], ChunkSectionPos.getSectionCoord(this.layersY[layer + 1]));
+    }
+
+    this.ringsManager = settings.rings().createManager();
+    this.buildingsManager = settings.buildings().createManager();
+    this.columnsManagers = settings.columns().stream().map(InfiniteCityChunkGeneratorConfig.GridSettings::createManager).toList();
+    this.holesManagers = settings.holes().stream().map(InfiniteCityChunkGeneratorConfig.GridSettings::createManager).toList();
+    this.bigBlocksManager = settings.bigBlocks().createManager();
+  }
+
+  /**
+   * Return the bottom Y position of the given layer.
+   *
+   * @param layer The layer’s number, between 1 and 11, or 12 for {@link InfiniteCityChunkGenerator#TOP}.
+   * @return The layer’s lowest Y position.
+   */
+  public int getLayerY(int layer) {
+    return this.layersY[layer];
+  }
+
+  /**
+   * Return the lowest section coordinate entirely within the given layer.
+   *
+   * @param layer The layer’s number, between 1 and 11.
+   */
+  public int getFromSection(int layer) {
+    return this.fromSections[layer];
+  }
+
+  /**
+   * Return the highest section coordinate (exclusive) entirely within the given layer.
+   * It is equal to {@link #getFromSection(int)} if the layer does not contain any whole section.
+   *
+   * @param layer The layer’s number, between 1 and 11.
+   */
+  public int getToSection(int layer) {
+    return this.toSections[layer];
+  }
+
+  /**
+   * Return the Y ranges that are solid across the whole given chunk column, from bottom to top.
+   * Contiguous ranges are merged. Parts smaller than a chunk (facades, column sides, hole rings,
+   * big block edges and dunes) are left out, as well as the bedrock layer.
+   * These ranges are used to build simplified models of distant parts of the city.
+   *
+   * @param chunkX The chunk’s X position.
+   * @param chunkZ The chunk’s Z position.
+   * @return Pairs of bottom (inclusive) and top (exclusive) Y positions.
+   */
+  public int[] getSolidRanges(int chunkX, int chunkZ) {
+    final IntList ranges = new IntArrayList();
+    addRange(ranges, this.getLayerY(2), this.getLayerY(3));
+    if (this.ringsManager.shouldBeFilled(chunkX, chunkZ))
+      addRange(ranges, this.getLayerY(4), this.getLayerY(5));
+    else // Roof of the rings layer
+      addRange(ranges, this.getLayerY(5) - RINGS_ROOF_HEIGHT, this.getLayerY(5));
+    final boolean hasBuilding = this.buildingsManager.shouldBeFilled(chunkX, chunkZ);
+    final boolean hasColumn = hasBuilding && this.columnsManagers.stream().anyMatch(gm -> gm.shouldBeFilled(chunkX, chunkZ));
+    if (hasBuilding)
+      addRange(ranges, this.getLayerY(6), this.getLayerY(7));
+    if (hasColumn)
+      addRange(ranges, this.getLayerY(7), this.getLayerY(8));
+    if (this.holesManagers.stream().allMatch(gm -> gm.shouldBeFilled(chunkX, chunkZ)))
+      addRange(ranges, this.getLayerY(8), this.getLayerY(9));
+    if (hasColumn)
+      addRange(ranges, this.getLayerY(9), this.getLayerY(10));
+    if (this.bigBlocksManager.shouldBeFilled(chunkX, chunkZ)) {
+      addRange(ranges, this.getLayerY(10), this.getLayerY(11));
+      if (this.bigBlocksManager.isAtEdge(chunkX, chunkZ).isPresent())
+        addRange(ranges, this.getLayerY(11), this.getLayerY(11) + DESERT_BLOCK_EDGE_HEIGHT);
+    }
+    return ranges.toIntArray();
+  }
+
+  /**
+   * Append a range to the given list, merging it with the last one if they are contiguous.
+   */
+  private static void addRange(IntList ranges, int fromY, int toY) {
+    if (!ranges.isEmpty() && ranges.getInt(ranges.size() - 1) == fromY)
+      ranges.set(ranges.size() - 1, toY);
+    else {
+      ranges.add(fromY);
+      ranges.add(toY);
+    }
+  }
+
+  /**
+   * The manager of the rings of layer 4.
+   */
+  ChunkTorusesManager getRingsManager() {
+    return this.ringsManager;
+  }
+
+  /**
+   * The manager of the buildings of layer 6.
+   */
+  ChunkGridManager getBuildingsManager() {
+    return this.buildingsManager;
+  }
+
+  /**
+   * The managers of the columns of layers 7 and 9.
+   */
+  List<ChunkGridManager> getColumnsManagers() {
+    return this.columnsManagers;
+  }
+
+  /**
+   * The managers of the holes of layer 8.
+   */
+  List<ChunkGridManager> getHolesManagers() {
+    return this.holesManagers;
+  }
+
+  /**
+   * The manager of the big blocks of layer 10.
+   */
+  ChunkGridManager getBigBlocksManager() {
+    return this.bigBlocksManager;
+  }
+}
@@ -0,0 +1,16 @@
+package net.darmo_creations.infinitecity.chunk_gen;
+
+/**
+ * Implemented by paletted containers to flag the immutable instances shared between several chunk sections.
+ */
+public interface SharedContainer {
+  /**
+   * Flag this container as shared. It must not be modified afterwards.
+   */
+  void infinitecity$markShared();
+
+  /**
+   * Indicate whether this container is shared between several chunk sections.
+   */
+  boolean infinitecity$isShared();
+}
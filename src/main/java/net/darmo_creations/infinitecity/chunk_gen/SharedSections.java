@@ -0,0 +1,118 @@
+package net.darmo_creations.infinitecity.chunk_gen;
+
+import net.darmo_creations.infinitecity.mixins.*;
+import net.minecraft.block.*;
+import net.minecraft.server.world.*;
+import net.minecraft.world.*;
+import net.minecraft.world.chunk.*;
+import org.jetbrains.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * This class manages the immutable paletted containers shared between uniform chunk sections.
+ * <p>
+ * All sections filled with the same block state reference the same single-value container,
+ * including uniform sections of city chunks loaded from disk. A section copies its shared container the first time one of its blocks is actually changed.
+ * Shared containers are never locked, as several threads may read them concurrently.
+ */
+public final class SharedSections {
+  private static final Map<BlockState, PalettedContainer<BlockState>> BLOCK_STATE_CONTAINERS = new ConcurrentHashMap<>();
+
+  /**
+   * Indicate whether the given container is shared between several sections.
+   *
+   * @param container The container to check.
+   * @return True if the container is shared and must not be modified, false otherwise.
+   */
+  public static boolean isShared(ReadableContainer<?> container) {
+    return container instanceof SharedContainer sharedContainer && sharedContainer.infinitecity$isShared();
+  }
+
+  /**
+   * Flag the given container as shared.
+   *
+   * @param container The container to flag.
+   * @param <T>       The type of the container’s values.
+   * @return The same container.
+   */
+  public static <T> ReadableContainer<T> markShared(ReadableContainer<T> container) {
+    if (container instanceof SharedContainer sharedContainer)
+      sharedContainer.infinitecity$markShared();
+    return container;
+  }
+
+  /**
+   * Fill a whole section of the given chunk with a block state by making it reference the shared container
+   * for this block state. The chunk’s heightmaps are updated accordingly.
+   *
+   * @param chunk        The chunk to fill.
+   * @param sectionIndex The index of the section to fill.
+   * @param blockState   The block state to fill the section with. Must not be air.
+   */
+  public static void fillSection(Chunk chunk, int sectionIndex, BlockState blockState) {
+    final ChunkSection section = chunk.getSection(sectionIndex);
+    ((ChunkSectionAccessor) section).setBlockStateContainer(getContainer(blockState));
+    section.calculateCounts();
+    // Only the top row can raise the heightmaps
+    final int topY = chunk.sectionIndexToCoord(sectionIndex) * 16 + 15;
+    for (final Heightmap.Type type : chunk.getStatus().getHeightmapTypes()) {
+      final Heightmap heightmap = chunk.getHeightmap(type);
+      for (int x = 0; x < 16; x++)
+        for (int z = 0; z < 16; z++)
+          heightmap.trackUpdate(x, topY, z, blockState);
+    }
+  }
+
+  /**
+   * Make the uniform sections of a city chunk loaded from disk reference the shared containers.
+   * Their content is unchanged, so the chunk’s block counts and heightmaps are left as-is.
+   *
+   * @param world The world the chunk is in.
+   * @param chunk The deserialized chunk.
+   */
+  public static void onDeserialize(ServerWorld world, ProtoChunk chunk) {
+    if (!(world.getChunkManager().getChunkGenerator() instanceof InfiniteCityChunkGenerator))
+      return;
+    // Full chunks are wrapped, sections have to be put in the actual chunk
+    final Chunk target = chunk instanceof WrapperProtoChunk wrapper ? wrapper.getWrappedChunk() : chunk;
+    for (final ChunkSection section : target.getSectionArray()) {
+      final PalettedContainer<BlockState> container = section.getBlockStateContainer();
+      if (section.isEmpty() || isShared(container))
+        continue;
+      final BlockState blockState = getUniformValue(container);
+      if (blockState != null)
+        ((ChunkSectionAccessor) section).setBlockStateContainer(getContainer(blockState));
+    }
+  }
+
+  /**
+   * Return the single value of a container whose palette has only one entry.
+   * Only the palette is checked, so containers whose palette holds unused entries are not considered uniform.
+   *
+   * @return The container’s value or null if its palette has several entries.
+   */
+  @Nullable
+  private static BlockState getUniformValue(PalettedContainer<BlockState> container) {
+    final BlockState[] value = new BlockState[1];
+    final boolean several = container.hasAny(state -> {
+      if (value[0] != null)
+        return true;
+      value[0] = state;
+      return false;
+    });
+    return several ? null : value[0];
+  }
+
+  private static PalettedContainer<BlockState> getContainer(BlockState blockState) {
+    return BLOCK_STATE_CONTAINERS.computeIfAbsent(blockState, state -> {
+      final var container = new PalettedContainer<>(Block.STATE_IDS, state, PalettedContainer.PaletteProvider.BLOCK_STATE);
+      markShared(container);
+      return container;
+    });
+  }
+
+  private SharedSections() {
+  }
+}
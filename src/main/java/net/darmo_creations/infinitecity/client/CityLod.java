@@ -0,0 +1,299 @@
+package net.darmo_creations.infinitecity.client;
+
+import com.mojang.blaze3d.systems.*;
+import it.unimi.dsi.fastutil.longs.*;
+import net.darmo_creations.infinitecity.chunk_gen.*;
+import net.darmo_creations.infinitecity.server.*;
+import net.fabricmc.fabric.api.client.networking.v1.*;
+import net.fabricmc.fabric.api.client.rendering.v1.*;
+import net.minecraft.client.*;
+import net.minecraft.client.gl.*;
+import net.minecraft.client.render.*;
+import net.minecraft.client.util.math.*;
+import net.minecraft.nbt.*;
+import net.minecraft.util.math.*;
+import org.jetbrains.annotations.*;
+
+import java.util.*;
+
+/**
+ * This class renders simplified models of the city beyond the render distance, in city dimensions.
+ * <p>
+ * Models are made of boxes computed from the layer grids of the dimension (see {@link LayerPlan#getSolidRanges(int, int)}),
+ * without any chunk data. The layer settings are sent by the server (see {@link CityLayoutSync}).
+ * Boxes are grouped in square tiles of 8×8 chunks, each with its own vertex buffer. Tiles are built on demand,
+ * at most {@link ClientConfig#getRenderLodTilesPerFrame()} per frame, and deleted once they are out of range.
+ * Chunks within the render distance are left out of tiles, those tiles are rebuilt when the camera enters another chunk.
+ * <p>
+ * The terrain fog is left untouched and ends at the render distance. Models are drawn beyond it with the game’s
+ * projection, so their distance is limited to its far plane (see {@link #getLodDistance(MinecraftClient)}).
+ * Tiles fade in from the fog end over {@link #FADE_IN_WIDTH} blocks, so that they do not stand out against
+ * the fogged terrain, then fade out into the background up to {@link #getFadeEnd(MinecraftClient)}.
+ * They are not drawn while a thicker fog than the terrain’s is applied, e.g. under water.
+ */
+public final class CityLod {
+  private static final int TILE_SHIFT = 3;
+  /**
+   * Size of a tile, in chunks.
+   */
+  private static final int TILE_SIZE = 1 << TILE_SHIFT;
+  private static final int[] NO_RANGES = new int[0];
+  /**
+   * Distance (in blocks) over which tiles fade in beyond the fog end.
+   */
+  private static final float FADE_IN_WIDTH = TILE_SIZE * 16;
+  // Color of light gray concrete
+  private static final float RED = 0.49f;
+  private static final float GREEN = 0.49f;
+  private static final float BLUE = 0.45f;
+
+  /**
+   * The tiles that were built, indexed by packed tile position.
+   */
+  private static final Long2ObjectMap<Tile> tiles = new Long2ObjectOpenHashMap<>();
+  /**
+   * The layers of the city dimension the player is in, null if they are in another dimension.
+   */
+  @Nullable
+  private static LayerPlan plan;
+  @Nullable
+  private static BufferBuilder bufferBuilder;
+
+  /**
+   * Register the packet receiver and render events needed to render simplified models.
+   */
+  public static void init() {
+    ClientPlayNetworking.registerGlobalReceiver(CityLayoutSync.PACKET_ID, (client, handler, buf, responseSender) -> {
+      final LayerPlan newPlan = buf.readBoolean()
+          ? LayerPlan.compile(buf.decode(NbtOps.INSTANCE, InfiniteCityChunkGeneratorConfig.LayerSettings.CODEC))
+          : null;
+      client.execute(() -> setPlan(newPlan));
+    });
+    ClientPlayConnectionEvents.DISCONNECT.register((handler, client) -> client.execute(() -> setPlan(null)));
+    WorldRenderEvents.AFTER_ENTITIES.register(CityLod::render);
+  }
+
+  /**
+   * Return whether simplified models are rendered in the client’s current world.
+   */
+  public static boolean isActive(MinecraftClient client) {
+    return ClientConfig.shouldRenderLod() && plan != null
+        && getLodDistance(client) > client.options.getClampedViewDistance()
+        && client.world != null && client.world.getDimensionEffects() instanceof InfiniteCityDimensionEffects;
+  }
+
+  /**
+   * Return the distance (in chunks) up to which simplified models are rendered.
+   * Models farther than the far plane of the game’s projection, four times the render distance, would be clipped.
+   */
+  private static int getLodDistance(MinecraftClient client) {
+    return Math.min(ClientConfig.getRenderLodDistance(), (int) (client.gameRenderer.getViewDistance() * 4) >> 4);
+  }
+
+  /**
+   * Return the distance (in blocks) at which simplified models have completely faded.
+   */
+  private static float getFadeEnd(MinecraftClient client) {
+    return getLodDistance(client) * 16;
+  }
+
+  private static void setPlan(@Nullable LayerPlan newPlan) {
+    plan = newPlan;
+    clearTiles();
+  }
+
+  private static void clearTiles() {
+    tiles.values().forEach(Tile::close);
+    tiles.clear();
+  }
+
+  private static void render(WorldRenderContext context) {
+    final MinecraftClient client = MinecraftClient.getInstance();
+    final LayerPlan plan = CityLod.plan;
+    if (plan == null || !isActive(client)) {
+      if (!tiles.isEmpty())
+        clearTiles();
+      return;
+    }
+
+    final Vec3d cameraPos = context.camera().getPos();
+    final int cameraChunkX = ChunkSectionPos.getSectionCoord(cameraPos.x);
+    final int cameraChunkZ = ChunkSectionPos.getSectionCoord(cameraPos.z);
+    final long center = ChunkPos.toLong(cameraChunkX, cameraChunkZ);
+    final int viewDistance = client.options.getClampedViewDistance();
+    final int lodDistance = getLodDistance(client);
+    final int cameraTileX = cameraChunkX >> TILE_SHIFT;
+    final int cameraTileZ = cameraChunkZ >> TILE_SHIFT;
+    final int tilesRadius = (lodDistance >> TILE_SHIFT) + 1;
+
+    tiles.long2ObjectEntrySet().removeIf(entry -> {
+      final boolean far = Math.abs(ChunkPos.getPackedX(entry.getLongKey()) - cameraTileX) > tilesRadius
+          || Math.abs(ChunkPos.getPackedZ(entry.getLongKey()) - cameraTileZ) > tilesRadius;
+      if (far)
+        entry.getValue().close();
+      return far;
+    });
+
+    final List<VisibleTile> visibleTiles = new ArrayList<>();
+    int buildBudget = ClientConfig.getRenderLodTilesPerFrame();
+    for (int tileX = cameraTileX - tilesRadius; tileX <= cameraTileX + tilesRadius; tileX++) {
+      for (int tileZ = cameraTileZ - tilesRadius; tileZ <= cameraTileZ + tilesRadius; tileZ++) {
+        final int minChunkX = tileX << TILE_SHIFT;
+        final int minChunkZ = tileZ << TILE_SHIFT;
+        final int maxChunkX = minChunkX + TILE_SIZE - 1;
+        final int maxChunkZ = minChunkZ + TILE_SIZE - 1;
+        final int nearDistance = Math.max(
+            distanceToRange(cameraChunkX, minChunkX, maxChunkX), distanceToRange(cameraChunkZ, minChunkZ, maxChunkZ));
+        final int farDistance = Math.max(
+            Math.max(Math.abs(cameraChunkX - minChunkX), Math.abs(cameraChunkX - maxChunkX)),
+            Math.max(Math.abs(cameraChunkZ - minChunkZ), Math.abs(cameraChunkZ - maxChunkZ)));
+        // Skip tiles out of range and those entirely within the render distance
+        if (nearDistance > lodDistance || farDistance <= viewDistance)
+          continue;
+        final Box box = new Box(minChunkX << 4, plan.getLayerY(2), minChunkZ << 4,
+            (maxChunkX + 1) << 4, InfiniteCityChunkGenerator.TOP, (maxChunkZ + 1) << 4);
+        if (!context.frustum().isVisible(box))
+          continue;
+
+        final boolean partial = nearDistance <= viewDistance;
+        final long key = ChunkPos.toLong(tileX, tileZ);
+        Tile tile = tiles.get(key);
+        if ((tile == null || (tile.partial() || partial) && tile.center() != center) && buildBudget > 0) {
+          buildBudget--;
+          if (tile != null)
+            tile.close();
+          tile = buildTile(plan, tileX, tileZ, cameraChunkX, cameraChunkZ, viewDistance, partial, center);
+          tiles.put(key, tile);
+        }
+        if (tile != null && tile.buffer() != null) {
+          final double dx = Math.max(0, Math.max(box.minX - cameraPos.x, cameraPos.x - box.maxX));
+          final double dz = Math.max(0, Math.max(box.minZ - cameraPos.z, cameraPos.z - box.maxZ));
+          visibleTiles.add(new VisibleTile(tile.buffer(), minChunkX << 4, minChunkZ << 4, Math.sqrt(dx * dx + dz * dz)));
+        }
+      }
+    }
+    final float fogEnd = viewDistance * 16;
+    final float fadeInEnd = fogEnd + FADE_IN_WIDTH;
+    final float fadeEnd = getFadeEnd(client);
+    // Models would show through a thicker fog
+    if (visibleTiles.isEmpty() || fadeEnd <= fadeInEnd || RenderSystem.getShaderFogEnd() < fogEnd)
+      return;
+
+    // Draw far tiles first, so that near ones are blended over them
+    visibleTiles.sort(Comparator.comparingDouble(VisibleTile::distance).reversed());
+    final MatrixStack matrices = context.matrixStack();
+    RenderSystem.enableBlend();
+    RenderSystem.defaultBlendFunc();
+    RenderSystem.enableDepthTest();
+    RenderSystem.disableCull();
+    for (final VisibleTile tile : visibleTiles) {
+      final float distance = (float) tile.distance();
+      final float alpha = MathHelper.clamp((distance - fogEnd) / FADE_IN_WIDTH, 0, 1)
+          * (1 - MathHelper.clamp((distance - fadeInEnd) / (fadeEnd - fadeInEnd), 0, 1));
+      if (alpha <= 0)
+        continue;
+      matrices.push();
+      matrices.translate(tile.x() - cameraPos.x, -cameraPos.y, tile.z() - cameraPos.z);
+      RenderSystem.setShaderColor(1, 1, 1, alpha);
+      tile.buffer().bind();
+      tile.buffer().draw(matrices.peek().getPositionMatrix(), context.projectionMatrix(), GameRenderer.getPositionColorProgram());
+      matrices.pop();
+    }
+    VertexBuffer.unbind();
+    RenderSystem.setShaderColor(1, 1, 1, 1);
+    RenderSystem.enableCull();
+    RenderSystem.disableBlend();
+  }
+
+  /**
+   * Return the distance between a coordinate and a range, 0 if the coordinate is within the range.
+   */
+  private static int distanceToRange(int coordinate, int min, int max) {
+    return Math.max(0, Math.max(min - coordinate, coordinate - max));
+  }
+
+  /**
+   * Build the boxes of a tile. Chunks within the render distance are left out.
+   * Adjacent chunks of the same row with identical ranges are merged into a single box.
+   */
+  private static Tile buildTile(LayerPlan plan, int tileX, int tileZ, int cameraChunkX, int cameraChunkZ,
+                                int viewDistance, boolean partial, long center) {
+    if (bufferBuilder == null)
+      bufferBuilder = new BufferBuilder(1 << 16);
+    bufferBuilder.begin(VertexFormat.DrawMode.QUADS, VertexFormats.POSITION_COLOR);
+    for (int z = 0; z < TILE_SIZE; z++) {
+      final int chunkZ = (tileZ << TILE_SHIFT) + z;
+      int[] runRanges = NO_RANGES;
+      int runStart = 0;
+      for (int x = 0; x <= TILE_SIZE; x++) {
+        final int chunkX = (tileX << TILE_SHIFT) + x;
+        final boolean loaded = Math.abs(chunkX - cameraChunkX) <= viewDistance && Math.abs(chunkZ - cameraChunkZ) <= viewDistance;
+        final int[] ranges = x == TILE_SIZE || loaded ? NO_RANGES : plan.getSolidRanges(chunkX, chunkZ);
+        if (!Arrays.equals(ranges, runRanges)) {
+          for (int i = 0; i < runRanges.length; i += 2)
+            emitBox(bufferBuilder, runStart << 4, runRanges[i], z << 4, x << 4, runRanges[i + 1], (z + 1) << 4);
+          runRanges = ranges;
+          runStart = x;
+        }
+      }
+    }
+    final BufferBuilder.BuiltBuffer builtBuffer = bufferBuilder.endNullable();
+    if (builtBuffer == null)
+      return new Tile(null, partial, center);
+    final VertexBuffer buffer = new VertexBuffer(VertexBuffer.Usage.STATIC);
+    buffer.bind();
+    buffer.upload(builtBuffer);
+    VertexBuffer.unbind();
+    return new Tile(buffer, partial, center);
+  }
+
+  private static void emitBox(BufferBuilder builder, int x0, int y0, int z0, int x1, int y1, int z1) {
+    // Down
+    emitQuad(builder, 0.5f, x0, y0, z0, x1, y0, z0, x1, y0, z1, x0, y0, z1);
+    // Up
+    emitQuad(builder, 1, x0, y1, z0, x0, y1, z1, x1, y1, z1, x1, y1, z0);
+    // North
+    emitQuad(builder, 0.8f, x0, y0, z0, x0, y1, z0, x1, y1, z0, x1, y0, z0);
+    // South
+    emitQuad(builder, 0.8f, x0, y0, z1, x1, y0, z1, x1, y1, z1, x0, y1, z1);
+    // West
+    emitQuad(builder, 0.6f, x0, y0, z0, x0, y0, z1, x0, y1, z1, x0, y1, z0);
+    // East
+    emitQuad(builder, 0.6f, x1, y0, z0, x1, y1, z0, x1, y1, z1, x1, y0, z1);
+  }
+
+  private static void emitQuad(BufferBuilder builder, float shade, int... coordinates) {
+    for (int i = 0; i < coordinates.length; i += 3)
+      builder.vertex(coordinates[i], coordinates[i + 1], coordinates[i + 2])
+          .color(RED * shade, GREEN * shade, BLUE * shade, 1)
+          .next();
+  }
+
+  /**
+   * A built tile.
+   *
+   * @param buffer  The tile’s vertex buffer, null if the tile is empty.
+   * @param partial Whether some chunks of the tile were within the render distance when it was built.
+   * @param center  The packed position of the camera’s chunk when the tile was built.
+   */
+  private record Tile(@Nullable VertexBuffer buffer, boolean partial, long center) {
+    void close() {
+      if (this.buffer != null)
+        this.buffer.close();
+    }
+  }
+
+  /**
+   * A tile to draw during the current frame.
+   *
+   * @param buffer   The tile’s vertex buffer.
+   * @param x        The X position of the tile’s north-west corner.
+   * @param z        The Z position of the tile’s north-west corner.
+   * @param distance The horizontal distance between the camera and the tile.
+   */
+  private record VisibleTile(VertexBuffer buffer, int x, int z, double distance) {
+  }
+
+  private CityLod() {
+  }
+}
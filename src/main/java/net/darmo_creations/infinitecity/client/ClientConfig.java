@@ -0,0 +1,118 @@
+package net.darmo_creations.infinitecity.client;
+
+import net.darmo_creations.infinitecity.*;
+import net.fabricmc.loader.api.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Client-side options of this mod.
+ * <p>
+ * Options are read from the {@code config/infinitecity-client.properties} file.
+ * Missing options are set to their default value and written back to the file.
+ */
+public final class ClientConfig {
+  private static final String FILE_NAME = InfiniteCity.MOD_ID + "-client.properties";
+
+  private static boolean renderVerticalCulling;
+  private static int renderVerticalCullingMargin;
+  private static boolean renderLod;
+  private static int renderLodDistance;
+  private static int renderLodTilesPerFrame;
+
+  /**
+   * Whether sections of city dimensions that are vertically farther from the camera than the fog
+   * should be neither built nor drawn.
+   */
+  public static boolean shouldRenderVerticalCulling() {
+    return renderVerticalCulling;
+  }
+
+  /**
+   * The distance (in blocks) beyond the end of the fog within which sections are still rendered
+   * when {@link #shouldRenderVerticalCulling()} is enabled.
+   */
+  public static int getRenderVerticalCullingMargin() {
+    return renderVerticalCullingMargin;
+  }
+
+  /**
+   * Whether simplified models of the city should be rendered beyond the render distance in city dimensions.
+   */
+  public static boolean shouldRenderLod() {
+    return renderLod;
+  }
+
+  /**
+   * The distance (in chunks) up to which simplified models of the city are rendered
+   * when {@link #shouldRenderLod()} is enabled. Models fade into the background up to this distance.
+   * It is limited to the far plane of the projection, four times the render distance.
+   */
+  public static int getRenderLodDistance() {
+    return renderLodDistance;
+  }
+
+  /**
+   * The maximum number of tiles of simplified models that may be built during a single frame.
+   */
+  public static int getRenderLodTilesPerFrame() {
+    return renderLodTilesPerFrame;
+  }
+
+  /**
+   * Load the options from the config file.
+   */
+  public static void load() {
+    final Path path = FabricLoader.getInstance().getConfigDir().resolve(FILE_NAME);
+    final Properties properties = new Properties();
+    if (Files.exists(path)) {
+      try (final var reader = Files.newBufferedReader(path)) {
+        properties.load(reader);
+      } catch (IOException e) {
+        InfiniteCity.LOGGER.error("Could not read client config file, using default values", e);
+      }
+    }
+
+    renderVerticalCulling = getBoolean(properties, "render.vertical_culling", true);
+    renderVerticalCullingMargin = getInt(properties, "render.vertical_culling_margin", 16, 0);
+    renderLod = getBoolean(properties, "render.lod", false);
+    renderLodDistance = getInt(properties, "render.lod_distance", 96, 16);
+    renderLodTilesPerFrame = getInt(properties, "render.lod_tiles_per_frame", 4, 1);
+
+    try (final var writer = Files.newBufferedWriter(path)) {
+      properties.store(writer, "InfiniteCity client options");
+    } catch (IOException e) {
+      InfiniteCity.LOGGER.error("Could not write client config file", e);
+    }
+  }
+
+  private static int getInt(Properties properties, String key, int defaultValue, int min) {
+    try {
+      final int value = Integer.parseInt(properties.getProperty(key, String.valueOf(defaultValue)));
+      if (value >= min) {
+        properties.setProperty(key, String.valueOf(value));
+        return value;
+      }
+    } catch (NumberFormatException ignored) {
+    }
+    InfiniteCity.LOGGER.warn("Invalid value for option {}, using default value {}", key, defaultValue);
+    properties.setProperty(key, String.valueOf(defaultValue));
+    return defaultValue;
+  }
+
+  private static boolean getBoolean(Properties properties, String key, boolean defaultValue) {
+    final String value = properties.getProperty(key, String.valueOf(defaultValue));
+    if (value.equals("true") || value.equals("false")) {
+      properties.setProperty(key, value);
+      return Boolean.parseBoolean(value);
+    }
+    InfiniteCity.LOGGER.warn("Invalid value for option {}, using default value {}", key, defaultValue);
+    properties.setProperty(key, String.valueOf(defaultValue));
+    return defaultValue;
+  }
+
+  private ClientConfig() {
+  }
+}
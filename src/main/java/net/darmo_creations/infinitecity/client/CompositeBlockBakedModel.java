@@ -0,0 +1,170 @@
+package net.darmo_creations.infinitecity.client;
+
+import net.darmo_creations.infinitecity.blocks.*;
+import net.minecraft.block.*;
+import net.minecraft.client.render.model.*;
+import net.minecraft.client.render.model.json.*;
+import net.minecraft.client.texture.*;
+import net.minecraft.util.*;
+import net.minecraft.util.math.*;
+import net.minecraft.util.math.random.Random;
+import org.jetbrains.annotations.*;
+import org.joml.Vector3f;
+
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * The baked model shared by all states of a {@link CompositeBlock}.
+ * <p>
+ * The 6 faces of the 8 corners are baked once. The quads of a state are the faces of its filled corners,
+ * except those between two filled corners, which can never be seen. They are composed the first time
+ * the state is rendered and cached by corners mask.
+ * Faces on the block’s sides are culled by neighbor blocks like those of regular models.
+ */
+public class CompositeBlockBakedModel implements BakedModel {
+  private static final int DIRECTIONS_COUNT = Direction.values().length;
+
+  private final Sprite sprite;
+  /**
+   * The quads of each face of each corner, indexed by corner then by {@link Direction#ordinal()}.
+   */
+  private final BakedQuad[][] cornerQuads = new BakedQuad[CompositeCorners.COUNT][DIRECTIONS_COUNT];
+  /**
+   * The quads of each corners mask, indexed by cull face, quads without cull face are last.
+   */
+  private final AtomicReferenceArray<List<BakedQuad>[]> quadsCache = new AtomicReferenceArray<>(CompositeCorners.FULL_MASK + 1);
+
+  /**
+   * Bake the faces of all corners.
+   *
+   * @param sprite   The texture of all faces.
+   * @param settings The model’s bake settings.
+   * @param modelId  The model’s ID.
+   */
+  public CompositeBlockBakedModel(Sprite sprite, ModelBakeSettings settings, Identifier modelId) {
+    this.sprite = sprite;
+    final BakedQuadFactory quadFactory = new BakedQuadFactory();
+    for (int corner = 0; corner < CompositeCorners.COUNT; corner++) {
+      final Vector3f from = new Vector3f(
+          (corner & CompositeCorners.WEST) != 0 ? 0 : 8,
+          (corner & CompositeCorners.BOTTOM) != 0 ? 0 : 8,
+          (corner & CompositeCorners.SOUTH) != 0 ? 8 : 0
+      );
+      final Vector3f to = new Vector3f(from).add(8, 8, 8);
+      for (final Direction side : Direction.values()) {
+        final ModelElementFace face = new ModelElementFace(
+            isOnSide(corner, side) ? side : null, -1, "", new ModelElementTexture(getUvs(from, to, side), 0));
+        this.cornerQuads[corner][side.ordinal()] = quadFactory.bake(from, to, face, sprite, side, settings, null, true, modelId);
+      }
+    }
+  }
+
+  @Override
+  public List<BakedQuad> getQuads(@Nullable BlockState state, @Nullable Direction face, Random random) {
+    if (state == null || !(state.getBlock() instanceof CompositeBlock block))
+      return List.of();
+    final int mask = block.getCornersMask(state);
+    List<BakedQuad>[] quads = this.quadsCache.get(mask);
+    if (quads == null) {
+      quads = this.buildQuads(mask);
+      // Another thread may have built the same quads in the meantime, both results are identical
+      this.quadsCache.set(mask, quads);
+    }
+    return quads[face != null ? face.ordinal() : DIRECTIONS_COUNT];
+  }
+
+  /**
+   * Compose the quads of the given corners mask.
+   */
+  private List<BakedQuad>[] buildQuads(int mask) {
+    final List<List<BakedQuad>> quads = new ArrayList<>();
+    for (int i = 0; i <= DIRECTIONS_COUNT; i++)
+      quads.add(new ArrayList<>());
+    for (int corner = 0; corner < CompositeCorners.COUNT; corner++) {
+      if (!CompositeCorners.isFilled(mask, corner))
+        continue;
+      for (final Direction side : Direction.values()) {
+        final BakedQuad quad = this.cornerQuads[corner][side.ordinal()];
+        if (isOnSide(corner, side))
+          quads.get(side.ordinal()).add(quad);
+        else if (!CompositeCorners.isFilled(mask, corner ^ getAxisBit(side.getAxis())))
+          quads.get(DIRECTIONS_COUNT).add(quad);
+      }
+    }
+    //noinspection unchecked
+    return quads.stream().map(List::copyOf).toArray(List[]::new);
+  }
+
+  /**
+   * Return the bit of corner indices that changes along the given axis.
+   */
+  private static int getAxisBit(Direction.Axis axis) {
+    return switch (axis) {
+      case X -> CompositeCorners.WEST;
+      case Y -> CompositeCorners.BOTTOM;
+      case Z -> CompositeCorners.SOUTH;
+    };
+  }
+
+  /**
+   * Return whether the given side of a corner is on the block’s side in the same direction.
+   */
+  private static boolean isOnSide(int corner, Direction side) {
+    final boolean set = (corner & getAxisBit(side.getAxis())) != 0;
+    return switch (side) {
+      case DOWN, WEST, SOUTH -> set;
+      case UP, EAST, NORTH -> !set;
+    };
+  }
+
+  /**
+   * Return the UVs of a face of the given box, so that textures are aligned with the block’s grid
+   * (same values as those computed for model elements without explicit UVs).
+   */
+  private static float[] getUvs(Vector3f from, Vector3f to, Direction side) {
+    return switch (side) {
+      case DOWN -> new float[] {from.x, 16 - to.z, to.x, 16 - from.z};
+      case UP -> new float[] {from.x, from.z, to.x, to.z};
+      case NORTH -> new float[] {16 - to.x, 16 - to.y, 16 - from.x, 16 - from.y};
+      case SOUTH -> new float[] {from.x, 16 - to.y, to.x, 16 - from.y};
+      case WEST -> new float[] {from.z, 16 - to.y, to.z, 16 - from.y};
+      case EAST -> new float[] {16 - to.z, 16 - to.y, 16 - from.z, 16 - from.y};
+    };
+  }
+
+  @Override
+  public boolean useAmbientOcclusion() {
+    return true;
+  }
+
+  @Override
+  public boolean hasDepth() {
+    return false;
+  }
+
+  @Override
+  public boolean isSideLit() {
+    return true;
+  }
+
+  @Override
+  public boolean isBuiltin() {
+    return false;
+  }
+
+  @Override
+  public Sprite getParticleSprite() {
+    return this.sprite;
+  }
+
+  @Override
+  public ModelTransformation getTransformation() {
+    return ModelTransformation.NONE;
+  }
+
+  @Override
+  public ModelOverrideList getOverrides() {
+    return ModelOverrideList.EMPTY;
+  }
+}
@@ -0,0 +1,50 @@
+package net.darmo_creations.infinitecity.client;
+
+import net.darmo_creations.infinitecity.blocks.*;
+import net.minecraft.client.render.model.*;
+import net.minecraft.client.texture.*;
+import net.minecraft.client.util.*;
+import net.minecraft.screen.*;
+import net.minecraft.util.*;
+import org.jetbrains.annotations.*;
+
+import java.util.*;
+import java.util.function.*;
+
+/**
+ * The unbaked model of all states of a {@link CompositeBlock}, made of cubic corners with a single texture.
+ * It replaces a multipart blockstate file, whose states would each get their own baked model.
+ * The model is baked only once and shared by all states, see {@link CompositeBlockBakedModel}.
+ */
+public class CompositeBlockModel implements UnbakedModel {
+  private final SpriteIdentifier texture;
+  @Nullable
+  private BakedModel bakedModel;
+
+  /**
+   * Create a model.
+   *
+   * @param texture The ID of the texture of all faces in the block atlas.
+   */
+  public CompositeBlockModel(Identifier texture) {
+    //noinspection deprecation
+    this.texture = new SpriteIdentifier(PlayerScreenHandler.BLOCK_ATLAS_TEXTURE, texture);
+  }
+
+  @Override
+  public Collection<Identifier> getModelDependencies() {
+    return List.of();
+  }
+
+  @Override
+  public void setParents(Function<Identifier, UnbakedModel> modelLoader) {
+  }
+
+  @Override
+  public BakedModel bake(Baker baker, Function<SpriteIdentifier, Sprite> textureGetter, ModelBakeSettings rotationContainer, Identifier modelId) {
+    // Called once per block state, all states share the same rotation
+    if (this.bakedModel == null)
+      this.bakedModel = new CompositeBlockBakedModel(textureGetter.apply(this.texture), rotationContainer, modelId);
+    return this.bakedModel;
+  }
+}
@@ -0,0 +1,12 @@
+package net.darmo_creations.infinitecity.client;
+
+/**
+ * Implemented by section rebuild tasks to tell whether their section was found enclosed by {@link EnclosedSections}.
+ */
+public interface EnclosedRebuildTask {
+  /**
+   * Set whether this task’s section is enclosed. Enclosed sections are built without a region
+   * and with an occlusion graph closed on every face.
+   */
+  void infinitecity$setEnclosed(boolean enclosed);
+}
@@ -0,0 +1,90 @@
+package net.darmo_creations.infinitecity.client;
+
+import net.minecraft.block.*;
+import net.minecraft.util.math.*;
+import net.minecraft.world.*;
+import net.minecraft.world.chunk.*;
+import org.jetbrains.annotations.*;
+
+/**
+ * This class detects chunk sections that cannot produce any visible face: sections filled with a single opaque
+ * full cube block whose 6 sides are covered by opaque full cubes of their neighbor sections.
+ * The thick terrain layers of city dimensions are mostly made of such sections.
+ * <p>
+ * Meshing these sections iterates over all their blocks to emit no quads at all, so their mesh is not built.
+ * Their occlusion graph is still closed on every face, so that they keep hiding the sections behind them.
+ * Changing a block on the side of a neighbor section schedules a rebuild of the enclosed section,
+ * which is then checked again.
+ */
+public final class EnclosedSections {
+  /**
+   * Return whether the section at the given position would have an empty mesh because it is enclosed.
+   * Sections of unloaded chunks are never considered opaque.
+   *
+   * @param world      The world the section is in.
+   * @param sectionPos The section’s position.
+   * @return True if the section is uniform, opaque and surrounded by opaque faces.
+   */
+  public static boolean isEnclosed(World world, ChunkSectionPos sectionPos) {
+    final ChunkSection section = getSection(world, sectionPos);
+    if (section == null)
+      return false;
+    final BlockState state = section.getBlockState(0, 0, 0);
+    if (!isOpaque(state) || state.hasBlockEntity() || !isUniform(section, state))
+      return false;
+    for (final Direction direction : Direction.values()) {
+      final ChunkSection neighbor = getSection(world, sectionPos.add(direction.getOffsetX(), direction.getOffsetY(), direction.getOffsetZ()));
+      if (neighbor == null || !isSideOpaque(neighbor, direction.getOpposite()))
+        return false;
+    }
+    return true;
+  }
+
+  @Nullable
+  private static ChunkSection getSection(World world, ChunkSectionPos sectionPos) {
+    final int y = sectionPos.getSectionY();
+    if (y < world.getBottomSectionCoord() || y >= world.getTopSectionCoord())
+      return null;
+    final Chunk chunk = world.getChunk(sectionPos.getSectionX(), sectionPos.getSectionZ(), ChunkStatus.FULL, false);
+    if (chunk == null)
+      return null;
+    final ChunkSection section = chunk.getSection(world.sectionCoordToIndex(y));
+    return section.isEmpty() ? null : section;
+  }
+
+  /**
+   * Return whether all blocks of the given section are in the given state.
+   * Only the palette is checked, sections whose palette still holds states that were replaced are not uniform.
+   */
+  private static boolean isUniform(ChunkSection section, BlockState state) {
+    return !section.getBlockStateContainer().hasAny(s -> s != state);
+  }
+
+  /**
+   * Return whether all blocks on the given side of a section are opaque full cubes.
+   */
+  private static boolean isSideOpaque(ChunkSection section, Direction side) {
+    final BlockState first = section.getBlockState(0, 0, 0);
+    if (isOpaque(first) && isUniform(section, first))
+      return true;
+    final int layer = side.getDirection() == Direction.AxisDirection.POSITIVE ? 15 : 0;
+    for (int u = 0; u < 16; u++)
+      for (int v = 0; v < 16; v++) {
+        final BlockState state = switch (side.getAxis()) {
+          case X -> section.getBlockState(layer, u, v);
+          case Y -> section.getBlockState(u, layer, v);
+          case Z -> section.getBlockState(u, v, layer);
+        };
+        if (!isOpaque(state))
+          return false;
+      }
+    return true;
+  }
+
+  private static boolean isOpaque(BlockState state) {
+    return state.isOpaqueFullCube(EmptyBlockView.INSTANCE, BlockPos.ORIGIN);
+  }
+
+  private EnclosedSections() {
+  }
+}
@@ -1,7 +1,9 @@
 package net.darmo_creations.infinitecity.client;
 
 import net.darmo_creations.infinitecity.*;
+import net.darmo_creations.infinitecity.blocks.*;
 import net.fabricmc.api.*;
+import net.fabricmc.fabric.api.client.model.loading.v1.*;
 import net.fabricmc.fabric.mixin.client.rendering.*;
 import net.minecraft.util.*;
 
@@ -17,11 +19,24 @@ public class InfiniteCityClient implements ClientModInitializer {
 
   @Override
   public void onInitializeClient() {
+    ClientConfig.load();
+    VerticalCulling.init();
+    CityLod.init();
+    SectionWindowUpdates.init();
     // Inject custom dimension effects. Custom dimension and dimension type are added through datapack.
     //noinspection UnstableApiUsage
     DimensionEffectsAccessor.getIdentifierMap().put(
         INFINITE_CITY_DIMENSION_EFFECTS_KEY,
         new InfiniteCityDimensionEffects()
     );
+    ModelLoadingPlugin.register(pluginContext -> {
+      final CompositeBlock block = ModBlocks.LIGHT_GRAY_CONCRETE_COMPOSITE_BLOCK;
+      // Replaces the blockstate file, a new model is needed on each reload as it caches its baked model
+      pluginContext.registerBlockStateResolver(block, context -> {
+        final var model = new CompositeBlockModel(new Identifier("block/light_gray_concrete"));
+        for (final var state : block.getStateManager().getStates())
+          context.setModel(state, model);
+      });
+    });
   }
 }
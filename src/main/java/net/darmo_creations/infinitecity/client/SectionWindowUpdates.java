@@ -0,0 +1,58 @@
+package net.darmo_creations.infinitecity.client;
+
+import net.darmo_creations.infinitecity.server.*;
+import net.fabricmc.fabric.api.client.networking.v1.*;
+import net.fabricmc.fabric.api.networking.v1.*;
+import net.minecraft.client.*;
+import net.minecraft.client.world.*;
+import net.minecraft.network.*;
+import net.minecraft.util.math.*;
+import net.minecraft.world.chunk.*;
+
+/**
+ * This class receives the sections of city chunks that entered the player’s window (see {@link SectionWindows})
+ * and puts them into the chunks the client already has.
+ * <p>
+ * Sections of chunks that are not loaded are ignored, the server sends them with the whole chunk.
+ */
+public final class SectionWindowUpdates {
+  /**
+   * Register the packet receiver.
+   */
+  public static void init() {
+    ClientPlayNetworking.registerGlobalReceiver(SectionWindows.PACKET_ID, (client, handler, buf, responseSender) -> {
+      // The received buffer is released once this method returns
+      final PacketByteBuf copy = PacketByteBufs.copy(buf);
+      client.execute(() -> {
+        try {
+          readSections(client, copy);
+        } finally {
+          copy.release();
+        }
+      });
+    });
+  }
+
+  private static void readSections(MinecraftClient client, PacketByteBuf buf) {
+    final ClientWorld world = client.world;
+    final ChunkPos pos = buf.readChunkPos();
+    if (world == null || !(world.getChunkManager().getChunk(pos.x, pos.z, ChunkStatus.FULL, false) instanceof WorldChunk chunk))
+      return;
+    final int count = buf.readShort();
+    for (int i = 0; i < count; i++) {
+      final int index = buf.readShort();
+      final ChunkSection section = chunk.getSection(index);
+      section.readDataPacket(buf);
+      final int sectionY = chunk.sectionIndexToCoord(index);
+      world.getChunkManager().getLightingProvider().setSectionStatus(ChunkSectionPos.from(pos, sectionY), section.isEmpty());
+      // Faces of neighbor sections may have been hidden by the new blocks
+      final int x = pos.getStartX();
+      final int y = ChunkSectionPos.getBlockCoord(sectionY);
+      final int z = pos.getStartZ();
+      client.worldRenderer.scheduleBlockRenders(x - 1, y - 1, z - 1, x + 16, y + 16, z + 16);
+    }
+  }
+
+  private SectionWindowUpdates() {
+  }
+}
@@ -0,0 +1,49 @@
+package net.darmo_creations.infinitecity.client;
+
+import net.fabricmc.fabric.api.client.rendering.v1.*;
+import net.minecraft.client.*;
+
+/**
+ * This class computes the vertical render limit of city dimensions.
+ * <p>
+ * City dimensions have no sky and a cylindrical fog that ends at the render distance, including vertically.
+ * Simplified models (see {@link CityLod}) do not change the fog and are not affected by this limit.
+ * Sections farther above or below the camera than the fog’s end cannot be seen, but would still be built
+ * and drawn as they are within the horizontal render distance.
+ * The frustum rejects them (see {@link net.darmo_creations.infinitecity.mixins.MixinFrustum}),
+ * which excludes them from both chunk rebuilds and drawing.
+ * <p>
+ * The limit is updated at the start of each frame, from the options in {@link ClientConfig}.
+ */
+public final class VerticalCulling {
+  /**
+   * The maximum vertical distance (in blocks) between the camera and a visible box.
+   */
+  private static volatile double maxDistance = Double.POSITIVE_INFINITY;
+
+  /**
+   * Register the render event that updates the limit.
+   */
+  public static void init() {
+    WorldRenderEvents.START.register(context -> update(MinecraftClient.getInstance()));
+  }
+
+  /**
+   * Return the maximum vertical distance (in blocks) between the camera and a visible box,
+   * infinite if culling is disabled or the client is not in a city dimension.
+   */
+  public static double getMaxDistance() {
+    return maxDistance;
+  }
+
+  private static void update(MinecraftClient client) {
+    if (ClientConfig.shouldRenderVerticalCulling() && client.world != null
+        && client.world.getDimensionEffects() instanceof InfiniteCityDimensionEffects) {
+      maxDistance = client.gameRenderer.getViewDistance() + ClientConfig.getRenderVerticalCullingMargin();
+    } else
+      maxDistance = Double.POSITIVE_INFINITY;
+  }
+
+  private VerticalCulling() {
+  }
+}
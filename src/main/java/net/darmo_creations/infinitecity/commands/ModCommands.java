@@ -0,0 +1,25 @@
+package net.darmo_creations.infinitecity.commands;
+
+import net.darmo_creations.infinitecity.*;
+import net.fabricmc.fabric.api.command.v2.*;
+import net.minecraft.server.command.*;
+
+/**
+ * Declares all commands added by this mod.
+ * All of them are subcommands of {@code /infinitecity} and require operator permissions.
+ */
+public final class ModCommands {
+  /**
+   * Register this mod’s commands.
+   */
+  public static void init() {
+    CommandRegistrationCallback.EVENT.register((dispatcher, registryAccess, environment) ->
+        dispatcher.register(CommandManager.literal(InfiniteCity.MOD_ID)
+            .requires(source -> source.hasPermissionLevel(2))
+            .then(PregenCommand.build())
+            .then(StatsCommand.build())));
+  }
+
+  private ModCommands() {
+  }
+}
@@ -0,0 +1,105 @@
+package net.darmo_creations.infinitecity.commands;
+
+import com.mojang.brigadier.arguments.*;
+import com.mojang.brigadier.builder.*;
+import com.mojang.brigadier.context.*;
+import com.mojang.brigadier.exceptions.*;
+import net.darmo_creations.infinitecity.server.*;
+import net.minecraft.command.*;
+import net.minecraft.command.argument.*;
+import net.minecraft.server.command.*;
+import net.minecraft.text.*;
+import net.minecraft.util.math.*;
+
+import java.util.*;
+
+/**
+ * The {@code /infinitecity pregen} subcommand starts, stops and reports on chunk pregeneration tasks.
+ * <p>
+ * Chunks are generated in the dimension the command is executed in.
+ *
+ * @see ChunkPregenerator
+ */
+final class PregenCommand {
+  private static final int DEFAULT_MAX_IN_FLIGHT = 16;
+  private static final double DEFAULT_TARGET_MSPT = 40;
+
+  private static final SimpleCommandExceptionType ALREADY_RUNNING_EXCEPTION =
+      new SimpleCommandExceptionType(Text.translatable("commands.infinitecity.pregen.already_running"));
+  private static final SimpleCommandExceptionType NOT_RUNNING_EXCEPTION =
+      new SimpleCommandExceptionType(Text.translatable("commands.infinitecity.pregen.not_running"));
+  private static final DynamicCommandExceptionType INVALID_SHAPE_EXCEPTION =
+      new DynamicCommandExceptionType(name -> Text.translatable("commands.infinitecity.pregen.invalid_shape", name));
+
+  /**
+   * Create the subcommand’s node.
+   */
+  static LiteralArgumentBuilder<ServerCommandSource> build() {
+    return CommandManager.literal("pregen")
+        .then(CommandManager.literal("start")
+            .then(CommandManager.argument("center", ColumnPosArgumentType.columnPos())
+                .then(CommandManager.argument("radius", IntegerArgumentType.integer(0, 10000))
+                    .executes(ctx -> start(ctx, PregenShape.SPIRAL, DEFAULT_MAX_IN_FLIGHT, DEFAULT_TARGET_MSPT))
+                    .then(CommandManager.argument("shape", StringArgumentType.word())
+                        .suggests((ctx, builder) -> CommandSource.suggestMatching(
+                            Arrays.stream(PregenShape.values()).map(PregenShape::asString), builder))
+                        .executes(ctx -> start(ctx, getShape(ctx), DEFAULT_MAX_IN_FLIGHT, DEFAULT_TARGET_MSPT))
+                        .then(CommandManager.argument("maxInFlight", IntegerArgumentType.integer(1, 1024))
+                            .executes(ctx -> start(ctx, getShape(ctx),
+                                IntegerArgumentType.getInteger(ctx, "maxInFlight"), DEFAULT_TARGET_MSPT))
+                            .then(CommandManager.argument("targetMspt", DoubleArgumentType.doubleArg(1))
+                                .executes(ctx -> start(ctx, getShape(ctx),
+                                    IntegerArgumentType.getInteger(ctx, "maxInFlight"),
+                                    DoubleArgumentType.getDouble(ctx, "targetMspt")))))))))
+        .then(CommandManager.literal("stop")
+            .executes(PregenCommand::stop))
+        .then(CommandManager.literal("status")
+            .executes(PregenCommand::status));
+  }
+
+  private static PregenShape getShape(CommandContext<ServerCommandSource> ctx) throws CommandSyntaxException {
+    final String name = StringArgumentType.getString(ctx, "shape");
+    final PregenShape shape = PregenShape.byName(name);
+    if (shape == null)
+      throw INVALID_SHAPE_EXCEPTION.create(name);
+    return shape;
+  }
+
+  private static int start(CommandContext<ServerCommandSource> ctx, PregenShape shape, int maxInFlight, double targetMspt)
+      throws CommandSyntaxException {
+    final ServerCommandSource source = ctx.getSource();
+    if (ChunkPregenerator.getTask().isPresent())
+      throw ALREADY_RUNNING_EXCEPTION.create();
+    final ColumnPos column = ColumnPosArgumentType.getColumnPos(ctx, "center");
+    final ChunkPos center = new ChunkPos(
+        ChunkSectionPos.getSectionCoord(column.x()),
+        ChunkSectionPos.getSectionCoord(column.z())
+    );
+    final int radius = IntegerArgumentType.getInteger(ctx, "radius");
+    final PregenTask task = new PregenTask(source.getWorld().getRegistryKey(), center, radius, shape, maxInFlight, targetMspt, 0);
+    ChunkPregenerator.start(source.getServer(), task, source.getPlayer());
+    source.sendFeedback(() -> Text.translatable("commands.infinitecity.pregen.started",
+        task.chunksCount(), center.x, center.z, source.getWorld().getRegistryKey().getValue().toString()), true);
+    return task.chunksCount();
+  }
+
+  private static int stop(CommandContext<ServerCommandSource> ctx) throws CommandSyntaxException {
+    final ServerCommandSource source = ctx.getSource();
+    if (!ChunkPregenerator.stop(source.getServer()))
+      throw NOT_RUNNING_EXCEPTION.create();
+    source.sendFeedback(() -> Text.translatable("commands.infinitecity.pregen.stopped"), true);
+    return 1;
+  }
+
+  private static int status(CommandContext<ServerCommandSource> ctx) throws CommandSyntaxException {
+    final ServerCommandSource source = ctx.getSource();
+    final Text progress = ChunkPregenerator.getProgressText().orElseThrow(NOT_RUNNING_EXCEPTION::create);
+    source.sendFeedback(() -> progress, false);
+    if (ChunkPregenerator.isThrottled())
+      source.sendFeedback(() -> Text.translatable("commands.infinitecity.pregen.throttled"), false);
+    return 1;
+  }
+
+  private PregenCommand() {
+  }
+}
@@ -0,0 +1,70 @@
+package net.darmo_creations.infinitecity.commands;
+
+import com.mojang.brigadier.builder.*;
+import com.mojang.brigadier.context.*;
+import net.darmo_creations.infinitecity.chunk_gen.*;
+import net.darmo_creations.infinitecity.server.*;
+import net.minecraft.server.command.*;
+import net.minecraft.server.world.*;
+import net.minecraft.text.*;
+
+/**
+ * The {@code /infinitecity stats} subcommand reports the statistics of the city dimensions’ generators.
+ */
+final class StatsCommand {
+  /**
+   * Create the subcommand’s node.
+   */
+  static LiteralArgumentBuilder<ServerCommandSource> build() {
+    return CommandManager.literal("stats")
+        .executes(StatsCommand::execute);
+  }
+
+  private static int execute(CommandContext<ServerCommandSource> ctx) {
+    final ServerCommandSource source = ctx.getSource();
+    int count = 0;
+    for (final ServerWorld world : source.getServer().getWorlds()) {
+      if (!(world.getChunkManager().getChunkGenerator() instanceof InfiniteCityChunkGenerator generator))
+        continue;
+      count++;
+      final String dimension = world.getRegistryKey().getValue().toString();
+      final var stats = generator.getScheduler().getStats();
+      source.sendFeedback(() -> Text.translatable("commands.infinitecity.stats.scheduler",
+          dimension, stats.queued(), stats.running(), stats.started(), stats.deferred()), false);
+      final var stageStats = generator.getStageStats();
+      source.sendFeedback(() -> Text.translatable("commands.infinitecity.stats.stages",
+          dimension, stageStats.chunks(), String.format("%.1f", stageStats.biomesUs()),
+          String.format("%.1f", stageStats.noiseUs()), String.format("%.1f", stageStats.surfaceUs())), false);
+      final ChunkTemplateStore templateStore = generator.getTemplateStore();
+      if (templateStore != null) {
+        final var templateStats = templateStore.getStats();
+        source.sendFeedback(() -> Text.translatable("commands.infinitecity.stats.templates",
+            dimension, templateStats.templates(), templateStats.hits(), templateStats.misses()), false);
+      }
+      final var spawnStats = generator.getSpawnStats();
+      source.sendFeedback(() -> Text.translatable("commands.infinitecity.stats.spawning",
+          dimension, spawnStats.attempts(), spawnStats.spawns()), false);
+    }
+    final var prefetcherStats = ChunkPrefetcher.getStats();
+    source.sendFeedback(() -> Text.translatable("commands.infinitecity.stats.prefetcher",
+        prefetcherStats.requested(), prefetcherStats.hits(), prefetcherStats.late(), prefetcherStats.cancelled(),
+        String.format("%.1f", 100 * prefetcherStats.hitRate())), false);
+    final var storageStats = RegeneratingChunkStorage.getStats();
+    source.sendFeedback(() -> Text.translatable("commands.infinitecity.stats.storage",
+        storageStats.strippedSections(), storageStats.regeneratedChunks(), storageStats.mismatchedChunks()), false);
+    final var lazySectionsStats = LazySections.getStats();
+    source.sendFeedback(() -> Text.translatable("commands.infinitecity.stats.lazy_sections",
+        lazySectionsStats.deferredSections(), lazySectionsStats.materializedSections()), false);
+    final var sectionWindowsStats = SectionWindows.getStats();
+    source.sendFeedback(() -> Text.translatable("commands.infinitecity.stats.section_windows",
+        sectionWindowsStats.withheldSections(), sectionWindowsStats.sentSections()), false);
+    final var prewarmerStats = PortalPrewarmer.getStats();
+    source.sendFeedback(() -> Text.translatable("commands.infinitecity.stats.portal_prewarmer",
+        prewarmerStats.prewarmed(), prewarmerStats.arrivals(), prewarmerStats.readyOnArrival(),
+        String.format("%.1f", prewarmerStats.averageWaitMs()), String.format("%.1f", prewarmerStats.maxWaitMs())), false);
+    return count;
+  }
+
+  private StatsCommand() {
+  }
+}
@@ -0,0 +1,15 @@
+package net.darmo_creations.infinitecity.datagen;
+
+import net.darmo_creations.infinitecity.chunk_gen.*;
+import net.fabricmc.fabric.api.datagen.v1.*;
+
+/**
+ * Data generation entrypoint, run by the {@code runDatagen} Gradle task.
+ */
+public class InfiniteCityDataGenerator implements DataGeneratorEntrypoint {
+  @Override
+  public void onInitializeDataGenerator(FabricDataGenerator generator) {
+    final FabricDataGenerator.Pack pack = generator.createPack();
+    pack.addProvider(ChunkPortionsProvider::new);
+  }
+}
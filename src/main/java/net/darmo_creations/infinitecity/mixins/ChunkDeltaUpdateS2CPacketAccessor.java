@@ -0,0 +1,15 @@
+package net.darmo_creations.infinitecity.mixins;
+
+import net.minecraft.network.packet.s2c.play.*;
+import net.minecraft.util.math.*;
+import org.spongepowered.asm.mixin.*;
+import org.spongepowered.asm.mixin.gen.*;
+
+/**
+ * This mixin gives access to the section updated by {@link ChunkDeltaUpdateS2CPacket}s.
+ */
+@Mixin(ChunkDeltaUpdateS2CPacket.class)
+public interface ChunkDeltaUpdateS2CPacketAccessor {
+  @Accessor
+  ChunkSectionPos getSectionPos();
+}
@@ -0,0 +1,21 @@
+package net.darmo_creations.infinitecity.mixins;
+
+import net.minecraft.block.*;
+import net.minecraft.registry.entry.*;
+import net.minecraft.world.biome.*;
+import net.minecraft.world.chunk.*;
+import org.spongepowered.asm.mixin.*;
+import org.spongepowered.asm.mixin.gen.*;
+
+/**
+ * This mixin allows replacing the containers of {@link ChunkSection}s.
+ */
+@Mixin(ChunkSection.class)
+public interface ChunkSectionAccessor {
+  @Mutable
+  @Accessor
+  void setBlockStateContainer(PalettedContainer<BlockState> blockStateContainer);
+
+  @Accessor
+  void setBiomeContainer(ReadableContainer<RegistryEntry<Biome>> biomeContainer);
+}
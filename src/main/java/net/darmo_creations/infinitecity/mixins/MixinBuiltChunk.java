@@ -0,0 +1,34 @@
+package net.darmo_creations.infinitecity.mixins;
+
+import net.darmo_creations.infinitecity.client.*;
+import net.minecraft.client.render.chunk.*;
+import net.minecraft.util.math.*;
+import net.minecraft.world.*;
+import org.spongepowered.asm.mixin.*;
+import org.spongepowered.asm.mixin.injection.*;
+import org.spongepowered.asm.mixin.injection.callback.*;
+
+/**
+ * This mixin skips the mesh of sections that cannot have any visible face (see {@link EnclosedSections}).
+ * No region is built for them and their rebuild task is flagged so that the section blocks visibility
+ * like the opaque terrain it is made of (see {@link MixinRebuildTask}).
+ */
+@Mixin(ChunkBuilder.BuiltChunk.class)
+public abstract class MixinBuiltChunk {
+  @Unique
+  private boolean enclosed;
+
+  @Redirect(
+      method = "createRebuildTask",
+      at = @At(value = "INVOKE", target = "Lnet/minecraft/client/render/chunk/ChunkRendererRegionBuilder;build(Lnet/minecraft/world/World;Lnet/minecraft/util/math/ChunkSectionPos;)Lnet/minecraft/client/render/chunk/ChunkRendererRegion;")
+  )
+  private ChunkRendererRegion buildRegion(ChunkRendererRegionBuilder builder, World world, ChunkSectionPos sectionPos) {
+    this.enclosed = EnclosedSections.isEnclosed(world, sectionPos);
+    return this.enclosed ? null : builder.build(world, sectionPos);
+  }
+
+  @Inject(method = "createRebuildTask", at = @At("RETURN"))
+  private void onCreateRebuildTask(ChunkRendererRegionBuilder builder, CallbackInfoReturnable<ChunkBuilder.BuiltChunk.Task> cir) {
+    ((EnclosedRebuildTask) cir.getReturnValue()).infinitecity$setEnclosed(this.enclosed);
+  }
+}
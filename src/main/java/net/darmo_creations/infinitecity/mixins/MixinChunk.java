@@ -0,0 +1,61 @@
+package net.darmo_creations.infinitecity.mixins;
+
+import it.unimi.dsi.fastutil.longs.*;
+import net.darmo_creations.infinitecity.server.*;
+import net.minecraft.world.chunk.*;
+import org.spongepowered.asm.mixin.*;
+
+import java.util.*;
+
+/**
+ * This mixin keeps track of the sections of chunks that were modified since they were generated
+ * and of those that were not generated yet.
+ */
+@Mixin(Chunk.class)
+public abstract class MixinChunk implements SectionModificationTracker, PendingSectionsHolder {
+  @Unique
+  private final BitSet modifiedSections = new BitSet();
+  @Unique
+  private final BitSet pendingSections = new BitSet();
+  @Unique
+  private final LongSet pendingChanges = new LongOpenHashSet(0);
+  @Unique
+  private boolean allSectionsModified;
+  @Unique
+  private long contentStamp;
+
+  @Override
+  public void infinitecity$markSectionModified(int index) {
+    this.modifiedSections.set(index);
+  }
+
+  @Override
+  public void infinitecity$markAllSectionsModified() {
+    this.allSectionsModified = true;
+  }
+
+  @Override
+  public boolean infinitecity$isSectionModified(int index) {
+    return this.allSectionsModified || this.modifiedSections.get(index);
+  }
+
+  @Override
+  public void infinitecity$setContentStamp(long stamp) {
+    this.contentStamp = stamp;
+  }
+
+  @Override
+  public long infinitecity$getContentStamp() {
+    return this.contentStamp;
+  }
+
+  @Override
+  public BitSet infinitecity$getPendingSections() {
+    return this.pendingSections;
+  }
+
+  @Override
+  public LongSet infinitecity$getPendingChanges() {
+    return this.pendingChanges;
+  }
+}
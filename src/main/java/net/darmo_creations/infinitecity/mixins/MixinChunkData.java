@@ -0,0 +1,29 @@
+package net.darmo_creations.infinitecity.mixins;
+
+import net.darmo_creations.infinitecity.server.*;
+import net.minecraft.network.*;
+import net.minecraft.network.packet.s2c.play.*;
+import net.minecraft.world.chunk.*;
+import org.spongepowered.asm.mixin.*;
+import org.spongepowered.asm.mixin.injection.*;
+import org.spongepowered.asm.mixin.injection.callback.*;
+
+/**
+ * This mixin restricts the sections written in chunk data packets to the window of the player
+ * they are sent to (see {@link SectionWindows}).
+ */
+@Mixin(ChunkData.class)
+public abstract class MixinChunkData {
+  @Inject(method = "getSectionsPacketSize", at = @At("HEAD"), cancellable = true)
+  private static void onGetSectionsPacketSize(WorldChunk chunk, CallbackInfoReturnable<Integer> cir) {
+    final int size = SectionWindows.getSectionsPacketSize(chunk);
+    if (size >= 0)
+      cir.setReturnValue(size);
+  }
+
+  @Inject(method = "writeSections", at = @At("HEAD"), cancellable = true)
+  private static void onWriteSections(PacketByteBuf buf, WorldChunk chunk, CallbackInfo ci) {
+    if (SectionWindows.writeSections(buf, chunk))
+      ci.cancel();
+  }
+}
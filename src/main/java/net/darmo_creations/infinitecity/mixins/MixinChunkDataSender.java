@@ -0,0 +1,25 @@
+package net.darmo_creations.infinitecity.mixins;
+
+import net.darmo_creations.infinitecity.server.*;
+import net.minecraft.server.network.*;
+import net.minecraft.server.world.*;
+import net.minecraft.world.chunk.*;
+import org.spongepowered.asm.mixin.*;
+import org.spongepowered.asm.mixin.injection.*;
+import org.spongepowered.asm.mixin.injection.callback.*;
+
+/**
+ * This mixin tells {@link SectionWindows} which player the chunk data being built is sent to.
+ */
+@Mixin(ChunkDataSender.class)
+public abstract class MixinChunkDataSender {
+  @Inject(method = "sendChunkData", at = @At("HEAD"))
+  private static void onBeforeSendChunkData(ServerPlayNetworkHandler handler, ServerWorld world, WorldChunk chunk, CallbackInfo ci) {
+    SectionWindows.beginSending(handler.getPlayer(), world);
+  }
+
+  @Inject(method = "sendChunkData", at = @At("TAIL"))
+  private static void onSendChunkData(ServerPlayNetworkHandler handler, ServerWorld world, WorldChunk chunk, CallbackInfo ci) {
+    SectionWindows.endSending();
+  }
+}
@@ -0,0 +1,28 @@
+package net.darmo_creations.infinitecity.mixins;
+
+import net.darmo_creations.infinitecity.server.*;
+import net.minecraft.network.packet.*;
+import net.minecraft.server.network.*;
+import net.minecraft.server.world.*;
+import org.spongepowered.asm.mixin.*;
+import org.spongepowered.asm.mixin.injection.*;
+import org.spongepowered.asm.mixin.injection.callback.*;
+
+import java.util.*;
+
+/**
+ * This mixin prevents block updates in sections outside of players’ windows from being sent to them
+ * (see {@link SectionWindows}).
+ */
+@Mixin(ChunkHolder.class)
+public abstract class MixinChunkHolder {
+  @Inject(method = "sendPacketToPlayers", at = @At("HEAD"), cancellable = true)
+  private void onSendPacketToPlayers(List<ServerPlayerEntity> players, Packet<?> packet, CallbackInfo ci) {
+    if (players.stream().noneMatch(player -> SectionWindows.isWithheld(player, packet)))
+      return;
+    for (final ServerPlayerEntity player : players)
+      if (!SectionWindows.isWithheld(player, packet))
+        player.networkHandler.sendPacket(packet);
+    ci.cancel();
+  }
+}
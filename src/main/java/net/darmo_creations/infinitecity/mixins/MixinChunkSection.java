@@ -0,0 +1,26 @@
+package net.darmo_creations.infinitecity.mixins;
+
+import net.darmo_creations.infinitecity.chunk_gen.*;
+import net.minecraft.block.*;
+import net.minecraft.world.chunk.*;
+import org.spongepowered.asm.mixin.*;
+import org.spongepowered.asm.mixin.injection.*;
+import org.spongepowered.asm.mixin.injection.callback.*;
+
+/**
+ * This mixin copies the shared block state container of a section before one of its blocks is changed.
+ */
+@Mixin(ChunkSection.class)
+public abstract class MixinChunkSection {
+  @Shadow
+  @Final
+  @Mutable
+  private PalettedContainer<BlockState> blockStateContainer;
+
+  @Inject(method = "setBlockState(IIILnet/minecraft/block/BlockState;Z)Lnet/minecraft/block/BlockState;", at = @At("HEAD"))
+  private void copySharedContainer(int x, int y, int z, BlockState state, boolean lock, CallbackInfoReturnable<BlockState> cir) {
+    // Writing the same state does not modify the container
+    if (SharedSections.isShared(this.blockStateContainer) && this.blockStateContainer.get(x, y, z) != state)
+      this.blockStateContainer = this.blockStateContainer.copy();
+  }
+}
@@ -0,0 +1,34 @@
+package net.darmo_creations.infinitecity.mixins;
+
+import net.darmo_creations.infinitecity.chunk_gen.*;
+import net.darmo_creations.infinitecity.server.*;
+import net.minecraft.nbt.*;
+import net.minecraft.server.world.*;
+import net.minecraft.util.math.*;
+import net.minecraft.world.*;
+import net.minecraft.world.chunk.*;
+import net.minecraft.world.poi.*;
+import org.spongepowered.asm.mixin.*;
+import org.spongepowered.asm.mixin.injection.*;
+import org.spongepowered.asm.mixin.injection.callback.*;
+
+/**
+ * This mixin hooks {@link RegeneratingChunkStorage}, {@link LazySections} and {@link SharedSections}
+ * into the serialization of chunks.
+ */
+@Mixin(ChunkSerializer.class)
+public abstract class MixinChunkSerializer {
+  @Inject(method = "serialize", at = @At("RETURN"))
+  private static void onSerialize(ServerWorld world, Chunk chunk, CallbackInfoReturnable<NbtCompound> cir) {
+    RegeneratingChunkStorage.onSerialize(world, chunk, cir.getReturnValue());
+    LazySections.onSerialize(world, chunk, cir.getReturnValue());
+  }
+
+  @Inject(method = "deserialize", at = @At("RETURN"))
+  private static void onDeserialize(ServerWorld world, PointOfInterestStorage poiStorage, ChunkPos chunkPos, NbtCompound nbt, CallbackInfoReturnable<ProtoChunk> cir) {
+    // Pending sections are needed to tell which sections were modified
+    LazySections.onDeserialize(world, cir.getReturnValue(), nbt);
+    RegeneratingChunkStorage.onDeserialize(world, cir.getReturnValue(), nbt);
+    SharedSections.onDeserialize(world, cir.getReturnValue());
+  }
+}
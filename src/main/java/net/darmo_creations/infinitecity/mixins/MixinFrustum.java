@@ -0,0 +1,24 @@
+package net.darmo_creations.infinitecity.mixins;
+
+import net.darmo_creations.infinitecity.client.*;
+import net.minecraft.client.render.*;
+import net.minecraft.util.math.*;
+import org.spongepowered.asm.mixin.*;
+import org.spongepowered.asm.mixin.injection.*;
+import org.spongepowered.asm.mixin.injection.callback.*;
+
+/**
+ * This mixin rejects boxes that are vertically beyond the fog of city dimensions (see {@link VerticalCulling}).
+ */
+@Mixin(Frustum.class)
+public abstract class MixinFrustum {
+  @Shadow
+  private double y;
+
+  @Inject(method = "isVisible(Lnet/minecraft/util/math/Box;)Z", at = @At("HEAD"), cancellable = true)
+  private void cullVertically(Box box, CallbackInfoReturnable<Boolean> cir) {
+    final double distance = Math.max(box.minY - this.y, this.y - box.maxY);
+    if (distance > VerticalCulling.getMaxDistance())
+      cir.setReturnValue(false);
+  }
+}
@@ -0,0 +1,39 @@
+package net.darmo_creations.infinitecity.mixins;
+
+import net.darmo_creations.infinitecity.chunk_gen.*;
+import net.minecraft.world.chunk.*;
+import org.spongepowered.asm.mixin.*;
+import org.spongepowered.asm.mixin.injection.*;
+import org.spongepowered.asm.mixin.injection.callback.*;
+
+/**
+ * This mixin flags shared containers and disables their lock,
+ * which would otherwise fail when several threads read them at the same time.
+ */
+@Mixin(PalettedContainer.class)
+public abstract class MixinPalettedContainer implements SharedContainer {
+  @Unique
+  private boolean shared;
+
+  @Override
+  public void infinitecity$markShared() {
+    this.shared = true;
+  }
+
+  @Override
+  public boolean infinitecity$isShared() {
+    return this.shared;
+  }
+
+  @Inject(method = "lock", at = @At("HEAD"), cancellable = true)
+  private void skipLockIfShared(CallbackInfo ci) {
+    if (this.shared)
+      ci.cancel();
+  }
+
+  @Inject(method = "unlock", at = @At("HEAD"), cancellable = true)
+  private void skipUnlockIfShared(CallbackInfo ci) {
+    if (this.shared)
+      ci.cancel();
+  }
+}
@@ -0,0 +1,23 @@
+package net.darmo_creations.infinitecity.mixins;
+
+import net.darmo_creations.infinitecity.server.*;
+import net.minecraft.block.*;
+import net.minecraft.util.math.*;
+import net.minecraft.world.chunk.*;
+import org.spongepowered.asm.mixin.*;
+import org.spongepowered.asm.mixin.injection.*;
+import org.spongepowered.asm.mixin.injection.callback.*;
+
+/**
+ * This mixin discards the blocks placed in the pending sections of chunks being generated.
+ */
+@Mixin(ProtoChunk.class)
+public abstract class MixinProtoChunk {
+  @Inject(method = "setBlockState", at = @At("HEAD"), cancellable = true)
+  private void onSetBlockState(BlockPos pos, BlockState state, boolean moved, CallbackInfoReturnable<BlockState> cir) {
+    final ProtoChunk chunk = (ProtoChunk) (Object) this;
+    final int index = chunk.getSectionIndex(pos.getY());
+    if (index >= 0 && index < chunk.countVerticalSections() && LazySections.isPending(chunk, index))
+      cir.setReturnValue(Blocks.AIR.getDefaultState());
+  }
+}
@@ -0,0 +1,30 @@
+package net.darmo_creations.infinitecity.mixins;
+
+import net.darmo_creations.infinitecity.client.*;
+import net.minecraft.client.render.chunk.*;
+import org.spongepowered.asm.mixin.*;
+import org.spongepowered.asm.mixin.injection.*;
+
+/**
+ * This mixin closes the occlusion graph of enclosed sections, which are built without a region
+ * (see {@link MixinBuiltChunk}). Without it, they would be considered empty and thus see-through on every face.
+ */
+@Mixin(targets = "net.minecraft.client.render.chunk.ChunkBuilder$BuiltChunk$RebuildTask")
+public abstract class MixinRebuildTask implements EnclosedRebuildTask {
+  @Unique
+  private boolean enclosed;
+
+  @Override
+  public void infinitecity$setEnclosed(boolean enclosed) {
+    this.enclosed = enclosed;
+  }
+
+  @Redirect(
+      method = "render",
+      at = @At(value = "INVOKE", target = "Lnet/minecraft/client/render/chunk/ChunkOcclusionDataBuilder;build()Lnet/minecraft/client/render/chunk/ChunkOcclusionData;")
+  )
+  private ChunkOcclusionData buildOcclusionData(ChunkOcclusionDataBuilder builder) {
+    // A new graph has no visibility between faces
+    return this.enclosed ? new ChunkOcclusionData() : builder.build();
+  }
+}
@@ -0,0 +1,38 @@
+package net.darmo_creations.infinitecity.mixins;
+
+import net.darmo_creations.infinitecity.chunk_gen.*;
+import net.darmo_creations.infinitecity.server.*;
+import net.minecraft.server.world.*;
+import net.minecraft.world.chunk.*;
+import org.spongepowered.asm.mixin.*;
+import org.spongepowered.asm.mixin.injection.*;
+import org.spongepowered.asm.mixin.injection.callback.*;
+
+/**
+ * This mixin tells the {@link GenerationScheduler} of city dimensions when the server thread
+ * is blocked waiting for one of their chunks, so that no generation task is deferred meanwhile.
+ */
+@Mixin(ServerChunkManager.class)
+public abstract class MixinServerChunkManager {
+  @Shadow
+  @Final
+  ServerWorld world;
+
+  @Inject(
+      method = "getChunk(IILnet/minecraft/world/chunk/ChunkStatus;Z)Lnet/minecraft/world/chunk/Chunk;",
+      at = @At(value = "INVOKE", target = "Lnet/minecraft/server/world/ServerChunkManager$MainThreadExecutor;runTasks(Ljava/util/function/BooleanSupplier;)V")
+  )
+  private void onBeforeWaitForChunk(int x, int z, ChunkStatus leastStatus, boolean create, CallbackInfoReturnable<Chunk> cir) {
+    if (this.world.getChunkManager().getChunkGenerator() instanceof InfiniteCityChunkGenerator generator)
+      generator.getScheduler().beginBlockingLoad();
+  }
+
+  @Inject(
+      method = "getChunk(IILnet/minecraft/world/chunk/ChunkStatus;Z)Lnet/minecraft/world/chunk/Chunk;",
+      at = @At(value = "INVOKE", target = "Lnet/minecraft/server/world/ServerChunkManager$MainThreadExecutor;runTasks(Ljava/util/function/BooleanSupplier;)V", shift = At.Shift.AFTER)
+  )
+  private void onWaitForChunk(int x, int z, ChunkStatus leastStatus, boolean create, CallbackInfoReturnable<Chunk> cir) {
+    if (this.world.getChunkManager().getChunkGenerator() instanceof InfiniteCityChunkGenerator generator)
+      generator.getScheduler().endBlockingLoad();
+  }
+}
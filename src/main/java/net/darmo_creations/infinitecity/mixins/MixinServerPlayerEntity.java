@@ -0,0 +1,26 @@
+package net.darmo_creations.infinitecity.mixins;
+
+import net.darmo_creations.infinitecity.server.*;
+import net.minecraft.server.network.*;
+import net.minecraft.server.world.*;
+import net.minecraft.util.math.*;
+import org.spongepowered.asm.mixin.*;
+import org.spongepowered.asm.mixin.injection.*;
+import org.spongepowered.asm.mixin.injection.callback.*;
+
+import java.util.*;
+
+/**
+ * This mixin makes players whose obstructed spawn point is in a city dimension respawn
+ * on a nearby floor, see {@link CitySpawnLocator}.
+ */
+@Mixin(ServerPlayerEntity.class)
+public abstract class MixinServerPlayerEntity {
+  @Inject(method = "findRespawnPosition", at = @At("RETURN"), cancellable = true)
+  private static void findCityRespawnPosition(ServerWorld world, BlockPos pos, float angle, boolean forced, boolean alive,
+                                              CallbackInfoReturnable<Optional<Vec3d>> cir) {
+    // Spawn points set by a block stay vanilla’s
+    if (forced && cir.getReturnValue().isEmpty())
+      cir.setReturnValue(CitySpawnLocator.findRespawnPos(world, pos));
+  }
+}
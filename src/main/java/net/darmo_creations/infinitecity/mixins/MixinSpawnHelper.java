@@ -0,0 +1,35 @@
+package net.darmo_creations.infinitecity.mixins;
+
+import net.darmo_creations.infinitecity.chunk_gen.*;
+import net.minecraft.entity.*;
+import net.minecraft.server.world.*;
+import net.minecraft.util.math.*;
+import net.minecraft.world.*;
+import net.minecraft.world.chunk.*;
+import org.spongepowered.asm.mixin.*;
+import org.spongepowered.asm.mixin.injection.*;
+import org.spongepowered.asm.mixin.injection.callback.*;
+
+/**
+ * This mixin makes natural spawning in city dimensions only attempt positions right above floors
+ * and counts the mobs spawned there.
+ */
+@Mixin(SpawnHelper.class)
+public abstract class MixinSpawnHelper {
+  @Inject(method = "getRandomPosInChunkSection", at = @At("HEAD"), cancellable = true)
+  private static void getRandomCitySpawnPos(World world, WorldChunk chunk, CallbackInfoReturnable<BlockPos> cir) {
+    if (world instanceof ServerWorld serverWorld
+        && serverWorld.getChunkManager().getChunkGenerator() instanceof InfiniteCityChunkGenerator generator)
+      cir.setReturnValue(generator.getRandomSpawnPos(serverWorld, chunk));
+  }
+
+  @Inject(
+      method = "spawnEntitiesInChunk(Lnet/minecraft/entity/SpawnGroup;Lnet/minecraft/server/world/ServerWorld;Lnet/minecraft/world/chunk/Chunk;Lnet/minecraft/util/math/BlockPos;Lnet/minecraft/world/SpawnHelper$Checker;Lnet/minecraft/world/SpawnHelper$Runner;)V",
+      at = @At(value = "INVOKE", target = "Lnet/minecraft/server/world/ServerWorld;spawnEntityAndPassengers(Lnet/minecraft/entity/Entity;)V")
+  )
+  private static void onNaturalSpawn(SpawnGroup group, ServerWorld world, Chunk chunk, BlockPos pos,
+                                     SpawnHelper.Checker checker, SpawnHelper.Runner runner, CallbackInfo ci) {
+    if (world.getChunkManager().getChunkGenerator() instanceof InfiniteCityChunkGenerator generator)
+      generator.onNaturalSpawn();
+  }
+}
@@ -0,0 +1,32 @@
+package net.darmo_creations.infinitecity.mixins;
+
+import net.darmo_creations.infinitecity.server.*;
+import net.minecraft.nbt.*;
+import net.minecraft.server.world.*;
+import net.minecraft.util.*;
+import net.minecraft.util.math.*;
+import org.spongepowered.asm.mixin.*;
+import org.spongepowered.asm.mixin.injection.*;
+import org.spongepowered.asm.mixin.injection.callback.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * This mixin regenerates the sections removed by {@link RegeneratingChunkStorage} on a worker thread,
+ * after a chunk’s data was read and before it is deserialized on the server thread.
+ */
+@Mixin(ThreadedAnvilChunkStorage.class)
+public abstract class MixinThreadedAnvilChunkStorage {
+  @Shadow
+  @Final
+  ServerWorld world;
+
+  @Inject(method = "getUpdatedChunkNbt", at = @At("RETURN"), cancellable = true)
+  private void onGetUpdatedChunkNbt(ChunkPos chunkPos, CallbackInfoReturnable<CompletableFuture<Optional<NbtCompound>>> cir) {
+    cir.setReturnValue(cir.getReturnValue().thenApplyAsync(nbt -> {
+      nbt.ifPresent(n -> RegeneratingChunkStorage.prepareRegeneration(this.world, chunkPos, n));
+      return nbt;
+    }, Util.getMainWorkerExecutor()));
+  }
+}
@@ -0,0 +1,44 @@
+package net.darmo_creations.infinitecity.mixins;
+
+import net.darmo_creations.infinitecity.server.*;
+import net.minecraft.block.*;
+import net.minecraft.server.world.*;
+import net.minecraft.util.math.*;
+import net.minecraft.world.chunk.*;
+import org.jetbrains.annotations.*;
+import org.spongepowered.asm.mixin.*;
+import org.spongepowered.asm.mixin.injection.*;
+import org.spongepowered.asm.mixin.injection.callback.*;
+
+/**
+ * This mixin marks the sections of loaded chunks as modified whenever one of their blocks is changed.
+ * <p>
+ * It also keeps the content stamp and pending sections of generated chunks, and records the blocks changed in them
+ * so that they are kept when the sections are generated.
+ */
+@Mixin(WorldChunk.class)
+public abstract class MixinWorldChunk {
+  @Inject(method = "<init>(Lnet/minecraft/server/world/ServerWorld;Lnet/minecraft/world/chunk/ProtoChunk;Lnet/minecraft/world/chunk/WorldChunk$EntityLoader;)V",
+      at = @At("RETURN"))
+  private void onInit(ServerWorld world, ProtoChunk protoChunk, @Nullable WorldChunk.EntityLoader entityLoader, CallbackInfo ci) {
+    ((PendingSectionsHolder) this).infinitecity$getPendingSections().or(((PendingSectionsHolder) protoChunk).infinitecity$getPendingSections());
+    ((PendingSectionsHolder) this).infinitecity$getPendingChanges().addAll(((PendingSectionsHolder) protoChunk).infinitecity$getPendingChanges());
+    ((SectionModificationTracker) this).infinitecity$setContentStamp(((SectionModificationTracker) protoChunk).infinitecity$getContentStamp());
+  }
+
+  @Inject(method = "setBlockState", at = @At("HEAD"))
+  private void onBeforeSetBlockState(BlockPos pos, BlockState state, boolean moved, CallbackInfoReturnable<BlockState> cir) {
+    final WorldChunk chunk = (WorldChunk) (Object) this;
+    final int index = chunk.getSectionIndex(pos.getY());
+    if (chunk.getWorld() instanceof ServerWorld world && index >= 0 && index < chunk.countVerticalSections()
+        && LazySections.isPending(chunk, index))
+      LazySections.onPendingSectionChange(world, chunk, pos);
+  }
+
+  @Inject(method = "setBlockState", at = @At("RETURN"))
+  private void onSetBlockState(BlockPos pos, BlockState state, boolean moved, CallbackInfoReturnable<BlockState> cir) {
+    // A null value means that the block did not change
+    if (cir.getReturnValue() != null)
+      ((SectionModificationTracker) this).infinitecity$markSectionModified(((WorldChunk) (Object) this).getSectionIndex(pos.getY()));
+  }
+}
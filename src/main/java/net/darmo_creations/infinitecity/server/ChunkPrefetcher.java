@@ -0,0 +1,207 @@
+package net.darmo_creations.infinitecity.server;
+
+import it.unimi.dsi.fastutil.longs.*;
+import net.darmo_creations.infinitecity.chunk_gen.*;
+import net.fabricmc.fabric.api.event.lifecycle.v1.*;
+import net.fabricmc.fabric.api.networking.v1.*;
+import net.minecraft.server.*;
+import net.minecraft.server.network.*;
+import net.minecraft.server.world.*;
+import net.minecraft.util.math.*;
+
+import java.util.*;
+
+/**
+ * This class loads the chunks lying ahead of players that travel quickly through a city dimension,
+ * typically while flying with an elytra.
+ * <p>
+ * The horizontal velocity of each player is estimated from their recent positions and extrapolated
+ * {@link ServerConfig#getPrefetchLookaheadSeconds()} seconds ahead. Chunks along that path that are outside
+ * of the player’s view distance are requested through the regular chunk pipeline. As they are farther
+ * from players than any other chunk, the {@link GenerationScheduler} treats them with the lowest priority.
+ * <p>
+ * When the player stops or turns, all pending requests are cancelled. When a prefetched chunk enters
+ * the player’s view distance, its request is released and counted as a hit if it was ready in time.
+ */
+public final class ChunkPrefetcher {
+  /**
+   * Number of ticks between two updates.
+   */
+  private static final int UPDATE_INTERVAL = 5;
+  /**
+   * Horizontal speed (in blocks per tick) below which players are not prefetched for.
+   */
+  private static final double MIN_SPEED = 0.5;
+  /**
+   * Horizontal speed (in blocks per tick) above which a player is considered to have been teleported.
+   */
+  private static final double MAX_SPEED = 8;
+  /**
+   * Minimum cosine of the angle between the old and new directions for the pending requests to be kept.
+   */
+  private static final double MIN_DIRECTION_COS = Math.cos(Math.toRadians(30));
+  /**
+   * Distance (in blocks) between two sampled points along a player’s path.
+   */
+  private static final double PATH_STEP = 8;
+
+  private static final Map<UUID, PlayerState> states = new HashMap<>();
+  private static int ticks;
+  // Statistics
+  private static long requestedCount;
+  private static long hitsCount;
+  private static long lateCount;
+  private static long cancelledCount;
+
+  /**
+   * Register the server events needed to prefetch chunks.
+   */
+  public static void init() {
+    ServerTickEvents.END_SERVER_TICK.register(ChunkPrefetcher::tick);
+    ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> {
+      final PlayerState state = states.remove(handler.getPlayer().getUuid());
+      if (state != null)
+        state.cancelAll();
+    });
+    ServerLifecycleEvents.SERVER_STOPPING.register(server -> {
+      states.values().forEach(PlayerState::cancelAll);
+      states.clear();
+    });
+  }
+
+  /**
+   * Return a snapshot of the prefetcher’s statistics.
+   */
+  public static Stats getStats() {
+    return new Stats(requestedCount, hitsCount, lateCount, cancelledCount);
+  }
+
+  private static void tick(MinecraftServer server) {
+    if (++ticks % UPDATE_INTERVAL != 0)
+      return;
+    final double lookahead = ServerConfig.getPrefetchLookaheadSeconds();
+    final int viewDistance = server.getPlayerManager().getViewDistance();
+    final Set<UUID> updated = new HashSet<>();
+
+    for (final ServerPlayerEntity player : server.getPlayerManager().getPlayerList()) {
+      final ServerWorld world = player.getServerWorld();
+      PlayerState state = states.get(player.getUuid());
+      if (state != null && state.world != world) {
+        state.cancelAll();
+        states.remove(player.getUuid());
+        state = null;
+      }
+      if (lookahead == 0 || player.isSpectator()
+          || !(world.getChunkManager().getChunkGenerator() instanceof InfiniteCityChunkGenerator))
+        continue;
+      updated.add(player.getUuid());
+      if (state == null)
+        states.put(player.getUuid(), new PlayerState(world, player.getPos()));
+      else
+        state.update(player, viewDistance, lookahead);
+    }
+
+    states.entrySet().removeIf(entry -> {
+      if (updated.contains(entry.getKey()))
+        return false;
+      entry.getValue().cancelAll();
+      return true;
+    });
+  }
+
+  private static int getDistance(long pos, ChunkPos center) {
+    return Math.max(Math.abs(ChunkPos.getPackedX(pos) - center.x), Math.abs(ChunkPos.getPackedZ(pos) - center.z));
+  }
+
+  /**
+   * Statistics of the prefetcher.
+   *
+   * @param requested Total number of requested chunks.
+   * @param hits      Number of requested chunks that were ready when they entered a player’s view distance.
+   * @param late      Number of requested chunks that were not ready when they entered a player’s view distance.
+   * @param cancelled Number of requests that were cancelled before the chunk entered a player’s view distance.
+   */
+  public record Stats(long requested, long hits, long late, long cancelled) {
+    /**
+     * The proportion of finished requests that were hits, between 0 and 1.
+     */
+    public double hitRate() {
+      final long total = this.hits + this.late + this.cancelled;
+      return total == 0 ? 0 : (double) this.hits / total;
+    }
+  }
+
+  private static class PlayerState {
+    private final ServerWorld world;
+    /**
+     * Positions of the currently requested chunks.
+     */
+    private final LongSet chunks = new LongOpenHashSet();
+    private Vec3d lastPos;
+    /**
+     * Normalized horizontal direction of the current requests, null if there are none.
+     */
+    private Vec3d direction;
+
+    private PlayerState(ServerWorld world, Vec3d pos) {
+      this.world = world;
+      this.lastPos = pos;
+    }
+
+    private void update(ServerPlayerEntity player, int viewDistance, double lookahead) {
+      final Vec3d pos = player.getPos();
+      final Vec3d velocity = pos.subtract(this.lastPos).multiply(1.0 / UPDATE_INTERVAL);
+      this.lastPos = pos;
+      final ChunkPos playerChunk = player.getChunkPos();
+
+      // Chunks that entered the view distance are now kept loaded by the player’s own ticket
+      final LongIterator iterator = this.chunks.iterator();
+      while (iterator.hasNext()) {
+        final long chunk = iterator.nextLong();
+        if (getDistance(chunk, playerChunk) <= viewDistance) {
+          final ChunkPos chunkPos = new ChunkPos(chunk);
+          if (ChunkTickets.isReady(this.world, chunkPos))
+            hitsCount++;
+          else
+            lateCount++;
+          ChunkTickets.release(this.world, ChunkTickets.PREFETCH, chunkPos);
+          iterator.remove();
+        }
+      }
+
+      final Vec3d horizontalVelocity = new Vec3d(velocity.x, 0, velocity.z);
+      final double speed = horizontalVelocity.length();
+      if (speed < MIN_SPEED || speed > MAX_SPEED) {
+        this.cancelAll();
+        return;
+      }
+      final Vec3d direction = horizontalVelocity.multiply(1 / speed);
+      if (this.direction != null && this.direction.dotProduct(direction) < MIN_DIRECTION_COS)
+        this.cancelAll();
+      this.direction = direction;
+
+      final double distance = speed * lookahead * 20;
+      final int maxChunks = ServerConfig.getPrefetchMaxChunksPerPlayer();
+      for (double d = 0; d <= distance && this.chunks.size() < maxChunks; d += PATH_STEP) {
+        final Vec3d p = pos.add(direction.multiply(d));
+        final ChunkPos chunkPos = new ChunkPos(BlockPos.ofFloored(p));
+        final long chunk = chunkPos.toLong();
+        if (getDistance(chunk, playerChunk) > viewDistance && this.chunks.add(chunk)) {
+          ChunkTickets.request(this.world, ChunkTickets.PREFETCH, chunkPos);
+          requestedCount++;
+        }
+      }
+    }
+
+    private void cancelAll() {
+      for (final long chunk : this.chunks)
+        ChunkTickets.release(this.world, ChunkTickets.PREFETCH, new ChunkPos(chunk));
+      cancelledCount += this.chunks.size();
+      this.chunks.clear();
+      this.direction = null;
+    }
+  }
+
+  private ChunkPrefetcher() {
+  }
+}
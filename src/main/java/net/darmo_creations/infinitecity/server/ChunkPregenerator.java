@@ -0,0 +1,258 @@
+package net.darmo_creations.infinitecity.server;
+
+import net.darmo_creations.infinitecity.*;
+import net.fabricmc.fabric.api.event.lifecycle.v1.*;
+import net.minecraft.server.*;
+import net.minecraft.server.network.*;
+import net.minecraft.server.world.*;
+import net.minecraft.text.*;
+import net.minecraft.util.*;
+import net.minecraft.util.math.*;
+import org.jetbrains.annotations.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * This class runs {@link PregenTask}s by walking through their chunks
+ * and loading them through the server’s regular chunk pipeline.
+ * <p>
+ * No new chunks are requested while the server’s average tick duration is above the task’s target
+ * or while the JVM is running low on memory. The task’s progress is regularly saved to a file
+ * in the world’s folder so that it can be resumed when the server restarts.
+ */
+public final class ChunkPregenerator {
+  private static final String CHECKPOINT_FILE = "infinitecity_pregen.properties";
+  private static final int CHECKPOINT_INTERVAL = 20 * 30;
+  private static final int REPORT_INTERVAL = 20 * 10;
+  private static final double MAX_MEMORY_USAGE = 0.85;
+  private static final int PROGRESS_BAR_LENGTH = 20;
+
+  @Nullable
+  private static PregenTask task;
+  @Nullable
+  private static UUID owner;
+  /**
+   * Chunks that have been requested but are not generated yet, by index in the task.
+   */
+  private static final SortedMap<Integer, ChunkPos> inFlight = new TreeMap<>();
+  private static long sessionStartTime;
+  private static int sessionStartCount;
+  private static int ticks;
+  private static boolean throttled;
+
+  /**
+   * Register the server events needed to run pregeneration tasks.
+   */
+  public static void init() {
+    ServerLifecycleEvents.SERVER_STARTED.register(ChunkPregenerator::resume);
+    ServerLifecycleEvents.SERVER_STOPPING.register(ChunkPregenerator::suspend);
+    ServerTickEvents.END_SERVER_TICK.register(ChunkPregenerator::tick);
+  }
+
+  /**
+   * Return the currently running task, if any.
+   */
+  public static Optional<PregenTask> getTask() {
+    return Optional.ofNullable(task);
+  }
+
+  /**
+   * Indicate whether the running task is currently waiting for the server to catch up.
+   */
+  public static boolean isThrottled() {
+    return throttled;
+  }
+
+  /**
+   * Start a new task.
+   *
+   * @param server  The server.
+   * @param newTask The task to run.
+   * @param player  The player that started the task, null if it was started from the console.
+   * @throws IllegalStateException If a task is already running.
+   */
+  public static void start(MinecraftServer server, PregenTask newTask, @Nullable ServerPlayerEntity player) {
+    if (task != null)
+      throw new IllegalStateException("a task is already running");
+    owner = player != null ? player.getUuid() : null;
+    run(server, newTask);
+  }
+
+  /**
+   * Stop the running task and delete its checkpoint.
+   *
+   * @param server The server.
+   * @return True if a task was stopped, false if none was running.
+   */
+  public static boolean stop(MinecraftServer server) {
+    if (task == null)
+      return false;
+    releaseAll(server);
+    task = null;
+    deleteCheckpoint(server);
+    return true;
+  }
+
+  /**
+   * Return a text that describes the progress of the running task.
+   *
+   * @return The text, or an empty value if no task is running.
+   */
+  public static Optional<Text> getProgressText() {
+    if (task == null)
+      return Optional.empty();
+    final int done = task.doneCount();
+    final int total = task.chunksCount();
+    final int filled = (int) ((long) done * PROGRESS_BAR_LENGTH / total);
+    final String bar = "[" + "#".repeat(filled) + "-".repeat(PROGRESS_BAR_LENGTH - filled) + "]";
+    final String percent = String.format("%.1f", 100.0 * done / total);
+    return Optional.of(Text.translatable("commands.infinitecity.pregen.progress",
+        bar, percent, done, total, formatDuration(getRemainingSeconds())));
+  }
+
+  private static void run(MinecraftServer server, PregenTask newTask) {
+    task = newTask;
+    inFlight.clear();
+    sessionStartTime = System.currentTimeMillis();
+    sessionStartCount = newTask.doneCount();
+    ticks = 0;
+    saveCheckpoint(server);
+  }
+
+  private static void resume(MinecraftServer server) {
+    final Path path = getCheckpointPath(server);
+    if (!Files.exists(path))
+      return;
+    final Properties properties = new Properties();
+    try (final var reader = Files.newBufferedReader(path)) {
+      properties.load(reader);
+      owner = null;
+      run(server, PregenTask.fromProperties(properties));
+      InfiniteCity.LOGGER.info("Resuming chunk pregeneration from checkpoint");
+    } catch (IOException | IllegalArgumentException e) {
+      InfiniteCity.LOGGER.error("Could not read pregeneration checkpoint", e);
+    }
+  }
+
+  private static void suspend(MinecraftServer server) {
+    if (task == null)
+      return;
+    saveCheckpoint(server);
+    releaseAll(server);
+    task = null;
+  }
+
+  private static void tick(MinecraftServer server) {
+    if (task == null)
+      return;
+    final ServerWorld world = server.getWorld(task.dimension());
+    if (world == null) {
+      InfiniteCity.LOGGER.error("Stopping chunk pregeneration: dimension {} does not exist", task.dimension().getValue());
+      stop(server);
+      return;
+    }
+
+    final var iterator = inFlight.values().iterator();
+    while (iterator.hasNext()) {
+      final ChunkPos pos = iterator.next();
+      if (ChunkTickets.isReady(world, pos)) {
+        ChunkTickets.release(world, ChunkTickets.PREGEN, pos);
+        iterator.remove();
+        task.chunkDone();
+      }
+    }
+
+    final double mspt = server.getAverageNanosPerTick() / 1e6;
+    throttled = mspt > task.targetMspt() || isMemoryLow();
+    if (!throttled) {
+      while (inFlight.size() < task.maxInFlight() && task.hasNext()) {
+        final int index = task.nextIndex();
+        final ChunkPos pos = task.next();
+        ChunkTickets.request(world, ChunkTickets.PREGEN, pos);
+        inFlight.put(index, pos);
+      }
+    }
+
+    if (!task.hasNext() && inFlight.isEmpty()) {
+      task = null;
+      deleteCheckpoint(server);
+      InfiniteCity.LOGGER.info("Chunk pregeneration done");
+      notifyOwner(server, Text.translatable("commands.infinitecity.pregen.done"));
+      return;
+    }
+
+    ticks++;
+    if (ticks % CHECKPOINT_INTERVAL == 0)
+      saveCheckpoint(server);
+    if (ticks % REPORT_INTERVAL == 0)
+      getProgressText().ifPresent(text -> {
+        InfiniteCity.LOGGER.info(text.getString());
+        notifyOwner(server, text);
+      });
+  }
+
+  private static void releaseAll(MinecraftServer server) {
+    final ServerWorld world = server.getWorld(task.dimension());
+    if (world != null)
+      inFlight.values().forEach(pos -> ChunkTickets.release(world, ChunkTickets.PREGEN, pos));
+    inFlight.clear();
+  }
+
+  /**
+   * Indicate whether the heap usage is above the allowed threshold.
+   */
+  private static boolean isMemoryLow() {
+    final Runtime runtime = Runtime.getRuntime();
+    final long used = runtime.totalMemory() - runtime.freeMemory();
+    return (double) used / runtime.maxMemory() > MAX_MEMORY_USAGE;
+  }
+
+  private static long getRemainingSeconds() {
+    final int doneThisSession = task.doneCount() - sessionStartCount;
+    if (doneThisSession <= 0)
+      return -1;
+    final double elapsed = (System.currentTimeMillis() - sessionStartTime) / 1000.0;
+    return (long) ((task.chunksCount() - task.doneCount()) * elapsed / doneThisSession);
+  }
+
+  private static String formatDuration(long seconds) {
+    if (seconds < 0)
+      return "?";
+    return String.format("%dh%02dm%02ds", seconds / 3600, seconds / 60 % 60, seconds % 60);
+  }
+
+  private static void notifyOwner(MinecraftServer server, Text text) {
+    if (owner == null)
+      return;
+    final ServerPlayerEntity player = server.getPlayerManager().getPlayer(owner);
+    if (player != null)
+      player.sendMessage(text);
+  }
+
+  private static void saveCheckpoint(MinecraftServer server) {
+    // Chunks still in flight have to be requested again when resuming
+    final int resumeIndex = inFlight.isEmpty() ? task.nextIndex() : inFlight.firstKey();
+    try (final var writer = Files.newBufferedWriter(getCheckpointPath(server))) {
+      task.toProperties(resumeIndex).store(writer, "InfiniteCity chunk pregeneration checkpoint");
+    } catch (IOException e) {
+      InfiniteCity.LOGGER.error("Could not save pregeneration checkpoint", e);
+    }
+  }
+
+  private static void deleteCheckpoint(MinecraftServer server) {
+    try {
+      Files.deleteIfExists(getCheckpointPath(server));
+    } catch (IOException e) {
+      InfiniteCity.LOGGER.error("Could not delete pregeneration checkpoint", e);
+    }
+  }
+
+  private static Path getCheckpointPath(MinecraftServer server) {
+    return server.getSavePath(WorldSavePath.ROOT).resolve(CHECKPOINT_FILE);
+  }
+
+  private ChunkPregenerator() {
+  }
+}
@@ -0,0 +1,346 @@
+package net.darmo_creations.infinitecity.server;
+
+import io.netty.buffer.*;
+import it.unimi.dsi.fastutil.longs.*;
+import net.darmo_creations.infinitecity.*;
+import net.darmo_creations.infinitecity.chunk_gen.*;
+import net.darmo_creations.infinitecity.mixins.*;
+import net.fabricmc.fabric.api.event.lifecycle.v1.*;
+import net.minecraft.block.*;
+import net.minecraft.network.*;
+import net.minecraft.registry.*;
+import net.minecraft.server.world.*;
+import net.minecraft.util.*;
+import net.minecraft.world.*;
+import net.minecraft.world.chunk.*;
+import net.minecraft.world.dimension.*;
+import org.jetbrains.annotations.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+
+/**
+ * A file that stores the parts of city chunks that do not depend on the world’s seed, one template per chunk archetype.
+ * Chunks with the same archetype have the same position relative to all layers’ grids, and thus the same seed-independent parts.
+ * The generator copies templates into new chunks instead of generating these parts again.
+ * <p>
+ * Each city dimension has its own store, in its {@code data} directory. Templates are read from the file
+ * when they are copied and only the position of each template is kept on-heap. The file’s header holds a key computed from {@link InfiniteCityChunkGenerator#VERSION},
+ * the generator’s config (biome and layers), the block registry and the data pack portion overrides ({@link ChunkPortionOverrides}).
+ * The file is cleared when the key no longer matches. Templates are neither copied nor added
+ * while the overrides differ from those the store was opened with, i.e. after a {@code /reload} that changed them.
+ * <p>
+ * Each template holds the sections of its chunk that are not empty. Uniform sections are stored
+ * as the raw ID of their block state and the others in the same format as network packets
+ * (palette then packed data).
+ * <p>
+ * Stores are only opened when {@link ServerConfig#shouldGenerationUseTemplateStore()} is enabled.
+ */
+public class ChunkTemplateStore implements Closeable {
+  private static final String FILE_NAME = InfiniteCity.MOD_ID + "_templates.bin";
+  private static final int MAGIC = 0x49435453; // "ICTS"
+  private static final int FORMAT_VERSION = 1;
+  private static final int HEADER_SIZE = 16;
+  /**
+   * Size of a template’s header: archetype (long) and size of the data that follows (int).
+   */
+  private static final int TEMPLATE_HEADER_SIZE = 12;
+  private static final byte UNIFORM_SECTION = 0;
+  private static final byte PACKED_SECTION = 1;
+
+  private final FileChannel channel;
+  /**
+   * Hash of the portion overrides templates were built with.
+   */
+  private final long portionsHash;
+  /**
+   * Offset in the file of the data of each template, by archetype.
+   */
+  private final Long2LongMap offsets = new Long2LongOpenHashMap();
+  /**
+   * Size of the data of each template, by archetype.
+   */
+  private final Long2IntMap sizes = new Long2IntOpenHashMap();
+  /**
+   * Archetypes whose template is currently being written.
+   */
+  private final LongSet writing = new LongOpenHashSet();
+  private long size;
+  // Statistics
+  private long hitsCount;
+  private long missesCount;
+
+  /**
+   * Register the world events that open and close the stores of all city dimensions.
+   */
+  public static void init() {
+    ServerWorldEvents.LOAD.register((server, world) -> {
+      if (!ServerConfig.shouldGenerationUseTemplateStore()
+          || !(world.getChunkManager().getChunkGenerator() instanceof InfiniteCityChunkGenerator generator))
+        return;
+      final Path path = DimensionType.getSaveDirectory(world.getRegistryKey(), server.getSavePath(WorldSavePath.ROOT))
+          .resolve("data").resolve(FILE_NAME);
+      try {
+        generator.setTemplateStore(open(path, computeKey(generator), ChunkPortionOverrides.getHash()));
+      } catch (IOException e) {
+        InfiniteCity.LOGGER.error("Could not open chunk template store {}, chunks will be fully generated", path, e);
+      }
+    });
+    ServerWorldEvents.UNLOAD.register((server, world) -> {
+      if (!(world.getChunkManager().getChunkGenerator() instanceof InfiniteCityChunkGenerator generator))
+        return;
+      final ChunkTemplateStore store = generator.getTemplateStore();
+      if (store == null)
+        return;
+      generator.setTemplateStore(null);
+      try {
+        store.close();
+      } catch (IOException e) {
+        InfiniteCity.LOGGER.error("Could not close chunk template store", e);
+      }
+    });
+  }
+
+  /**
+   * Open the store in the given file, clearing it if it was created with a different key.
+   *
+   * @param path         The file’s path.
+   * @param key          The key the templates must have been created with.
+   * @param portionsHash The hash of the current portion overrides, see {@link ChunkPortionOverrides#getHash()}.
+   * @return The store.
+   * @throws IOException If the file could not be read or written.
+   */
+  public static ChunkTemplateStore open(Path path, long key, long portionsHash) throws IOException {
+    Files.createDirectories(path.getParent());
+    final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+    try {
+      return new ChunkTemplateStore(channel, key, portionsHash);
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Compute the key of the templates built by the given generator.
+   * Templates hold raw block state IDs, which depend on the content of the block registry.
+   */
+  private static long computeKey(InfiniteCityChunkGenerator generator) {
+    long key = generator.getContentStamp();
+    for (final Block block : Registries.BLOCK)
+      key = 31 * key + Registries.BLOCK.getId(block).toString().hashCode();
+    return 31 * key + Block.STATE_IDS.size();
+  }
+
+  private ChunkTemplateStore(FileChannel channel, long key, long portionsHash) throws IOException {
+    this.channel = channel;
+    this.portionsHash = portionsHash;
+    this.size = channel.size();
+    final ByteBuffer header = this.read(0, HEADER_SIZE);
+    if (header == null || header.getInt() != MAGIC || header.getInt() != FORMAT_VERSION || header.getLong() != key) {
+      if (this.size != 0)
+        InfiniteCity.LOGGER.info("Chunk templates are outdated, clearing store");
+      channel.truncate(0);
+      channel.write(ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(FORMAT_VERSION).putLong(key).flip(), 0);
+      this.size = HEADER_SIZE;
+    } else {
+      long offset = HEADER_SIZE;
+      ByteBuffer templateHeader;
+      while ((templateHeader = this.read(offset, TEMPLATE_HEADER_SIZE)) != null) {
+        final long archetype = templateHeader.getLong();
+        final int templateSize = templateHeader.getInt();
+        final long end = offset + TEMPLATE_HEADER_SIZE + templateSize;
+        if (templateSize < 0 || end > this.size)
+          break;
+        this.offsets.put(archetype, offset + TEMPLATE_HEADER_SIZE);
+        this.sizes.put(archetype, templateSize);
+        offset = end;
+      }
+      if (offset != this.size) {
+        // The server stopped while a template was being written
+        InfiniteCity.LOGGER.warn("Discarding incomplete chunk template");
+        channel.truncate(offset);
+        this.size = offset;
+      }
+    }
+  }
+
+  /**
+   * Read bytes from the file.
+   *
+   * @return A buffer with the read bytes or null if the file ends before.
+   */
+  @Nullable
+  private ByteBuffer read(long offset, int length) throws IOException {
+    if (offset + length > this.size)
+      return null;
+    final ByteBuffer buffer = ByteBuffer.allocate(length);
+    while (buffer.hasRemaining())
+      if (this.channel.read(buffer, offset + buffer.position()) < 0)
+        return null;
+    return buffer.flip();
+  }
+
+  /**
+   * Return a snapshot of this store’s statistics.
+   */
+  public synchronized Stats getStats() {
+    return new Stats(this.offsets.size(), this.hitsCount, this.missesCount);
+  }
+
+  /**
+   * Copy the template of the given archetype into a chunk.
+   * Pending sections of the chunk (see {@link LazySections}) are left untouched.
+   *
+   * @param chunk     The chunk to copy the template into.
+   * @param archetype The chunk’s archetype.
+   * @return True if the template was copied, false if there is no template for this archetype yet
+   * or templates cannot be used with the current portions.
+   */
+  public boolean copyTemplate(Chunk chunk, long archetype) {
+    if (ChunkPortionOverrides.getHash() != this.portionsHash)
+      return false;
+    final ByteBuffer data;
+    try {
+      data = this.readTemplate(archetype);
+    } catch (ClosedChannelException e) {
+      // The world is being unloaded
+      return false;
+    } catch (IOException e) {
+      InfiniteCity.LOGGER.error("Could not read chunk template", e);
+      return false;
+    }
+    if (data == null)
+      return false;
+
+    final PacketByteBuf buf = new PacketByteBuf(Unpooled.wrappedBuffer(data));
+    while (buf.isReadable()) {
+      final int index = buf.readShort();
+      final boolean pending = LazySections.isPending(chunk, index);
+      if (buf.readByte() == UNIFORM_SECTION) {
+        final BlockState blockState = Block.STATE_IDS.get(buf.readInt());
+        if (!pending)
+          SharedSections.fillSection(chunk, index, blockState);
+      } else {
+        final var container = new PalettedContainer<>(Block.STATE_IDS, Blocks.AIR.getDefaultState(), PalettedContainer.PaletteProvider.BLOCK_STATE);
+        container.readPacket(buf);
+        if (!pending) {
+          final ChunkSection section = chunk.getSection(index);
+          ((ChunkSectionAccessor) section).setBlockStateContainer(container);
+          section.calculateCounts();
+        }
+      }
+    }
+    Heightmap.populateHeightmaps(chunk, chunk.getStatus().getHeightmapTypes());
+    return true;
+  }
+
+  /**
+   * Read the data of the template of the given archetype.
+   *
+   * @param archetype The template’s archetype.
+   * @return The template’s data or null if there is no template for this archetype yet.
+   * @throws IOException If the file could not be read.
+   */
+  @Nullable
+  ByteBuffer readTemplate(long archetype) throws IOException {
+    final long offset;
+    final int size;
+    synchronized (this) {
+      offset = this.offsets.getOrDefault(archetype, -1);
+      if (offset < 0) {
+        this.missesCount++;
+        return null;
+      }
+      this.hitsCount++;
+      size = this.sizes.get(archetype);
+    }
+    // Templates are never modified once written, they can be read concurrently
+    final ByteBuffer data = this.read(offset, size);
+    if (data == null)
+      throw new EOFException("Chunk template at offset %d ends after the end of the file".formatted(offset));
+    return data;
+  }
+
+  /**
+   * Store the content of the given chunk as the template of its archetype, if there is none yet.
+   * Chunks with pending sections are ignored, as well as all chunks if the portions changed since the store was opened.
+   *
+   * @param chunk     A chunk that only contains the seed-independent parts of its archetype.
+   * @param archetype The chunk’s archetype.
+   */
+  public void addTemplate(Chunk chunk, long archetype) {
+    if (LazySections.hasPendingSections(chunk) || ChunkPortionOverrides.getHash() != this.portionsHash)
+      return;
+    synchronized (this) {
+      if (this.offsets.containsKey(archetype) || !this.writing.add(archetype))
+        return;
+    }
+    try {
+      final PacketByteBuf buf = new PacketByteBuf(Unpooled.buffer());
+      final ChunkSection[] sections = chunk.getSectionArray();
+      for (int index = 0; index < sections.length; index++) {
+        final ChunkSection section = sections[index];
+        if (section.isEmpty())
+          continue;
+        buf.writeShort(index);
+        final PalettedContainer<BlockState> container = section.getBlockStateContainer();
+        if (SharedSections.isShared(container)) {
+          buf.writeByte(UNIFORM_SECTION);
+          buf.writeInt(Block.STATE_IDS.getRawId(container.get(0, 0, 0)));
+        } else {
+          buf.writeByte(PACKED_SECTION);
+          container.writePacket(buf);
+        }
+      }
+      this.writeTemplate(archetype, buf.nioBuffer());
+    } catch (IOException e) {
+      InfiniteCity.LOGGER.error("Could not store chunk template", e);
+    } finally {
+      synchronized (this) {
+        this.writing.remove(archetype);
+      }
+    }
+  }
+
+  /**
+   * Append a template to the file.
+   *
+   * @param archetype The template’s archetype.
+   * @param data      The template’s data.
+   * @throws IOException If the file could not be written.
+   */
+  synchronized void writeTemplate(long archetype, ByteBuffer data) throws IOException {
+    if (!this.channel.isOpen())
+      return;
+    final int dataSize = data.remaining();
+    final ByteBuffer header = ByteBuffer.allocate(TEMPLATE_HEADER_SIZE).putLong(archetype).putInt(dataSize).flip();
+    final long offset = this.size;
+    while (header.hasRemaining())
+      this.channel.write(header, offset + header.position());
+    final long dataOffset = offset + TEMPLATE_HEADER_SIZE;
+    final int start = data.position();
+    while (data.hasRemaining())
+      this.channel.write(data, dataOffset + data.position() - start);
+    this.size = dataOffset + dataSize;
+    this.offsets.put(archetype, dataOffset);
+    this.sizes.put(archetype, dataSize);
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    this.channel.close();
+  }
+
+  /**
+   * Statistics of a store.
+   *
+   * @param templates Number of templates in the store.
+   * @param hits      Number of chunks whose template was copied.
+   * @param misses    Number of chunks that had no template.
+   */
+  public record Stats(int templates, long hits, long misses) {
+  }
+}
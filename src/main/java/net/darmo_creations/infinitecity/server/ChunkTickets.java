@@ -0,0 +1,82 @@
+package net.darmo_creations.infinitecity.server;
+
+import net.minecraft.server.world.*;
+import net.minecraft.util.math.*;
+
+import java.util.*;
+
+/**
+ * This class defines methods to request the generation of chunks
+ * through the server’s regular chunk loading pipeline.
+ * <p>
+ * A requested chunk is kept loaded by a ticket until it is released.
+ * The chunk is then unloaded and saved like any other chunk.
+ */
+public final class ChunkTickets {
+  /**
+   * Ticket type used by the pregeneration command.
+   */
+  public static final ChunkTicketType<ChunkPos> PREGEN =
+      ChunkTicketType.create("infinitecity_pregen", Comparator.comparingLong(ChunkPos::toLong));
+  /**
+   * Ticket type used to load chunks ahead of moving players.
+   */
+  public static final ChunkTicketType<ChunkPos> PREFETCH =
+      ChunkTicketType.create("infinitecity_prefetch", Comparator.comparingLong(ChunkPos::toLong));
+  /**
+   * Ticket type used to load the destination area of players standing in a portal.
+   * Tickets of this type expire by themselves after 15 seconds.
+   */
+  public static final ChunkTicketType<ChunkPos> PORTAL_PREWARM =
+      ChunkTicketType.create("infinitecity_portal_prewarm", Comparator.comparingLong(ChunkPos::toLong), 20 * 15);
+
+  /**
+   * Add a ticket for the given chunk so that it is loaded, generating it if necessary.
+   *
+   * @param world The world to load the chunk in.
+   * @param type  The ticket type.
+   * @param pos   The chunk’s position.
+   */
+  public static void request(ServerWorld world, ChunkTicketType<ChunkPos> type, ChunkPos pos) {
+    world.getChunkManager().addTicket(type, pos, 0, pos);
+  }
+
+  /**
+   * Add a ticket for all chunks within the given radius around a chunk so that they are loaded,
+   * generating them if necessary.
+   *
+   * @param world  The world to load the chunks in.
+   * @param type   The ticket type.
+   * @param pos    The central chunk’s position.
+   * @param radius The radius around the central chunk.
+   */
+  public static void request(ServerWorld world, ChunkTicketType<ChunkPos> type, ChunkPos pos, int radius) {
+    world.getChunkManager().addTicket(type, pos, radius, pos);
+  }
+
+  /**
+   * Remove the ticket added by {@link #request(ServerWorld, ChunkTicketType, ChunkPos)}.
+   *
+   * @param world The world the chunk is in.
+   * @param type  The ticket type.
+   * @param pos   The chunk’s position.
+   */
+  public static void release(ServerWorld world, ChunkTicketType<ChunkPos> type, ChunkPos pos) {
+    world.getChunkManager().removeTicket(type, pos, 0, pos);
+  }
+
+  /**
+   * Indicate whether the given chunk has reached the {@code FULL} status.
+   * Must be called from the server thread.
+   *
+   * @param world The world the chunk is in.
+   * @param pos   The chunk’s position.
+   * @return True if the chunk is fully generated and loaded, false otherwise.
+   */
+  public static boolean isReady(ServerWorld world, ChunkPos pos) {
+    return world.getChunkManager().getWorldChunk(pos.x, pos.z) != null;
+  }
+
+  private ChunkTickets() {
+  }
+}
@@ -0,0 +1,49 @@
+package net.darmo_creations.infinitecity.server;
+
+import net.darmo_creations.infinitecity.*;
+import net.darmo_creations.infinitecity.chunk_gen.*;
+import net.fabricmc.fabric.api.entity.event.v1.*;
+import net.fabricmc.fabric.api.networking.v1.*;
+import net.minecraft.nbt.*;
+import net.minecraft.network.*;
+import net.minecraft.server.network.*;
+import net.minecraft.util.*;
+
+/**
+ * This class sends the layer settings of the city dimension a player is in to their client,
+ * which needs them to build simplified models of distant parts of the city.
+ * <p>
+ * Settings are sent when players join, respawn or change world. Players that enter a world
+ * that is not a city dimension receive an empty packet. Clients without this mod are never sent anything.
+ */
+public final class CityLayoutSync {
+  /**
+   * ID of the packet that holds the settings: a boolean telling whether the player is in a city dimension,
+   * followed by the {@link InfiniteCityChunkGeneratorConfig.LayerSettings} encoded as NBT if it is.
+   */
+  public static final Identifier PACKET_ID = new Identifier(InfiniteCity.MOD_ID, "city_layout");
+
+  /**
+   * Register the server events that send the settings.
+   */
+  public static void init() {
+    ServerPlayConnectionEvents.JOIN.register((handler, sender, server) -> send(handler.getPlayer()));
+    ServerPlayerEvents.AFTER_RESPAWN.register((oldPlayer, newPlayer, alive) -> send(newPlayer));
+    ServerEntityWorldChangeEvents.AFTER_PLAYER_CHANGE_WORLD.register((player, origin, destination) -> send(player));
+  }
+
+  private static void send(ServerPlayerEntity player) {
+    if (!ServerPlayNetworking.canSend(player, PACKET_ID))
+      return;
+    final PacketByteBuf buf = PacketByteBufs.create();
+    if (player.getServerWorld().getChunkManager().getChunkGenerator() instanceof InfiniteCityChunkGenerator generator) {
+      buf.writeBoolean(true);
+      buf.encode(NbtOps.INSTANCE, InfiniteCityChunkGeneratorConfig.LayerSettings.CODEC, generator.getConfig().layers());
+    } else
+      buf.writeBoolean(false);
+    ServerPlayNetworking.send(player, PACKET_ID, buf);
+  }
+
+  private CityLayoutSync() {
+  }
+}
@@ -0,0 +1,41 @@
+package net.darmo_creations.infinitecity.server;
+
+import net.darmo_creations.infinitecity.chunk_gen.*;
+import net.minecraft.server.world.*;
+import net.minecraft.util.math.*;
+
+import java.util.*;
+
+/**
+ * This class finds respawn positions in city dimensions.
+ * <p>
+ * When the spawn point of a player in a city dimension is not set by a block and is obstructed, the player
+ * is placed on the floor nearest to it instead of being sent back to the overworld. Floors are computed
+ * from the generator’s layers by {@link CityFloors}, which does not require any chunk to be generated.
+ * Only the chunk of the selected position is then generated, before the player is placed.
+ */
+public final class CitySpawnLocator {
+  /**
+   * Maximum distance (in chunks) from the spawn point of the floors to respawn on.
+   */
+  private static final int SEARCH_RADIUS = 4;
+
+  /**
+   * Return the position to respawn at near the given spawn point.
+   *
+   * @param world      The world to respawn in.
+   * @param spawnPoint The player’s spawn point.
+   * @return The position of the feet of the player or an empty value if the world is not a city dimension.
+   */
+  public static Optional<Vec3d> findRespawnPos(ServerWorld world, BlockPos spawnPoint) {
+    if (!(world.getChunkManager().getChunkGenerator() instanceof InfiniteCityChunkGenerator generator))
+      return Optional.empty();
+    final Optional<BlockPos> pos = generator.getFloors(world.getSeed()).findNearestFloor(spawnPoint, SEARCH_RADIUS, floor -> true);
+    // Generate the chunk now so that the player is not placed in a chunk that does not exist yet
+    pos.ifPresent(p -> world.getChunk(ChunkSectionPos.getSectionCoord(p.getX()), ChunkSectionPos.getSectionCoord(p.getZ())));
+    return pos.map(Vec3d::ofBottomCenter);
+  }
+
+  private CitySpawnLocator() {
+  }
+}
@@ -0,0 +1,256 @@
+package net.darmo_creations.infinitecity.server;
+
+import net.darmo_creations.infinitecity.chunk_gen.*;
+import net.fabricmc.fabric.api.event.lifecycle.v1.*;
+import net.minecraft.server.network.*;
+import net.minecraft.server.world.*;
+import net.minecraft.util.math.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+import java.util.stream.*;
+
+/**
+ * This class schedules the asynchronous generation steps of a city dimension’s chunks.
+ * <p>
+ * Tasks are started in order of distance to the nearest player. While players are in the dimension,
+ * at most {@link ServerConfig#getGenerationChunksPerTick()} tasks are started per tick.
+ * When the server’s average tick duration exceeds {@link ServerConfig#getGenerationTargetMspt()},
+ * only one task per tick is started and chunks outside of every player’s view distance are deferred
+ * until the server catches up.
+ * <p>
+ * When no players are in the dimension, the server is not ticking (e.g. while preparing the spawn area)
+ * or the server thread is waiting for a chunk to be loaded (see {@link #beginBlockingLoad()}), tasks are started
+ * immediately. Tasks deferred while the server was ticking are started at most {@link #TICK_TIMEOUT} after the last tick,
+ * even if no other tick, task or completion happens in the meantime.
+ */
+public class GenerationScheduler {
+  /**
+   * Delay after which the server is considered not to be ticking.
+   */
+  private static final long TICK_TIMEOUT = TimeUnit.SECONDS.toNanos(1);
+
+  private final PriorityQueue<Task<?>> queue = new PriorityQueue<>();
+  private long[] playerChunks = new long[0];
+  private int[] playerYs = new int[0];
+  private int viewDistance;
+  private long lastTickTime;
+  private int tokens;
+  private boolean overBudget;
+  /**
+   * Number of chunk loads the server thread is currently waiting for.
+   */
+  private int blockingLoads;
+  private boolean redispatchScheduled;
+  private long taskCounter;
+  // Statistics
+  private int running;
+  private long startedCount;
+  private long deferredCount;
+
+  /**
+   * Register the world tick event that updates the schedulers of all city dimensions.
+   */
+  public static void init() {
+    ServerTickEvents.END_WORLD_TICK.register(world -> {
+      if (world.getChunkManager().getChunkGenerator() instanceof InfiniteCityChunkGenerator generator)
+        generator.getScheduler().tick(world);
+    });
+  }
+
+  /**
+   * Schedule a generation task for the given chunk.
+   *
+   * @param pos      The position of the chunk the task generates.
+   * @param work     The task.
+   * @param executor The executor to run the task on once it is started.
+   * @param <T>      The type of the task’s result.
+   * @return A future that completes with the task’s result.
+   */
+  public <T> CompletableFuture<T> submit(ChunkPos pos, Supplier<T> work, Executor executor) {
+    final Task<T> task;
+    synchronized (this) {
+      task = new Task<>(pos.toLong(), work, executor, this.taskCounter++);
+      task.updatePriority();
+      this.queue.add(task);
+      this.dispatch();
+      if (!task.started)
+        this.deferredCount++;
+    }
+    return task.future;
+  }
+
+  /**
+   * Update this scheduler for the current tick.
+   *
+   * @param world The world whose chunks this scheduler generates.
+   */
+  public void tick(ServerWorld world) {
+    final List<ServerPlayerEntity> players = world.getPlayers();
+    final long[] chunks = new long[players.size()];
+    final int[] ys = new int[players.size()];
+    for (int i = 0; i < chunks.length; i++) {
+      chunks[i] = players.get(i).getChunkPos().toLong();
+      ys[i] = players.get(i).getBlockY();
+    }
+    final double mspt = world.getServer().getAverageNanosPerTick() / 1e6;
+
+    synchronized (this) {
+      this.playerChunks = chunks;
+      this.playerYs = ys;
+      this.viewDistance = world.getServer().getPlayerManager().getViewDistance();
+      this.lastTickTime = System.nanoTime();
+      this.overBudget = mspt > ServerConfig.getGenerationTargetMspt();
+      this.tokens = this.overBudget ? 1 : ServerConfig.getGenerationChunksPerTick();
+      if (!this.queue.isEmpty()) {
+        // Players may have moved since the tasks were queued
+        final List<Task<?>> tasks = new ArrayList<>(this.queue);
+        this.queue.clear();
+        tasks.forEach(Task::updatePriority);
+        this.queue.addAll(tasks);
+      }
+      this.dispatch();
+    }
+  }
+
+  /**
+   * Called when the server thread starts waiting for a chunk of this scheduler’s world to be loaded.
+   * No task is deferred until {@link #endBlockingLoad()} is called, as the server cannot tick in the meantime.
+   */
+  public synchronized void beginBlockingLoad() {
+    this.blockingLoads++;
+    this.dispatch();
+  }
+
+  /**
+   * Called when the server thread stops waiting for a chunk of this scheduler’s world to be loaded.
+   */
+  public synchronized void endBlockingLoad() {
+    this.blockingLoads--;
+  }
+
+  /**
+   * Return the Y positions of the players that were within view distance of the given chunk during the last tick.
+   *
+   * @param pos A chunk position.
+   * @return The Y positions of the nearby players.
+   */
+  public synchronized int[] getNearbyPlayersY(ChunkPos pos) {
+    final int x = pos.x;
+    final int z = pos.z;
+    return IntStream.range(0, this.playerChunks.length)
+        .filter(i -> Math.max(Math.abs(ChunkPos.getPackedX(this.playerChunks[i]) - x),
+            Math.abs(ChunkPos.getPackedZ(this.playerChunks[i]) - z)) <= this.viewDistance + 1)
+        .map(i -> this.playerYs[i])
+        .toArray();
+  }
+
+  /**
+   * Return a snapshot of this scheduler’s statistics.
+   */
+  public synchronized Stats getStats() {
+    return new Stats(this.queue.size(), this.running, this.startedCount, this.deferredCount);
+  }
+
+  /**
+   * Start as many queued tasks as allowed. Must be called while holding this object’s lock.
+   */
+  private void dispatch() {
+    final long sinceLastTick = System.nanoTime() - this.lastTickTime;
+    final boolean throttle = this.playerChunks.length != 0 && this.blockingLoads == 0 && sinceLastTick < TICK_TIMEOUT;
+    while (!this.queue.isEmpty()) {
+      final Task<?> task = this.queue.peek();
+      if (throttle && (this.tokens <= 0 || this.overBudget && task.speculative))
+        break;
+      this.queue.poll();
+      this.tokens--;
+      this.running++;
+      this.startedCount++;
+      task.start();
+    }
+    if (!this.queue.isEmpty() && !this.redispatchScheduled) {
+      // Deferred tasks must not wait for a tick that may never come
+      this.redispatchScheduled = true;
+      final Executor delayed = CompletableFuture.delayedExecutor(TICK_TIMEOUT - sinceLastTick, TimeUnit.NANOSECONDS);
+      CompletableFuture.runAsync(this::redispatch, delayed);
+    }
+  }
+
+  private synchronized void redispatch() {
+    this.redispatchScheduled = false;
+    this.dispatch();
+  }
+
+  private synchronized void onTaskDone() {
+    this.running--;
+    this.dispatch();
+  }
+
+  /**
+   * Return the distance in chunks between the given chunk and the nearest player.
+   */
+  private int getDistanceToPlayers(long pos) {
+    if (this.playerChunks.length == 0)
+      return 0;
+    final int x = ChunkPos.getPackedX(pos);
+    final int z = ChunkPos.getPackedZ(pos);
+    int min = Integer.MAX_VALUE;
+    for (final long playerChunk : this.playerChunks) {
+      final int d = Math.max(Math.abs(ChunkPos.getPackedX(playerChunk) - x), Math.abs(ChunkPos.getPackedZ(playerChunk) - z));
+      min = Math.min(min, d);
+    }
+    return min;
+  }
+
+  /**
+   * Statistics of a scheduler.
+   *
+   * @param queued   Number of tasks waiting to be started.
+   * @param running  Number of tasks currently running.
+   * @param started  Total number of started tasks.
+   * @param deferred Total number of tasks that could not be started right away.
+   */
+  public record Stats(int queued, int running, long started, long deferred) {
+  }
+
+  private class Task<T> implements Comparable<Task<?>> {
+    private final long pos;
+    private final Supplier<T> work;
+    private final Executor executor;
+    private final long order;
+    private final CompletableFuture<T> future = new CompletableFuture<>();
+    private int distance;
+    private boolean speculative;
+    private boolean started;
+
+    private Task(long pos, Supplier<T> work, Executor executor, long order) {
+      this.pos = pos;
+      this.work = work;
+      this.executor = executor;
+      this.order = order;
+    }
+
+    private void updatePriority() {
+      this.distance = GenerationScheduler.this.getDistanceToPlayers(this.pos);
+      this.speculative = this.distance > GenerationScheduler.this.viewDistance + 1;
+    }
+
+    private void start() {
+      this.started = true;
+      CompletableFuture.supplyAsync(this.work, this.executor).whenComplete((result, throwable) -> {
+        GenerationScheduler.this.onTaskDone();
+        if (throwable != null)
+          this.future.completeExceptionally(throwable);
+        else
+          this.future.complete(result);
+      });
+    }
+
+    @Override
+    public int compareTo(Task<?> o) {
+      final int c = Integer.compare(this.distance, o.distance);
+      return c != 0 ? c : Long.compare(this.order, o.order);
+    }
+  }
+}
@@ -0,0 +1,391 @@
+package net.darmo_creations.infinitecity.server;
+
+import it.unimi.dsi.fastutil.longs.*;
+import net.darmo_creations.infinitecity.*;
+import net.darmo_creations.infinitecity.blocks.*;
+import net.darmo_creations.infinitecity.chunk_gen.*;
+import net.fabricmc.fabric.api.event.lifecycle.v1.*;
+import net.fabricmc.fabric.api.networking.v1.*;
+import net.minecraft.block.*;
+import net.minecraft.nbt.*;
+import net.minecraft.network.packet.s2c.play.*;
+import net.minecraft.registry.*;
+import net.minecraft.server.network.*;
+import net.minecraft.server.world.*;
+import net.minecraft.util.*;
+import net.minecraft.util.math.*;
+import net.minecraft.world.*;
+import net.minecraft.world.chunk.*;
+import net.minecraft.world.chunk.light.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * This class defers the generation of the sections of city chunks that are vertically far from every player.
+ * <p>
+ * When {@link ServerConfig#shouldGenerateLazySections()} is enabled, the sections of a chunk that are more than
+ * {@link ServerConfig#getGenerationLazySectionsWindow()} blocks above or below every nearby player are not generated
+ * with the rest of the chunk, and flagged as pending. Chunks generated while no player is nearby (pregeneration,
+ * prefetching, portal prewarming, etc.) are fully generated. The generator skips the pending sections in its loops
+ * (see {@link ChunkGenerationUtils#isDiscarded(Chunk, int)}) and the blocks it still places there are discarded.
+ * <p>
+ * Pending sections are generated in the background once a player gets close enough to them, or when one
+ * of their blocks is changed. All pending sections of a chunk within a player’s window are generated at once,
+ * in a scratch chunk where all other sections are pending, so that only these sections are generated.
+ * Every tick, up to {@link ServerConfig#getGenerationChunksPerTick()} chunks are handled, from the nearest
+ * to the farthest from each player. The window of falling players extends {@link #FALL_MARGIN} blocks
+ * further below them.
+ * <p>
+ * Until they are generated, pending sections are filled with {@link ModBlocks#PLACEHOLDER}, an opaque block
+ * that looks like the terrain that will replace it and blocks sky light, but that entities go through
+ * and that cannot be mined. Blocks changed in pending sections are recorded and kept when the sections are generated.
+ * Once generated, the chunk’s heightmaps and light are updated and the chunk is sent again to the players watching it.
+ * <p>
+ * Pending sections and their changed blocks are saved with their chunk and stay pending when it is loaded again.
+ */
+public final class LazySections {
+  /**
+   * Distance (in blocks) the window of falling players extends below them,
+   * about two seconds of fall at terminal velocity.
+   */
+  private static final int FALL_MARGIN = 160;
+  private static final String PENDING_KEY = InfiniteCity.MOD_ID + ":pending_sections";
+  private static final String CHANGES_KEY = InfiniteCity.MOD_ID + ":pending_changes";
+  /**
+   * The block pending sections are filled with until they are generated.
+   */
+  private static final BlockState PLACEHOLDER = ModBlocks.PLACEHOLDER.getDefaultState();
+
+  /**
+   * Positions of the loaded chunks that have pending sections, per world.
+   */
+  private static final Map<ServerWorld, LongSet> pendingChunks = new HashMap<>();
+  /**
+   * Positions of the chunks whose pending sections are currently being generated, per world.
+   */
+  private static final Map<ServerWorld, LongSet> generating = new HashMap<>();
+  // Statistics
+  private static final AtomicLong deferredSectionsCount = new AtomicLong();
+  private static long materializedSectionsCount;
+
+  /**
+   * Register the server events needed to generate pending sections.
+   */
+  public static void init() {
+    ServerChunkEvents.CHUNK_LOAD.register((world, chunk) -> {
+      if (!getPendingSections(chunk).isEmpty())
+        pendingChunks.computeIfAbsent(world, w -> new LongOpenHashSet()).add(chunk.getPos().toLong());
+    });
+    ServerChunkEvents.CHUNK_UNLOAD.register((world, chunk) -> removeChunk(pendingChunks, world, chunk.getPos()));
+    ServerTickEvents.END_WORLD_TICK.register(LazySections::tick);
+    ServerLifecycleEvents.SERVER_STOPPED.register(server -> {
+      pendingChunks.clear();
+      generating.clear();
+    });
+  }
+
+  /**
+   * Return a snapshot of the statistics of lazy sections.
+   */
+  public static Stats getStats() {
+    return new Stats(deferredSectionsCount.get(), materializedSectionsCount);
+  }
+
+  /**
+   * Flag the sections of a chunk that is about to be generated that are outside the window of every given player.
+   * Blocks placed in these sections are then discarded until the sections are generated.
+   * Nothing is deferred if there is no player near the chunk.
+   *
+   * @param chunk    The chunk to be generated.
+   * @param playersY The Y positions of the players near the chunk.
+   */
+  public static void deferSections(Chunk chunk, int[] playersY) {
+    if (playersY.length == 0)
+      return;
+    final int window = ServerConfig.getGenerationLazySectionsWindow();
+    final BitSet pending = getPendingSections(chunk);
+    for (int index = 0; index < chunk.countVerticalSections(); index++) {
+      final int sectionY = chunk.sectionIndexToCoord(index);
+      if (Arrays.stream(playersY).noneMatch(y -> isInRange(sectionY, y - window, y + window)))
+        pending.set(index);
+    }
+    deferredSectionsCount.addAndGet(pending.cardinality());
+  }
+
+  /**
+   * Fill the pending sections of a chunk that was just generated with the placeholder block.
+   *
+   * @param chunk The generated chunk.
+   */
+  public static void fillPendingSections(Chunk chunk) {
+    getPendingSections(chunk).stream().forEach(index -> SharedSections.fillSection(chunk, index, PLACEHOLDER));
+  }
+
+  /**
+   * Indicate whether the section at the given index of a chunk was not generated yet.
+   *
+   * @param chunk The chunk.
+   * @param index The section’s index in the chunk.
+   * @return True if the section is pending, false otherwise.
+   */
+  public static boolean isPending(Chunk chunk, int index) {
+    return getPendingSections(chunk).get(index);
+  }
+
+  /**
+   * Indicate whether some sections of the given chunk were not generated yet.
+   *
+   * @param chunk The chunk.
+   * @return True if the chunk has pending sections, false otherwise.
+   */
+  public static boolean hasPendingSections(Chunk chunk) {
+    return !getPendingSections(chunk).isEmpty();
+  }
+
+  /**
+   * Called before a block of a pending section of the given chunk is changed.
+   * The block’s position is recorded, and the chunk’s pending sections are generated in the background.
+   *
+   * @param world The world the chunk is in.
+   * @param chunk The chunk.
+   * @param pos   The position of the block that is about to change.
+   */
+  public static void onPendingSectionChange(ServerWorld world, WorldChunk chunk, BlockPos pos) {
+    getPendingChanges(chunk).add(pos.asLong());
+    requestMaterialization(world, chunk);
+  }
+
+  /**
+   * Save the pending sections of a chunk into its serialized data.
+   *
+   * @param world The world the chunk is in.
+   * @param chunk The chunk that was serialized.
+   * @param nbt   The chunk’s serialized data.
+   */
+  public static void onSerialize(ServerWorld world, Chunk chunk, NbtCompound nbt) {
+    final BitSet pending = getPendingSections(chunk);
+    if (!pending.isEmpty())
+      nbt.putLongArray(PENDING_KEY, pending.toLongArray());
+    final LongSet changes = getPendingChanges(chunk);
+    if (!changes.isEmpty())
+      nbt.putLongArray(CHANGES_KEY, changes.toLongArray());
+  }
+
+  /**
+   * Restore the pending sections of a chunk from its serialized data.
+   *
+   * @param world The world the chunk is in.
+   * @param chunk The deserialized chunk.
+   * @param nbt   The chunk’s serialized data.
+   */
+  public static void onDeserialize(ServerWorld world, ProtoChunk chunk, NbtCompound nbt) {
+    if (!nbt.contains(PENDING_KEY, NbtElement.LONG_ARRAY_TYPE))
+      return;
+    // Full chunks are wrapped, the flags have to be put in the actual chunk
+    final Chunk target = chunk instanceof WrapperProtoChunk wrapper ? wrapper.getWrappedChunk() : chunk;
+    getPendingSections(target).or(BitSet.valueOf(nbt.getLongArray(PENDING_KEY)));
+    if (nbt.contains(CHANGES_KEY, NbtElement.LONG_ARRAY_TYPE))
+      getPendingChanges(target).addAll(LongArrayList.wrap(nbt.getLongArray(CHANGES_KEY)));
+  }
+
+  private static void tick(ServerWorld world) {
+    final LongSet chunks = pendingChunks.get(world);
+    if (chunks == null || chunks.isEmpty()
+        || !(world.getChunkManager().getChunkGenerator() instanceof InfiniteCityChunkGenerator generator))
+      return;
+    final int viewDistance = world.getServer().getPlayerManager().getViewDistance();
+    final int window = ServerConfig.getGenerationLazySectionsWindow();
+    final LongSet inProgress = generating.computeIfAbsent(world, w -> new LongOpenHashSet());
+    int budget = ServerConfig.getGenerationChunksPerTick();
+
+    for (final ServerPlayerEntity player : world.getPlayers()) {
+      final ChunkPos playerChunk = player.getChunkPos();
+      final int playerY = player.getBlockY();
+      final int bottomY = playerY - window - (player.fallDistance > 0 ? FALL_MARGIN : 0);
+      final int topY = playerY + window;
+      final LongList candidates = new LongArrayList();
+      for (final long pos : chunks)
+        if (!inProgress.contains(pos) && Math.abs(ChunkPos.getPackedX(pos) - playerChunk.x) <= viewDistance
+            && Math.abs(ChunkPos.getPackedZ(pos) - playerChunk.z) <= viewDistance)
+          candidates.add(pos);
+      // Chunks under and around the player first
+      candidates.sort((LongComparator) (pos1, pos2) -> Integer.compare(
+          getSquaredDistance(playerChunk, pos1), getSquaredDistance(playerChunk, pos2)));
+      for (final long pos : candidates) {
+        final WorldChunk chunk = world.getChunkManager().getWorldChunk(ChunkPos.getPackedX(pos), ChunkPos.getPackedZ(pos));
+        if (chunk == null)
+          continue;
+        final BitSet sections = new BitSet();
+        getPendingSections(chunk).stream()
+            .filter(index -> isInRange(chunk.sectionIndexToCoord(index), bottomY, topY))
+            .forEach(sections::set);
+        if (sections.isEmpty())
+          continue;
+        inProgress.add(pos);
+        materializeAsync(world, generator, chunk.getPos(), sections);
+        if (--budget == 0)
+          return;
+      }
+    }
+  }
+
+  private static int getSquaredDistance(ChunkPos center, long pos) {
+    final int dx = ChunkPos.getPackedX(pos) - center.x;
+    final int dz = ChunkPos.getPackedZ(pos) - center.z;
+    return dx * dx + dz * dz;
+  }
+
+  /**
+   * Generate all pending sections of the given chunk in the background, if they are not being generated already.
+   */
+  private static void requestMaterialization(ServerWorld world, WorldChunk chunk) {
+    if (world.getChunkManager().getChunkGenerator() instanceof InfiniteCityChunkGenerator generator
+        && generating.computeIfAbsent(world, w -> new LongOpenHashSet()).add(chunk.getPos().toLong()))
+      materializeAsync(world, generator, chunk.getPos(), (BitSet) getPendingSections(chunk).clone());
+  }
+
+  private static void materializeAsync(ServerWorld world, InfiniteCityChunkGenerator generator, ChunkPos pos, BitSet sections) {
+    CompletableFuture.supplyAsync(() -> generate(world, generator, pos, sections), Util.getMainWorkerExecutor())
+        .whenCompleteAsync((generated, error) -> {
+          removeChunk(generating, world, pos);
+          if (error != null) {
+            InfiniteCity.LOGGER.error("Could not generate pending sections of chunk {}", pos, error);
+            return;
+          }
+          // The chunk may have been unloaded in the meantime
+          final WorldChunk chunk = world.getChunkManager().getWorldChunk(pos.x, pos.z);
+          if (chunk != null)
+            materialize(world, chunk, generated, sections);
+        }, world.getServer());
+  }
+
+  /**
+   * Generate the given sections of a chunk into a scratch chunk.
+   * All other sections of the scratch chunk are pending, so that the generator skips them.
+   */
+  private static ProtoChunk generate(ServerWorld world, InfiniteCityChunkGenerator generator, ChunkPos pos, BitSet sections) {
+    final ProtoChunk generated = new ProtoChunk(pos, UpgradeData.NO_UPGRADE_DATA, world,
+        world.getRegistryManager().get(RegistryKeys.BIOME), null);
+    final BitSet skipped = getPendingSections(generated);
+    skipped.set(0, generated.countVerticalSections());
+    skipped.andNot(sections);
+    generator.generateBlocks(generated, world.getSeed());
+    return generated;
+  }
+
+  /**
+   * Replace the given pending sections of a chunk by those of a generated chunk.
+   * The blocks that were changed in these sections are kept.
+   */
+  private static void materialize(ServerWorld world, WorldChunk chunk, ProtoChunk generated, BitSet sections) {
+    final BitSet pending = getPendingSections(chunk);
+    // Some sections may have been generated since the task was started
+    sections.and(pending);
+    if (sections.isEmpty())
+      return;
+    final ChunkSection[] chunkSections = chunk.getSectionArray();
+    final ChunkSection[] placeholders = chunkSections.clone();
+    sections.stream().forEach(index -> chunkSections[index] =
+        new ChunkSection(generated.getSection(index).getBlockStateContainer(), chunkSections[index].getBiomeContainer()));
+    keepChangedBlocks(chunk, sections, placeholders);
+    pending.andNot(sections);
+    if (pending.isEmpty())
+      removeChunk(pendingChunks, world, chunk.getPos());
+    else if (!getPendingChanges(chunk).isEmpty())
+      // Blocks were changed in sections that were not requested when the task was started
+      requestMaterialization(world, chunk);
+    materializedSectionsCount += sections.cardinality();
+
+    Heightmap.populateHeightmaps(chunk, chunk.getStatus().getHeightmapTypes());
+    relight(world, chunk, sections);
+    chunk.setNeedsSaving(true);
+    final ChunkDataS2CPacket packet = new ChunkDataS2CPacket(chunk, world.getLightingProvider(), null, null);
+    for (final ServerPlayerEntity player : PlayerLookup.tracking(world, chunk.getPos()))
+      player.networkHandler.sendPacket(packet);
+  }
+
+  /**
+   * Copy the blocks that were changed in the given sections from their placeholder sections into the generated ones.
+   * Block entities were not removed from the chunk, as the changed blocks are kept.
+   */
+  private static void keepChangedBlocks(WorldChunk chunk, BitSet sections, ChunkSection[] placeholders) {
+    final LongSet changes = getPendingChanges(chunk);
+    final BlockPos.Mutable mutable = new BlockPos.Mutable();
+    for (final LongIterator iterator = changes.iterator(); iterator.hasNext(); ) {
+      mutable.set(iterator.nextLong());
+      final int index = chunk.getSectionIndex(mutable.getY());
+      if (!sections.get(index))
+        continue;
+      final int x = mutable.getX() & 15;
+      final int y = mutable.getY() & 15;
+      final int z = mutable.getZ() & 15;
+      chunk.getSection(index).setBlockState(x, y, z, placeholders[index].getBlockState(x, y, z), false);
+      iterator.remove();
+    }
+  }
+
+  /**
+   * Update the light of the given sections of a chunk.
+   * <p>
+   * These sections were filled with the opaque placeholder, so no light went through them. Checking the blocks
+   * on their 6 faces makes the light engine propagate light from their neighbors into them.
+   */
+  private static void relight(ServerWorld world, WorldChunk chunk, BitSet sections) {
+    final LightingProvider lightingProvider = world.getLightingProvider();
+    final ChunkPos pos = chunk.getPos();
+    chunk.refreshSurfaceY();
+    sections.stream().forEach(index -> {
+      final int sectionY = chunk.sectionIndexToCoord(index);
+      lightingProvider.setSectionStatus(ChunkSectionPos.from(pos, sectionY), chunk.getSection(index).isEmpty());
+      final int x0 = pos.getStartX();
+      final int y0 = ChunkSectionPos.getBlockCoord(sectionY);
+      final int z0 = pos.getStartZ();
+      for (int u = 0; u < 16; u++) {
+        for (int v = 0; v < 16; v++) {
+          lightingProvider.checkBlock(new BlockPos(x0 + u, y0, z0 + v));
+          lightingProvider.checkBlock(new BlockPos(x0 + u, y0 + 15, z0 + v));
+          lightingProvider.checkBlock(new BlockPos(x0, y0 + u, z0 + v));
+          lightingProvider.checkBlock(new BlockPos(x0 + 15, y0 + u, z0 + v));
+          lightingProvider.checkBlock(new BlockPos(x0 + u, y0 + v, z0));
+          lightingProvider.checkBlock(new BlockPos(x0 + u, y0 + v, z0 + 15));
+        }
+      }
+    });
+  }
+
+  /**
+   * Indicate whether a section overlaps the given Y range.
+   */
+  private static boolean isInRange(int sectionY, int bottomY, int topY) {
+    final int sectionBottomY = ChunkSectionPos.getBlockCoord(sectionY);
+    return sectionBottomY + 15 >= bottomY && sectionBottomY <= topY;
+  }
+
+  private static void removeChunk(Map<ServerWorld, LongSet> chunks, ServerWorld world, ChunkPos pos) {
+    final LongSet worldChunks = chunks.get(world);
+    if (worldChunks != null)
+      worldChunks.remove(pos.toLong());
+  }
+
+  private static BitSet getPendingSections(Chunk chunk) {
+    return ((PendingSectionsHolder) chunk).infinitecity$getPendingSections();
+  }
+
+  private static LongSet getPendingChanges(Chunk chunk) {
+    return ((PendingSectionsHolder) chunk).infinitecity$getPendingChanges();
+  }
+
+  /**
+   * Statistics of lazy sections.
+   *
+   * @param deferredSections     Number of sections whose generation was deferred.
+   * @param materializedSections Number of deferred sections that were generated afterwards.
+   */
+  public record Stats(long deferredSections, long materializedSections) {
+  }
+
+  private LazySections() {
+  }
+}
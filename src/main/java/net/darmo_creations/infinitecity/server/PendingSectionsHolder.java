@@ -0,0 +1,22 @@
+package net.darmo_creations.infinitecity.server;
+
+import it.unimi.dsi.fastutil.longs.*;
+
+import java.util.*;
+
+/**
+ * Implemented by chunks to keep track of the sections whose generation was deferred by {@link LazySections}.
+ */
+public interface PendingSectionsHolder {
+  /**
+   * Return the indices of the sections that were not generated yet.
+   * The returned set is mutable and backs this chunk’s data.
+   */
+  BitSet infinitecity$getPendingSections();
+
+  /**
+   * Return the packed positions of the blocks that were changed in pending sections.
+   * The returned set is mutable and backs this chunk’s data.
+   */
+  LongSet infinitecity$getPendingChanges();
+}
@@ -0,0 +1,155 @@
+package net.darmo_creations.infinitecity.server;
+
+import net.darmo_creations.infinitecity.chunk_gen.*;
+import net.fabricmc.fabric.api.entity.event.v1.*;
+import net.fabricmc.fabric.api.event.lifecycle.v1.*;
+import net.kyrptonaught.customportalapi.*;
+import net.kyrptonaught.customportalapi.util.*;
+import net.minecraft.server.*;
+import net.minecraft.server.network.*;
+import net.minecraft.server.world.*;
+import net.minecraft.util.math.*;
+import net.minecraft.world.dimension.*;
+import org.jetbrains.annotations.*;
+
+import java.util.*;
+
+/**
+ * This class loads the destination area of players standing in a portal that leads to a city dimension,
+ * so that the area is generated and lit in the background while the portal’s delay elapses.
+ * <p>
+ * It also measures how long players wait after arriving in a city dimension until the chunks around them are ready.
+ */
+public final class PortalPrewarmer {
+  /**
+   * Radius (in chunks) around an arriving player of the chunks that have to be ready
+   * for the arrival to be considered complete.
+   */
+  private static final int ARRIVAL_RADIUS = 1;
+
+  /**
+   * Destination chunk of each player currently standing in a portal.
+   */
+  private static final Map<UUID, ChunkPos> prewarming = new HashMap<>();
+  /**
+   * Arrival time (in ns) of players whose surroundings are not ready yet.
+   */
+  private static final Map<UUID, Long> arrivals = new HashMap<>();
+  // Statistics
+  private static long prewarmedCount;
+  private static long arrivalsCount;
+  private static long readyOnArrivalCount;
+  private static long waitsCount;
+  private static long totalWaitNanos;
+  private static long maxWaitNanos;
+
+  /**
+   * Register the server events needed to prewarm portal destinations.
+   */
+  public static void init() {
+    ServerTickEvents.END_SERVER_TICK.register(PortalPrewarmer::tick);
+    ServerEntityWorldChangeEvents.AFTER_PLAYER_CHANGE_WORLD.register(PortalPrewarmer::onPlayerChangeWorld);
+    ServerLifecycleEvents.SERVER_STOPPING.register(server -> {
+      prewarming.clear();
+      arrivals.clear();
+    });
+  }
+
+  /**
+   * Return a snapshot of the prewarmer’s statistics.
+   */
+  public static Stats getStats() {
+    return new Stats(prewarmedCount, arrivalsCount, readyOnArrivalCount,
+        waitsCount == 0 ? 0 : totalWaitNanos / waitsCount / 1_000_000.0, maxWaitNanos / 1_000_000.0);
+  }
+
+  private static void tick(MinecraftServer server) {
+    final Set<UUID> inPortal = new HashSet<>();
+    for (final ServerPlayerEntity player : server.getPlayerManager().getPlayerList()) {
+      final ServerWorld destination = getPortalDestination(server, player);
+      if (destination == null)
+        continue;
+      inPortal.add(player.getUuid());
+      final double scale = DimensionType.getCoordinateScaleFactor(player.getServerWorld().getDimension(), destination.getDimension());
+      final ChunkPos chunkPos = new ChunkPos(BlockPos.ofFloored(player.getX() * scale, 0, player.getZ() * scale));
+      // Re-adding the ticket every tick keeps it from expiring while the player stays in the portal
+      ChunkTickets.request(destination, ChunkTickets.PORTAL_PREWARM, chunkPos, ServerConfig.getPortalPrewarmRadius());
+      if (!chunkPos.equals(prewarming.put(player.getUuid(), chunkPos)))
+        prewarmedCount++;
+    }
+    prewarming.keySet().retainAll(inPortal);
+
+    final long now = System.nanoTime();
+    arrivals.entrySet().removeIf(entry -> {
+      final ServerPlayerEntity player = server.getPlayerManager().getPlayer(entry.getKey());
+      if (player == null)
+        return true;
+      if (!isAreaReady(player.getServerWorld(), player.getChunkPos()))
+        return false;
+      recordWait(now - entry.getValue());
+      return true;
+    });
+  }
+
+  private static void onPlayerChangeWorld(ServerPlayerEntity player, ServerWorld origin, ServerWorld destination) {
+    prewarming.remove(player.getUuid());
+    if (!(destination.getChunkManager().getChunkGenerator() instanceof InfiniteCityChunkGenerator))
+      return;
+    arrivalsCount++;
+    if (isAreaReady(destination, player.getChunkPos())) {
+      readyOnArrivalCount++;
+      recordWait(0);
+    } else
+      arrivals.put(player.getUuid(), System.nanoTime());
+  }
+
+  /**
+   * Return the city dimension the portal the given player is standing in leads to.
+   *
+   * @return The destination world or null if the player is not in a portal or the portal does not lead to a city dimension.
+   */
+  @Nullable
+  private static ServerWorld getPortalDestination(MinecraftServer server, ServerPlayerEntity player) {
+    final BlockPos pos = player.getBlockPos();
+    final ServerWorld world = player.getServerWorld();
+    if (!(world.getBlockState(pos).getBlock() instanceof CustomPortalBlock))
+      return null;
+    final PortalLink link = CustomPortalApiRegistry.getPortalLinkFromBase(CustomPortalHelper.getPortalBase(world, pos));
+    if (link == null)
+      return null;
+    for (final ServerWorld destination : server.getWorlds())
+      if (destination != world && destination.getRegistryKey().getValue().equals(link.dimID)
+          && destination.getChunkManager().getChunkGenerator() instanceof InfiniteCityChunkGenerator)
+        return destination;
+    return null;
+  }
+
+  private static boolean isAreaReady(ServerWorld world, ChunkPos center) {
+    for (int dx = -ARRIVAL_RADIUS; dx <= ARRIVAL_RADIUS; dx++)
+      for (int dz = -ARRIVAL_RADIUS; dz <= ARRIVAL_RADIUS; dz++)
+        if (!ChunkTickets.isReady(world, new ChunkPos(center.x + dx, center.z + dz)))
+          return false;
+    return true;
+  }
+
+  private static void recordWait(long nanos) {
+    waitsCount++;
+    totalWaitNanos += nanos;
+    maxWaitNanos = Math.max(maxWaitNanos, nanos);
+  }
+
+  /**
+   * Statistics of the prewarmer.
+   *
+   * @param prewarmed      Number of destination areas that were requested.
+   * @param arrivals       Number of players that arrived in a city dimension.
+   * @param readyOnArrival Number of arrivals whose surroundings were already ready.
+   * @param averageWaitMs  Average time (in ms) players waited after arriving until their surroundings were ready.
+   * @param maxWaitMs      Maximum time (in ms) a player waited after arriving until their surroundings were ready.
+   */
+  public record Stats(long prewarmed, long arrivals, long readyOnArrival, double averageWaitMs, double maxWaitMs) {
+  }
+
+  private PortalPrewarmer() {
+  }
+}
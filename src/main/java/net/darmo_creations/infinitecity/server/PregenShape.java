@@ -0,0 +1,87 @@
+package net.darmo_creations.infinitecity.server;
+
+import net.minecraft.util.*;
+import net.minecraft.util.math.*;
+
+/**
+ * Enumeration of the orders in which the pregenerator walks the chunks of a square area.
+ * Both shapes cover the same {@code (2 × radius + 1)²} chunks.
+ */
+public enum PregenShape implements StringIdentifiable {
+  /**
+   * Row by row, starting from the north-west corner.
+   */
+  SQUARE("square") {
+    @Override
+    public ChunkPos getChunk(ChunkPos center, int radius, int index) {
+      final int side = 2 * radius + 1;
+      return new ChunkPos(center.x - radius + index % side, center.z - radius + index / side);
+    }
+  },
+  /**
+   * Ring by ring, starting from the center.
+   */
+  SPIRAL("spiral") {
+    @Override
+    public ChunkPos getChunk(ChunkPos center, int radius, int index) {
+      final int n = index + 1;
+      final int k = (int) Math.ceil((Math.sqrt(n) - 1) / 2);
+      final int t = 2 * k;
+      int m = (t + 1) * (t + 1);
+      if (n >= m - t)
+        return new ChunkPos(center.x + k - (m - n), center.z - k);
+      m -= t;
+      if (n >= m - t)
+        return new ChunkPos(center.x - k, center.z - k + (m - n));
+      m -= t;
+      if (n >= m - t)
+        return new ChunkPos(center.x - k + (m - n), center.z + k);
+      return new ChunkPos(center.x + k, center.z + k - (m - n - t));
+    }
+  };
+
+  private final String name;
+
+  PregenShape(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Return the number of chunks covered by a shape of the given radius.
+   *
+   * @param radius The radius (in chunks).
+   * @return The number of chunks.
+   */
+  public static int getChunksCount(int radius) {
+    final int side = 2 * radius + 1;
+    return side * side;
+  }
+
+  /**
+   * Return the position of the chunk at the given index.
+   *
+   * @param center The center of the area.
+   * @param radius The radius of the area (in chunks).
+   * @param index  The chunk’s index, between 0 and {@link #getChunksCount(int)} (exclusive).
+   * @return The chunk’s position.
+   */
+  public abstract ChunkPos getChunk(ChunkPos center, int radius, int index);
+
+  @Override
+  public String asString() {
+    return this.name;
+  }
+
+  /**
+   * Return the shape with the given name.
+   *
+   * @param name The name.
+   * @return The shape, or null if there is none with this name.
+   */
+  public static PregenShape byName(String name) {
+    for (final PregenShape shape : values())
+      if (shape.name.equals(name))
+        return shape;
+    return null;
+  }
+}
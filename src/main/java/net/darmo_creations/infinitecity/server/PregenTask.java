@@ -0,0 +1,159 @@
+package net.darmo_creations.infinitecity.server;
+
+import net.minecraft.registry.*;
+import net.minecraft.util.*;
+import net.minecraft.util.math.*;
+import net.minecraft.world.*;
+
+import java.util.*;
+
+/**
+ * This class holds the parameters and progress of a pregeneration task.
+ * <p>
+ * Tasks can be saved to and restored from {@link Properties} so that they can be resumed after a restart.
+ */
+public class PregenTask {
+  private final RegistryKey<World> dimension;
+  private final ChunkPos center;
+  private final int radius;
+  private final PregenShape shape;
+  private final int maxInFlight;
+  private final double targetMspt;
+  private final int chunksCount;
+  private int nextIndex;
+  private int doneCount;
+
+  /**
+   * Create a pregeneration task.
+   *
+   * @param dimension   The dimension to generate chunks in.
+   * @param center      The center of the area.
+   * @param radius      The radius of the area (in chunks).
+   * @param shape       The order in which to walk the chunks.
+   * @param maxInFlight The maximum number of chunks that may be generating at the same time.
+   * @param targetMspt  The average tick duration (in ms) above which no new chunks are requested.
+   * @param startIndex  The index of the first chunk to generate.
+   */
+  public PregenTask(RegistryKey<World> dimension, ChunkPos center, int radius, PregenShape shape, int maxInFlight, double targetMspt, int startIndex) {
+    this.dimension = dimension;
+    this.center = center;
+    this.radius = radius;
+    this.shape = shape;
+    this.maxInFlight = maxInFlight;
+    this.targetMspt = targetMspt;
+    this.chunksCount = PregenShape.getChunksCount(radius);
+    this.nextIndex = startIndex;
+    this.doneCount = startIndex;
+  }
+
+  public RegistryKey<World> dimension() {
+    return this.dimension;
+  }
+
+  public ChunkPos center() {
+    return this.center;
+  }
+
+  public int radius() {
+    return this.radius;
+  }
+
+  public int maxInFlight() {
+    return this.maxInFlight;
+  }
+
+  public double targetMspt() {
+    return this.targetMspt;
+  }
+
+  public int chunksCount() {
+    return this.chunksCount;
+  }
+
+  public int doneCount() {
+    return this.doneCount;
+  }
+
+  /**
+   * The index of the next chunk to request.
+   */
+  public int nextIndex() {
+    return this.nextIndex;
+  }
+
+  /**
+   * Indicate whether there are chunks left to request.
+   */
+  public boolean hasNext() {
+    return this.nextIndex < this.chunksCount;
+  }
+
+  /**
+   * Return the position of the next chunk to request and move to the following one.
+   */
+  public ChunkPos next() {
+    return this.shape.getChunk(this.center, this.radius, this.nextIndex++);
+  }
+
+  /**
+   * Notify this task that a chunk has been generated.
+   */
+  public void chunkDone() {
+    this.doneCount++;
+  }
+
+  /**
+   * Serialize this task.
+   *
+   * @param resumeIndex The index to resume from when the task is restored.
+   * @return The serialized task.
+   */
+  public Properties toProperties(int resumeIndex) {
+    final Properties properties = new Properties();
+    properties.setProperty("dimension", this.dimension.getValue().toString());
+    properties.setProperty("center_x", String.valueOf(this.center.x));
+    properties.setProperty("center_z", String.valueOf(this.center.z));
+    properties.setProperty("radius", String.valueOf(this.radius));
+    properties.setProperty("shape", this.shape.asString());
+    properties.setProperty("max_in_flight", String.valueOf(this.maxInFlight));
+    properties.setProperty("target_mspt", String.valueOf(this.targetMspt));
+    properties.setProperty("resume_index", String.valueOf(resumeIndex));
+    return properties;
+  }
+
+  /**
+   * Deserialize a task.
+   *
+   * @param properties The serialized task.
+   * @return The task.
+   * @throws IllegalArgumentException If a property is missing or invalid.
+   */
+  public static PregenTask fromProperties(Properties properties) {
+    final PregenShape shape = PregenShape.byName(getProperty(properties, "shape"));
+    if (shape == null)
+      throw new IllegalArgumentException("invalid shape");
+    try {
+      return new PregenTask(
+          RegistryKey.of(RegistryKeys.WORLD, new Identifier(getProperty(properties, "dimension"))),
+          new ChunkPos(
+              Integer.parseInt(getProperty(properties, "center_x")),
+              Integer.parseInt(getProperty(properties, "center_z"))
+          ),
+          Integer.parseInt(getProperty(properties, "radius")),
+          shape,
+          Integer.parseInt(getProperty(properties, "max_in_flight")),
+          Double.parseDouble(getProperty(properties, "target_mspt")),
+          Integer.parseInt(getProperty(properties, "resume_index"))
+      );
+    } catch (InvalidIdentifierException e) {
+      throw new IllegalArgumentException(e);
+    }
+  }
+
+  private static String getProperty(Properties properties, String key) {
+    final String value = properties.getProperty(key);
+    if (value == null)
+      throw new IllegalArgumentException("missing property " + key);
+    return value;
+  }
+}
@@ -0,0 +1,196 @@
+package net.darmo_creations.infinitecity.server;
+
+import com.google.common.collect.*;
+import net.darmo_creations.infinitecity.*;
+import net.darmo_creations.infinitecity.chunk_gen.*;
+import net.minecraft.nbt.*;
+import net.minecraft.registry.*;
+import net.minecraft.server.world.*;
+import net.minecraft.util.math.*;
+import net.minecraft.world.biome.*;
+import net.minecraft.world.chunk.*;
+
+import java.util.*;
+
+/**
+ * This class removes the sections of city chunks that were not modified since they were generated
+ * from the data written to region files, and regenerates them when the chunks are loaded.
+ * <p>
+ * Removed sections are flagged in the chunk’s data, which is also stamped with
+ * {@link InfiniteCityChunkGenerator#getContentStamp()}. Block and sky light are kept as-is as they cannot be regenerated cheaply.
+ * Chunks whose sections were generated with a different stamp than the current one, e.g. before a data pack reload,
+ * are stored whole. When a chunk is loaded with a different stamp, removed sections can only be regenerated
+ * with the current settings. All sections of such chunks are then considered modified, so that they are stored whole
+ * from then on and keep their content whatever the settings they are loaded with later.
+ * <p>
+ * Chunks are only stripped when {@link ServerConfig#shouldStorageRegenerateUnmodifiedSections()} is enabled,
+ * but stripped chunks are always regenerated, so that disabling the option does not corrupt existing worlds.
+ * All sections of chunks that were saved without a version stamp are considered modified.
+ * <p>
+ * As chunks are deserialized on the server thread, removed sections are regenerated beforehand on a worker thread
+ * by {@link #prepareRegeneration(ServerWorld, ChunkPos, NbtCompound)}, and only installed during deserialization.
+ */
+public final class RegeneratingChunkStorage {
+  /**
+   * Key of the stamp of the generator that built the removed sections.
+   * It used to hold only the generator’s version, which is read as a stamp that never matches.
+   */
+  private static final String STAMP_KEY = InfiniteCity.MOD_ID + ":generator_version";
+  private static final String REGENERATE_KEY = InfiniteCity.MOD_ID + ":regenerate";
+
+  /**
+   * Chunks regenerated on worker threads, keyed by the identity of the data they were regenerated from.
+   * Keys are weak so that chunks whose data is eventually discarded without being deserialized do not leak.
+   */
+  private static final Map<NbtCompound, ProtoChunk> regeneratedChunks = new MapMaker().weakKeys().makeMap();
+
+  private static boolean stampMismatchLogged;
+  // Statistics
+  private static long strippedSectionsCount;
+  private static long regeneratedChunksCount;
+  private static long mismatchedChunksCount;
+
+  /**
+   * Return a snapshot of the storage’s statistics.
+   */
+  public static Stats getStats() {
+    return new Stats(strippedSectionsCount, regeneratedChunksCount, mismatchedChunksCount);
+  }
+
+  /**
+   * Remove the unmodified sections from the serialized data of a chunk.
+   *
+   * @param world The world the chunk is in.
+   * @param chunk The chunk that was serialized.
+   * @param nbt   The chunk’s serialized data.
+   */
+  public static void onSerialize(ServerWorld world, Chunk chunk, NbtCompound nbt) {
+    if (!ServerConfig.shouldStorageRegenerateUnmodifiedSections()
+        || !(world.getChunkManager().getChunkGenerator() instanceof InfiniteCityChunkGenerator generator)
+        // Chunks that are still being generated do not have their final content yet
+        || !chunk.getStatus().isAtLeast(ChunkStatus.FULL))
+      return;
+    final SectionModificationTracker tracker = (SectionModificationTracker) chunk;
+    final long stamp = generator.getContentStamp();
+    // Sections would not be regenerated as they were generated
+    if (tracker.infinitecity$getContentStamp() != stamp)
+      return;
+    nbt.putLong(STAMP_KEY, stamp);
+    final NbtList sections = nbt.getList("sections", NbtElement.COMPOUND_TYPE);
+    for (int i = 0; i < sections.size(); i++) {
+      final NbtCompound section = sections.getCompound(i);
+      final int index = world.sectionCoordToIndex(section.getByte("Y"));
+      // Pending sections are empty and will be generated anyway
+      if (!section.contains("block_states", NbtElement.COMPOUND_TYPE) || tracker.infinitecity$isSectionModified(index)
+          || LazySections.isPending(chunk, index))
+        continue;
+      section.remove("block_states");
+      section.remove("biomes");
+      section.putBoolean(REGENERATE_KEY, true);
+      strippedSectionsCount++;
+    }
+  }
+
+  /**
+   * Regenerate the sections that were removed from the serialized data of a chunk before it is deserialized.
+   * Called on a worker thread, the generated sections are installed by {@link #onDeserialize(ServerWorld, ProtoChunk, NbtCompound)}.
+   *
+   * @param world The world the chunk is in.
+   * @param pos   The chunk’s position.
+   * @param nbt   The chunk’s serialized data.
+   */
+  public static void prepareRegeneration(ServerWorld world, ChunkPos pos, NbtCompound nbt) {
+    if (!(world.getChunkManager().getChunkGenerator() instanceof InfiniteCityChunkGenerator generator)
+        || !nbt.contains(STAMP_KEY, NbtElement.NUMBER_TYPE) || !hasRemovedSections(nbt))
+      return;
+    regeneratedChunks.put(nbt, generate(world, generator, pos));
+  }
+
+  /**
+   * Install the sections that were removed from the serialized data of a chunk.
+   *
+   * @param world The world the chunk is in.
+   * @param chunk The deserialized chunk.
+   * @param nbt   The chunk’s serialized data.
+   */
+  public static void onDeserialize(ServerWorld world, ProtoChunk chunk, NbtCompound nbt) {
+    final ProtoChunk prepared = regeneratedChunks.remove(nbt);
+    if (!(world.getChunkManager().getChunkGenerator() instanceof InfiniteCityChunkGenerator generator))
+      return;
+    // Full chunks are wrapped, sections have to be put in the actual chunk
+    final Chunk target = chunk instanceof WrapperProtoChunk wrapper ? wrapper.getWrappedChunk() : chunk;
+    final SectionModificationTracker tracker = (SectionModificationTracker) target;
+    if (!nbt.contains(STAMP_KEY, NbtElement.NUMBER_TYPE)) {
+      tracker.infinitecity$markAllSectionsModified();
+      return;
+    }
+    final long stamp = generator.getContentStamp();
+    final boolean stampMatches = nbt.getLong(STAMP_KEY) == stamp;
+    // Unmodified sections are either regenerated now or were generated with the same stamp
+    tracker.infinitecity$setContentStamp(stamp);
+
+    final ChunkSection[] targetSections = target.getSectionArray();
+    final var biomes = generator.getFixedBiomeContainer(world.getRegistryManager().get(RegistryKeys.BIOME));
+    ProtoChunk generated = prepared;
+    boolean regenerated = false;
+    final NbtList sections = nbt.getList("sections", NbtElement.COMPOUND_TYPE);
+    for (int i = 0; i < sections.size(); i++) {
+      final NbtCompound section = sections.getCompound(i);
+      final int index = world.sectionCoordToIndex(section.getByte("Y"));
+      if (index < 0 || index >= targetSections.length)
+        continue;
+      // Stored sections are kept, even if they are unmodified, as they may not be regenerated identically
+      if (!section.getBoolean(REGENERATE_KEY)) {
+        if (!LazySections.isPending(target, index))
+          tracker.infinitecity$markSectionModified(index);
+        continue;
+      }
+      // Chunks deserialized outside of the chunk loading pipeline were not regenerated beforehand
+      if (generated == null)
+        generated = generate(world, generator, chunk.getPos());
+      targetSections[index] = new ChunkSection(generated.getSection(index).getBlockStateContainer(), biomes);
+      regenerated = true;
+    }
+    if (!regenerated)
+      return;
+    regeneratedChunksCount++;
+    if (stampMatches)
+      return;
+    // Keep the sections regenerated with the current settings from now on instead of regenerating them every time
+    tracker.infinitecity$markAllSectionsModified();
+    mismatchedChunksCount++;
+    if (!stampMismatchLogged) {
+      InfiniteCity.LOGGER.warn("Chunks saved with a different generator version, chunk portions or layers are regenerated "
+          + "with the current ones, their unmodified sections may change and will be saved whole from now on");
+      stampMismatchLogged = true;
+    }
+  }
+
+  private static boolean hasRemovedSections(NbtCompound nbt) {
+    final NbtList sections = nbt.getList("sections", NbtElement.COMPOUND_TYPE);
+    for (int i = 0; i < sections.size(); i++)
+      if (sections.getCompound(i).getBoolean(REGENERATE_KEY))
+        return true;
+    return false;
+  }
+
+  private static ProtoChunk generate(ServerWorld world, InfiniteCityChunkGenerator generator, ChunkPos pos) {
+    final Registry<Biome> biomeRegistry = world.getRegistryManager().get(RegistryKeys.BIOME);
+    final ProtoChunk generated = new ProtoChunk(pos, UpgradeData.NO_UPGRADE_DATA, world, biomeRegistry, null);
+    generator.generateBlocks(generated, world.getSeed());
+    return generated;
+  }
+
+  /**
+   * Statistics of the storage.
+   *
+   * @param strippedSections  Number of sections that were left out of saved chunks.
+   * @param regeneratedChunks Number of loaded chunks whose sections were regenerated.
+   * @param mismatchedChunks  Number of regenerated chunks that were saved with a different stamp.
+   */
+  public record Stats(long strippedSections, long regeneratedChunks, long mismatchedChunks) {
+  }
+
+  private RegeneratingChunkStorage() {
+  }
+}
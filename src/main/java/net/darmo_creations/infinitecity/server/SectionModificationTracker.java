@@ -0,0 +1,40 @@
+package net.darmo_creations.infinitecity.server;
+
+import net.darmo_creations.infinitecity.chunk_gen.*;
+
+/**
+ * Implemented by chunks to keep track of the sections that were modified since they were generated.
+ */
+public interface SectionModificationTracker {
+  /**
+   * Mark the section at the given index as modified.
+   *
+   * @param index The section’s index in the chunk.
+   */
+  void infinitecity$markSectionModified(int index);
+
+  /**
+   * Mark all sections as modified.
+   */
+  void infinitecity$markAllSectionsModified();
+
+  /**
+   * Indicate whether the section at the given index was modified.
+   *
+   * @param index The section’s index in the chunk.
+   * @return True if the section was modified since it was generated, false otherwise.
+   */
+  boolean infinitecity$isSectionModified(int index);
+
+  /**
+   * Set the stamp of the generator that built the unmodified sections (see {@link InfiniteCityChunkGenerator#getContentStamp()}).
+   *
+   * @param stamp The stamp.
+   */
+  void infinitecity$setContentStamp(long stamp);
+
+  /**
+   * Return the stamp of the generator that built the unmodified sections, 0 if it is unknown.
+   */
+  long infinitecity$getContentStamp();
+}
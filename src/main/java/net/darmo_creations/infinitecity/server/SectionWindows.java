@@ -0,0 +1,292 @@
+package net.darmo_creations.infinitecity.server;
+
+import it.unimi.dsi.fastutil.objects.*;
+import net.darmo_creations.infinitecity.*;
+import net.darmo_creations.infinitecity.chunk_gen.*;
+import net.darmo_creations.infinitecity.mixins.*;
+import net.fabricmc.fabric.api.entity.event.v1.*;
+import net.fabricmc.fabric.api.event.lifecycle.v1.*;
+import net.fabricmc.fabric.api.networking.v1.*;
+import net.minecraft.block.*;
+import net.minecraft.network.*;
+import net.minecraft.network.packet.*;
+import net.minecraft.network.packet.s2c.play.*;
+import net.minecraft.server.network.*;
+import net.minecraft.server.world.*;
+import net.minecraft.util.*;
+import net.minecraft.util.math.*;
+import net.minecraft.world.chunk.*;
+
+/**
+ * This class limits the sections of city chunks sent to players to those within a vertical window around them.
+ * <p>
+ * When {@link ServerConfig#shouldNetworkUseSectionWindow()} is enabled, the sections of a city chunk that are
+ * too far above or below the center of a player’s window are sent as empty sections, keeping only their biomes.
+ * Light is sent for all sections. When the player has moved vertically by more than a quarter of
+ * {@link ServerConfig#getNetworkSectionWindow()}, or of the server’s view distance if it is larger,
+ * the window is centered on them again and the sections that entered it are sent in a {@link #PACKET_ID} packet
+ * for all chunks around them. The window extends past that distance by the distance moved before it is centered
+ * again, so the player always sees at least that distance above and below them.
+ * <p>
+ * Block and block entity updates in sections outside of a player’s window are not sent to them,
+ * as the sections are sent with their current content once they enter the window.
+ * <p>
+ * All chunks sent to a player use the same window, so the sections a client has received are always known
+ * from the window’s center. Players whose client does not have this mod always receive complete chunks.
+ */
+public final class SectionWindows {
+  /**
+   * ID of the packet that holds the sections of a chunk that entered a player’s window:
+   * the chunk’s position, the number of sections, then each section’s index followed by its data
+   * in the same format as in chunk data packets.
+   */
+  public static final Identifier PACKET_ID = new Identifier(InfiniteCity.MOD_ID, "chunk_sections");
+  /**
+   * Number of ticks between two checks of the players’ positions.
+   */
+  private static final int UPDATE_INTERVAL = 5;
+  /**
+   * Vertical distance a player can move between two checks of their position, from falling entities’
+   * terminal velocity of about 4 blocks per tick.
+   */
+  private static final int MAX_MOVE = UPDATE_INTERVAL * 4;
+  /**
+   * Value of {@link #sendingCenter} when chunks are not being sent to a player with a window.
+   */
+  private static final int NO_WINDOW = Integer.MIN_VALUE;
+
+  /**
+   * Y position of the center of the window of each player.
+   */
+  private static final Object2IntMap<ServerPlayerEntity> windowCenters = new Object2IntOpenHashMap<>();
+  /**
+   * The empty block states container sent in place of sections outside of windows.
+   */
+  private static final PalettedContainer<BlockState> EMPTY_BLOCK_STATES =
+      new PalettedContainer<>(Block.STATE_IDS, Blocks.AIR.getDefaultState(), PalettedContainer.PaletteProvider.BLOCK_STATE);
+  /**
+   * Center of the window of the chunk currently being sent, only set on the server thread while it is sent.
+   */
+  private static int sendingCenter = NO_WINDOW;
+  /**
+   * Size of the window of the chunk currently being sent.
+   */
+  private static int sendingWindow;
+  // Statistics
+  private static long withheldSectionsCount;
+  private static long sentSectionsCount;
+
+  static {
+    windowCenters.defaultReturnValue(NO_WINDOW);
+  }
+
+  /**
+   * Register the server events that update the players’ windows.
+   */
+  public static void init() {
+    ServerTickEvents.END_WORLD_TICK.register(SectionWindows::tick);
+    ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> windowCenters.removeInt(handler.getPlayer()));
+    ServerPlayerEvents.AFTER_RESPAWN.register((oldPlayer, newPlayer, alive) -> windowCenters.removeInt(oldPlayer));
+    // All chunks are sent again in the new world
+    ServerEntityWorldChangeEvents.AFTER_PLAYER_CHANGE_WORLD.register((player, origin, destination) -> windowCenters.removeInt(player));
+    ServerLifecycleEvents.SERVER_STOPPED.register(server -> windowCenters.clear());
+  }
+
+  /**
+   * Return a snapshot of the statistics of section windows.
+   */
+  public static Stats getStats() {
+    return new Stats(withheldSectionsCount, sentSectionsCount);
+  }
+
+  /**
+   * Called before a chunk is sent to a player. The following chunk data is restricted to the player’s window
+   * until {@link #endSending()} is called.
+   *
+   * @param player The player the chunk is sent to.
+   * @param world  The world the chunk is in.
+   */
+  public static void beginSending(ServerPlayerEntity player, ServerWorld world) {
+    if (!ServerConfig.shouldNetworkUseSectionWindow()
+        || !(world.getChunkManager().getChunkGenerator() instanceof InfiniteCityChunkGenerator)
+        || !ServerPlayNetworking.canSend(player, PACKET_ID))
+      return;
+    int center = windowCenters.getInt(player);
+    if (center == NO_WINDOW) {
+      center = player.getBlockY();
+      windowCenters.put(player, center);
+    }
+    sendingCenter = center;
+    sendingWindow = getWindow(world);
+  }
+
+  /**
+   * Called after a chunk was sent to a player.
+   */
+  public static void endSending() {
+    sendingCenter = NO_WINDOW;
+  }
+
+  /**
+   * Return the size of the sections data of the given chunk when restricted to the window of the player it is sent to.
+   *
+   * @param chunk The chunk being sent.
+   * @return The size in bytes or -1 if the chunk is not being sent to a player with a window.
+   */
+  public static int getSectionsPacketSize(WorldChunk chunk) {
+    if (sendingCenter == NO_WINDOW)
+      return -1;
+    final ChunkSection[] sections = chunk.getSectionArray();
+    int size = 0;
+    for (int index = 0; index < sections.length; index++) {
+      final ChunkSection section = sections[index];
+      if (isInWindow(chunk.sectionIndexToCoord(index), sendingCenter, sendingWindow) || section.isEmpty())
+        size += section.getPacketSize();
+      else
+        size += 2 + EMPTY_BLOCK_STATES.getPacketSize() + section.getBiomeContainer().getPacketSize();
+    }
+    return size;
+  }
+
+  /**
+   * Write the sections data of the given chunk restricted to the window of the player it is sent to.
+   * Sections outside of the window are written as empty sections with their biomes.
+   *
+   * @param buf   The buffer to write into.
+   * @param chunk The chunk being sent.
+   * @return True if the sections were written, false if the chunk is not being sent to a player with a window.
+   */
+  public static boolean writeSections(PacketByteBuf buf, WorldChunk chunk) {
+    if (sendingCenter == NO_WINDOW)
+      return false;
+    final ChunkSection[] sections = chunk.getSectionArray();
+    for (int index = 0; index < sections.length; index++) {
+      final ChunkSection section = sections[index];
+      if (isInWindow(chunk.sectionIndexToCoord(index), sendingCenter, sendingWindow) || section.isEmpty())
+        section.toPacket(buf);
+      else {
+        buf.writeShort(0); // Non-empty blocks count
+        EMPTY_BLOCK_STATES.writePacket(buf);
+        section.getBiomeContainer().writePacket(buf);
+        withheldSectionsCount++;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Indicate whether the given block or block entity update must not be sent to a player
+   * as it is in a section outside of their window.
+   *
+   * @param player The player the packet would be sent to.
+   * @param packet The packet to send.
+   * @return True if the packet must not be sent to the player, false otherwise.
+   */
+  public static boolean isWithheld(ServerPlayerEntity player, Packet<?> packet) {
+    final int center = windowCenters.getInt(player);
+    if (center == NO_WINDOW)
+      return false;
+    final int sectionY;
+    if (packet instanceof BlockUpdateS2CPacket blockUpdate)
+      sectionY = ChunkSectionPos.getSectionCoord(blockUpdate.getPos().getY());
+    else if (packet instanceof ChunkDeltaUpdateS2CPacket deltaUpdate)
+      sectionY = ((ChunkDeltaUpdateS2CPacketAccessor) deltaUpdate).getSectionPos().getSectionY();
+    else if (packet instanceof BlockEntityUpdateS2CPacket blockEntityUpdate)
+      sectionY = ChunkSectionPos.getSectionCoord(blockEntityUpdate.getPos().getY());
+    else
+      return false;
+    return !isInWindow(sectionY, center, getWindow(player.getServerWorld()));
+  }
+
+  private static void tick(ServerWorld world) {
+    if (!ServerConfig.shouldNetworkUseSectionWindow() || world.getTime() % UPDATE_INTERVAL != 0
+        || !(world.getChunkManager().getChunkGenerator() instanceof InfiniteCityChunkGenerator))
+      return;
+    final int window = getWindow(world);
+    final int recenterDistance = getRecenterDistance(world);
+    final int viewDistance = world.getServer().getPlayerManager().getViewDistance();
+    for (final ServerPlayerEntity player : world.getPlayers()) {
+      final int oldCenter = windowCenters.getInt(player);
+      final int newCenter = player.getBlockY();
+      if (oldCenter == NO_WINDOW || Math.abs(newCenter - oldCenter) <= recenterDistance)
+        continue;
+      windowCenters.put(player, newCenter);
+      final ChunkPos playerChunk = player.getChunkPos();
+      for (int x = playerChunk.x - viewDistance; x <= playerChunk.x + viewDistance; x++) {
+        for (int z = playerChunk.z - viewDistance; z <= playerChunk.z + viewDistance; z++) {
+          final WorldChunk chunk = world.getChunkManager().getWorldChunk(x, z);
+          // Clients ignore sections of chunks they have not received yet, which will be sent with the new window
+          if (chunk != null)
+            sendNewSections(player, chunk, oldCenter, newCenter, window);
+        }
+      }
+    }
+  }
+
+  /**
+   * Send to a player the sections of a chunk that are in its new window but were not in the old one.
+   */
+  private static void sendNewSections(ServerPlayerEntity player, WorldChunk chunk, int oldCenter, int newCenter, int window) {
+    final ChunkSection[] sections = chunk.getSectionArray();
+    final PacketByteBuf buf = PacketByteBufs.create();
+    buf.writeChunkPos(chunk.getPos());
+    final int countIndex = buf.writerIndex();
+    buf.writeShort(0); // Placeholder for the count
+    int count = 0;
+    for (int index = 0; index < sections.length; index++) {
+      final ChunkSection section = sections[index];
+      final int sectionY = chunk.sectionIndexToCoord(index);
+      if (section.isEmpty() || !isInWindow(sectionY, newCenter, window) || isInWindow(sectionY, oldCenter, window))
+        continue;
+      buf.writeShort(index);
+      section.toPacket(buf);
+      count++;
+    }
+    if (count == 0)
+      return;
+    buf.setShort(countIndex, count);
+    sentSectionsCount += count;
+    ServerPlayNetworking.send(player, PACKET_ID, buf);
+  }
+
+  /**
+   * Return the size of the windows in the given world. A player that moved vertically by up to
+   * {@link #getRecenterDistance(ServerWorld)}, plus the distance moved until the next check, still has the whole
+   * visible distance of the world within their window.
+   */
+  private static int getWindow(ServerWorld world) {
+    return getVisibleDistance(world) + getRecenterDistance(world) + MAX_MOVE;
+  }
+
+  /**
+   * Return the vertical distance a player must move by for their window to be centered on them again.
+   */
+  private static int getRecenterDistance(ServerWorld world) {
+    return getVisibleDistance(world) / 4;
+  }
+
+  /**
+   * Return the distance above and below players that must always be in their window,
+   * which is never smaller than the server’s view distance.
+   */
+  private static int getVisibleDistance(ServerWorld world) {
+    return Math.max(ServerConfig.getNetworkSectionWindow(), world.getServer().getPlayerManager().getViewDistance() * 16);
+  }
+
+  private static boolean isInWindow(int sectionY, int centerY, int window) {
+    final int bottomY = ChunkSectionPos.getBlockCoord(sectionY);
+    return bottomY + 15 >= centerY - window && bottomY <= centerY + window;
+  }
+
+  /**
+   * Statistics of section windows.
+   *
+   * @param withheldSections Number of non-empty sections sent as empty sections as they were outside of a window.
+   * @param sentSections     Number of sections sent afterwards as they entered a window.
+   */
+  public record Stats(long withheldSections, long sentSections) {
+  }
+
+  private SectionWindows() {
+  }
+}
@@ -0,0 +1,192 @@
+package net.darmo_creations.infinitecity.server;
+
+import net.darmo_creations.infinitecity.*;
+import net.fabricmc.loader.api.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Server-side options of this mod.
+ * <p>
+ * Options are read from the {@code config/infinitecity.properties} file.
+ * Missing options are set to their default value and written back to the file.
+ */
+public final class ServerConfig {
+  private static final String FILE_NAME = InfiniteCity.MOD_ID + ".properties";
+
+  private static int generationChunksPerTick;
+  private static double generationTargetMspt;
+  private static boolean generationLazySections;
+  private static int generationLazySectionsWindow;
+  private static boolean generationUseTemplateStore;
+  private static double prefetchLookaheadSeconds;
+  private static int prefetchMaxChunksPerPlayer;
+  private static int portalPrewarmRadius;
+  private static boolean storageRegenerateUnmodifiedSections;
+  private static boolean networkSectionWindow;
+  private static int networkSectionWindowSize;
+
+  /**
+   * The maximum number of chunks whose generation may start during a single tick
+   * while players are in a city dimension.
+   */
+  public static int getGenerationChunksPerTick() {
+    return generationChunksPerTick;
+  }
+
+  /**
+   * The average tick duration (in ms) above which chunk generation is slowed down
+   * and chunks far from players are deferred.
+   */
+  public static double getGenerationTargetMspt() {
+    return generationTargetMspt;
+  }
+
+  /**
+   * Whether only the sections of city chunks that are vertically close to players should be generated,
+   * the others being generated when players get close to them.
+   */
+  public static boolean shouldGenerateLazySections() {
+    return generationLazySections;
+  }
+
+  /**
+   * The vertical distance (in blocks) from players within which sections are generated
+   * when {@link #shouldGenerateLazySections()} is enabled.
+   */
+  public static int getGenerationLazySectionsWindow() {
+    return generationLazySectionsWindow;
+  }
+
+  /**
+   * Whether the seed-independent parts of city chunks should be stored in a file
+   * and copied into new chunks instead of being generated again.
+   */
+  public static boolean shouldGenerationUseTemplateStore() {
+    return generationUseTemplateStore;
+  }
+
+  /**
+   * How far ahead (in seconds) the chunks on the path of moving players are requested.
+   * 0 disables prefetching.
+   */
+  public static double getPrefetchLookaheadSeconds() {
+    return prefetchLookaheadSeconds;
+  }
+
+  /**
+   * The maximum number of chunks that may be prefetched for a single player at any given time.
+   */
+  public static int getPrefetchMaxChunksPerPlayer() {
+    return prefetchMaxChunksPerPlayer;
+  }
+
+  /**
+   * The radius (in chunks) of the area around a portal’s destination that is loaded
+   * while a player is standing in the portal.
+   */
+  public static int getPortalPrewarmRadius() {
+    return portalPrewarmRadius;
+  }
+
+  /**
+   * Whether the sections of city chunks that were not modified since they were generated
+   * should be left out of region files and regenerated when loaded.
+   */
+  public static boolean shouldStorageRegenerateUnmodifiedSections() {
+    return storageRegenerateUnmodifiedSections;
+  }
+
+  /**
+   * Whether only the sections of city chunks that are vertically close to players should be sent to them,
+   * the others being sent when players get close to them.
+   */
+  public static boolean shouldNetworkUseSectionWindow() {
+    return networkSectionWindow;
+  }
+
+  /**
+   * The vertical distance (in blocks) above and below a player within which sections are always sent
+   * when {@link #shouldNetworkUseSectionWindow()} is enabled. This distance is never smaller than the server’s view distance.
+   */
+  public static int getNetworkSectionWindow() {
+    return networkSectionWindowSize;
+  }
+
+  /**
+   * Load the options from the config file.
+   */
+  public static void load() {
+    final Path path = FabricLoader.getInstance().getConfigDir().resolve(FILE_NAME);
+    final Properties properties = new Properties();
+    if (Files.exists(path)) {
+      try (final var reader = Files.newBufferedReader(path)) {
+        properties.load(reader);
+      } catch (IOException e) {
+        InfiniteCity.LOGGER.error("Could not read config file, using default values", e);
+      }
+    }
+
+    generationChunksPerTick = getInt(properties, "generation.chunks_per_tick", 8, 1);
+    generationTargetMspt = getDouble(properties, "generation.target_mspt", 45, 1);
+    generationLazySections = getBoolean(properties, "generation.lazy_sections", false);
+    generationLazySectionsWindow = getInt(properties, "generation.lazy_sections_window", 192, 16);
+    generationUseTemplateStore = getBoolean(properties, "generation.template_store", true);
+    prefetchLookaheadSeconds = getDouble(properties, "prefetch.lookahead_seconds", 5, 0);
+    prefetchMaxChunksPerPlayer = getInt(properties, "prefetch.max_chunks_per_player", 32, 1);
+    portalPrewarmRadius = getInt(properties, "portal.prewarm_radius", 3, 0);
+    storageRegenerateUnmodifiedSections = getBoolean(properties, "storage.regenerate_unmodified_sections", false);
+    networkSectionWindow = getBoolean(properties, "network.section_window", false);
+    networkSectionWindowSize = getInt(properties, "network.section_window_size", 128, 32);
+
+    try (final var writer = Files.newBufferedWriter(path)) {
+      properties.store(writer, "InfiniteCity server options");
+    } catch (IOException e) {
+      InfiniteCity.LOGGER.error("Could not write config file", e);
+    }
+  }
+
+  private static int getInt(Properties properties, String key, int defaultValue, int min) {
+    try {
+      final int value = Integer.parseInt(properties.getProperty(key, String.valueOf(defaultValue)));
+      if (value >= min) {
+        properties.setProperty(key, String.valueOf(value));
+        return value;
+      }
+    } catch (NumberFormatException ignored) {
+    }
+    InfiniteCity.LOGGER.warn("Invalid value for option {}, using default value {}", key, defaultValue);
+    properties.setProperty(key, String.valueOf(defaultValue));
+    return defaultValue;
+  }
+
+  private static double getDouble(Properties properties, String key, double defaultValue, double min) {
+    try {
+      final double value = Double.parseDouble(properties.getProperty(key, String.valueOf(defaultValue)));
+      if (value >= min) {
+        properties.setProperty(key, String.valueOf(value));
+        return value;
+      }
+    } catch (NumberFormatException ignored) {
+    }
+    InfiniteCity.LOGGER.warn("Invalid value for option {}, using default value {}", key, defaultValue);
+    properties.setProperty(key, String.valueOf(defaultValue));
+    return defaultValue;
+  }
+
+  private static boolean getBoolean(Properties properties, String key, boolean defaultValue) {
+    final String value = properties.getProperty(key, String.valueOf(defaultValue));
+    if (value.equals("true") || value.equals("false")) {
+      properties.setProperty(key, value);
+      return Boolean.parseBoolean(value);
+    }
+    InfiniteCity.LOGGER.warn("Invalid value for option {}, using default value {}", key, defaultValue);
+    properties.setProperty(key, String.valueOf(defaultValue));
+    return defaultValue;
+  }
+
+  private ServerConfig() {
+  }
+}
@@ -0,0 +1,39 @@
+package net.darmo_creations.infinitecity.blocks;
+
+import net.minecraft.util.*;
+import org.junit.jupiter.api.*;
+
+import static net.darmo_creations.infinitecity.blocks.CompositeCorners.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompositeCornersTest {
+  @Test
+  void testRotateClockwise() {
+    assertEquals(bit(NORTH_EAST_TOP), rotate(bit(NORTH_WEST_TOP), BlockRotation.CLOCKWISE_90));
+    assertEquals(bit(SOUTH_EAST_TOP), rotate(bit(NORTH_EAST_TOP), BlockRotation.CLOCKWISE_90));
+    assertEquals(bit(SOUTH_WEST_BOTTOM), rotate(bit(SOUTH_EAST_BOTTOM), BlockRotation.CLOCKWISE_90));
+    assertEquals(bit(NORTH_WEST_BOTTOM), rotate(bit(SOUTH_WEST_BOTTOM), BlockRotation.CLOCKWISE_90));
+  }
+
+  @Test
+  void testRotationsCompose() {
+    for (int mask = 0; mask <= FULL_MASK; mask++) {
+      final int cw = rotate(mask, BlockRotation.CLOCKWISE_90);
+      assertEquals(mask, rotate(mask, BlockRotation.NONE));
+      assertEquals(mask, rotate(cw, BlockRotation.COUNTERCLOCKWISE_90));
+      assertEquals(rotate(mask, BlockRotation.CLOCKWISE_180), rotate(cw, BlockRotation.CLOCKWISE_90));
+      assertEquals(Integer.bitCount(mask), Integer.bitCount(cw));
+    }
+  }
+
+  @Test
+  void testMirror() {
+    assertEquals(bit(SOUTH_WEST_BOTTOM), mirror(bit(NORTH_WEST_BOTTOM), BlockMirror.LEFT_RIGHT));
+    assertEquals(bit(NORTH_EAST_TOP), mirror(bit(NORTH_WEST_TOP), BlockMirror.FRONT_BACK));
+    for (int mask = 0; mask <= FULL_MASK; mask++) {
+      assertEquals(mask, mirror(mask, BlockMirror.NONE));
+      assertEquals(mask, mirror(mirror(mask, BlockMirror.LEFT_RIGHT), BlockMirror.LEFT_RIGHT));
+      assertEquals(mask, mirror(mirror(mask, BlockMirror.FRONT_BACK), BlockMirror.FRONT_BACK));
+    }
+  }
+}
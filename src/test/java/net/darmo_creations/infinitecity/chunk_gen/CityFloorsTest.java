@@ -0,0 +1,79 @@
+package net.darmo_creations.infinitecity.chunk_gen;
+
+import net.minecraft.util.math.*;
+import org.junit.jupiter.api.*;
+
+import java.util.*;
+
+import static net.darmo_creations.infinitecity.chunk_gen.InfiniteCityChunkGenerator.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CityFloorsTest {
+  private static final CityFloors FLOORS = new CityFloors(LayerPlan.DEFAULT, 1234);
+
+  @Test
+  void testFloorsAreSortedAndInWorld() {
+    for (int x = -512; x < 512; x += 37) {
+      for (int z = -512; z < 512; z += 41) {
+        int previousY = LAYER_1;
+        for (final CityFloors.Floor floor : FLOORS.getFloors(x, z)) {
+          assertTrue(floor.y() > previousY, floor.toString());
+          assertTrue(floor.y() < TOP, floor.toString());
+          previousY = floor.y();
+        }
+      }
+    }
+  }
+
+  @Test
+  void testUniversalFloorAlwaysPresent() {
+    for (int x = -512; x < 512; x += 37)
+      for (int z = -512; z < 512; z += 41)
+        assertTrue(FLOORS.getFloors(x, z).contains(new CityFloors.Floor(CityFloors.FloorType.RINGS_ROOF, CityFloors.UNIVERSAL_FLOOR_Y)));
+  }
+
+  @Test
+  void testBaseFloorIsAboveBaseLayer() {
+    for (int x = -512; x < 512; x += 37) {
+      for (int z = -512; z < 512; z += 41) {
+        final int y = FLOORS.getFloors(x, z).get(0).y();
+        assertTrue(y >= LAYER_3 && y <= LAYER_3 + 3, String.valueOf(y));
+      }
+    }
+  }
+
+  @Test
+  void testBuildingRoofOnlyOnBuildings() {
+    for (int chunkX = -64; chunkX < 64; chunkX++) {
+      for (int chunkZ = -64; chunkZ < 64; chunkZ++) {
+        final boolean hasRoof = FLOORS.getFloors(chunkX * 16 + 8, chunkZ * 16 + 8).stream()
+            .anyMatch(floor -> floor.type() == CityFloors.FloorType.BUILDING_ROOF);
+        if (hasRoof)
+          assertTrue(LayerPlan.DEFAULT.getBuildingsManager().shouldBeFilled(chunkX, chunkZ));
+      }
+    }
+  }
+
+  @Test
+  void testHolesLayerRoofNotUnderBigBlockEdges() {
+    final ChunkGridManager bigBlocksManager = LayerPlan.DEFAULT.getBigBlocksManager();
+    for (int chunkX = -64; chunkX < 64; chunkX++) {
+      for (int chunkZ = -64; chunkZ < 64; chunkZ++) {
+        final boolean hasRoof = FLOORS.getFloors(chunkX * 16 + 8, chunkZ * 16 + 8).stream()
+            .anyMatch(floor -> floor.type() == CityFloors.FloorType.HOLES_LAYER_ROOF);
+        if (hasRoof) {
+          assertTrue(bigBlocksManager.isAtEdge(chunkX, chunkZ).isEmpty());
+          assertTrue(bigBlocksManager.isPastEdge(chunkX, chunkZ).isEmpty());
+        }
+      }
+    }
+  }
+
+  @Test
+  void testFindNearestFloor() {
+    final Optional<BlockPos> pos = FLOORS.findNearestFloor(new BlockPos(100, CityFloors.UNIVERSAL_FLOOR_Y + 5, -300), 4, floor -> true);
+    assertTrue(pos.isPresent());
+    assertEquals(CityFloors.UNIVERSAL_FLOOR_Y, pos.get().getY());
+    assertEquals(new ChunkPos(new BlockPos(100, 0, -300)), new ChunkPos(pos.get()));
+  }
+}
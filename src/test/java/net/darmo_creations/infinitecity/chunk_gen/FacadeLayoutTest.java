@@ -0,0 +1,124 @@
+package net.darmo_creations.infinitecity.chunk_gen;
+
+import net.minecraft.*;
+import net.minecraft.block.*;
+import net.minecraft.util.math.*;
+import net.minecraft.world.*;
+import org.junit.jupiter.api.*;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FacadeLayoutTest {
+  private static final int TOP_Y = 30;
+  private static final int BOTTOM_Y = 0;
+  /**
+   * Y position of the window row the region is checked at.
+   */
+  private static final int ROW_Y = TOP_Y - 2;
+
+  @BeforeAll
+  static void bootstrap() {
+    SharedConstants.createGameVersion();
+    // Initializing the generator’s blocks registers this mod’s blocks, which must be done before registries are frozen
+    assertNotNull(ChunkGeneratorBlocks.LIGHT_BLOCK);
+    Bootstrap.initialize();
+  }
+
+  @Test
+  void testWindowsAreSeparated() {
+    for (int i = 0; i < FacadeLayout.WINDOWS.length; i++) {
+      final int window = FacadeLayout.WINDOWS[i];
+      assertTrue(window > 0 && window < 15, "window " + window + " is at the end of a side");
+      if (i > 0)
+        assertTrue(window - FacadeLayout.WINDOWS[i - 1] > 1, "window " + window + " is next to another");
+    }
+  }
+
+  @Test
+  void testBlocksAroundPanesHaveFullSolidFaces() {
+    for (final BlockState blockState : List.of(ChunkGeneratorBlocks.TERRAIN, ChunkGeneratorBlocks.BLACK, ChunkGeneratorBlocks.LIGHT_BLOCK))
+      for (final Direction side : Direction.Type.HORIZONTAL)
+        assertTrue(blockState.isSideSolidFullSquare(EmptyBlockView.INSTANCE, BlockPos.ORIGIN, side), blockState + " " + side);
+  }
+
+  /**
+   * Place the blocks the generator writes in the 3×3 chunks around a facade chunk, at the height of a window row,
+   * and check that the connections of each pane match those the pane rules give for its actual neighbors,
+   * i.e. that no pane would get a shape update when the region is loaded.
+   */
+  @Test
+  void testLoadingFacadeRegionTriggersNoShapeUpdates() {
+    for (final var holeDirection : ChunkGridManager.HoleDirection.values()) {
+      final BlockState[][] blocks = new BlockState[48][48];
+      for (final BlockState[] row : blocks)
+        Arrays.fill(row, ChunkGeneratorBlocks.AIR);
+      for (int chunkX = -1; chunkX <= 1; chunkX++)
+        for (int chunkZ = -1; chunkZ <= 1; chunkZ++)
+          placeChunk(blocks, holeDirection, chunkX, chunkZ);
+
+      int panes = 0;
+      for (int x = 0; x < 48; x++) {
+        for (int z = 0; z < 48; z++) {
+          final BlockState pane = blocks[x][z];
+          if (!(pane.getBlock() instanceof PaneBlock paneBlock))
+            continue;
+          panes++;
+          for (final Direction side : Direction.Type.HORIZONTAL) {
+            final int neighborX = x + side.getOffsetX();
+            final int neighborZ = z + side.getOffsetZ();
+            // Blocks outside the loaded region do not cause updates
+            if (neighborX < 0 || neighborX >= 48 || neighborZ < 0 || neighborZ >= 48)
+              continue;
+            final BlockState neighbor = blocks[neighborX][neighborZ];
+            final boolean expected = paneBlock.connectsTo(neighbor,
+                neighbor.isSideSolidFullSquare(EmptyBlockView.INSTANCE, BlockPos.ORIGIN, side.getOpposite()));
+            assertEquals(expected, pane.get(HorizontalConnectingBlock.FACING_PROPERTIES.get(side)),
+                "pane at " + x + ", " + z + " facing " + holeDirection + " towards " + side + " of " + neighbor);
+          }
+        }
+      }
+      assertNotEquals(0, panes);
+    }
+  }
+
+  /**
+   * Place the blocks of a chunk around a facade chunk facing the given hole direction.
+   * Chunks on the hole’s side are empty between the facade’s edges, others are buildings filled with terrain
+   * that face the same holes as the center chunk, with their windows placed by {@link FacadeLayout#placeWindows}.
+   */
+  private static void placeChunk(BlockState[][] blocks, ChunkGridManager.HoleDirection centerDirection, int chunkX, int chunkZ) {
+    if (chunkX < 0 && centerDirection.faces(Direction.WEST) || chunkX > 0 && centerDirection.faces(Direction.EAST)
+        || chunkZ < 0 && centerDirection.faces(Direction.NORTH) || chunkZ > 0 && centerDirection.faces(Direction.SOUTH))
+      return;
+    final int startX = (chunkX + 1) * 16;
+    final int startZ = (chunkZ + 1) * 16;
+    for (int x = 0; x < 16; x++)
+      for (int z = 0; z < 16; z++)
+        blocks[startX + x][startZ + z] = ChunkGeneratorBlocks.TERRAIN;
+
+    // Chunks next to the center one only face the holes along the side they share with it
+    final Set<Direction> faced = new HashSet<>();
+    if (chunkZ == 0) {
+      if (centerDirection.faces(Direction.NORTH)) faced.add(Direction.NORTH);
+      if (centerDirection.faces(Direction.SOUTH)) faced.add(Direction.SOUTH);
+    }
+    if (chunkX == 0) {
+      if (centerDirection.faces(Direction.WEST)) faced.add(Direction.WEST);
+      if (centerDirection.faces(Direction.EAST)) faced.add(Direction.EAST);
+    }
+    if (faced.isEmpty())
+      return;
+    final var holeDirection = Arrays.stream(ChunkGridManager.HoleDirection.values())
+        .filter(d -> Direction.Type.HORIZONTAL.stream().allMatch(side -> d.faces(side) == faced.contains(side)))
+        .findFirst().orElseThrow();
+    FacadeLayout.placeWindows(holeDirection, TOP_Y, BOTTOM_Y,
+        // Both back blocks the generator picks from
+        (x, y, z) -> (x + z) % 2 == 0 ? ChunkGeneratorBlocks.LIGHT_BLOCK : ChunkGeneratorBlocks.BLACK,
+        (x, y, z, blockState) -> {
+          if (y == ROW_Y)
+            blocks[startX + x][startZ + z] = blockState;
+        });
+  }
+}
@@ -0,0 +1,83 @@
+package net.darmo_creations.infinitecity.chunk_gen;
+
+import com.mojang.serialization.*;
+import net.minecraft.util.math.*;
+import org.junit.jupiter.api.*;
+
+import static net.darmo_creations.infinitecity.chunk_gen.InfiniteCityChunkGenerator.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LayerPlanTest {
+  @Test
+  void testDefaultLayersY() {
+    final int[] expected = {LAYER_1, LAYER_2, LAYER_3, -1830, -1430, -1230, -829, -701, -289, -161, 39, TOP};
+    for (int layer = 1; layer <= LayerPlan.LAYERS_COUNT + 1; layer++)
+      assertEquals(expected[layer - 1], LayerPlan.DEFAULT.getLayerY(layer), "layer " + layer);
+  }
+
+  @Test
+  void testSectionsAreWithinLayers() {
+    for (int layer = 1; layer <= LayerPlan.LAYERS_COUNT; layer++) {
+      final int from = LayerPlan.DEFAULT.getFromSection(layer);
+      final int to = LayerPlan.DEFAULT.getToSection(layer);
+      assertTrue(from <= to);
+      if (from < to) {
+        assertTrue(ChunkSectionPos.getBlockCoord(from) >= LayerPlan.DEFAULT.getLayerY(layer));
+        assertTrue(ChunkSectionPos.getBlockCoord(to) <= LayerPlan.DEFAULT.getLayerY(layer + 1));
+      }
+    }
+  }
+
+  @Test
+  void testSolidRangesAreSortedAndMerged() {
+    for (int chunkX = -40; chunkX < 40; chunkX++)
+      for (int chunkZ = -40; chunkZ < 40; chunkZ++) {
+        final int[] ranges = LayerPlan.DEFAULT.getSolidRanges(chunkX, chunkZ);
+        assertEquals(0, ranges.length % 2);
+        assertEquals(LAYER_2, ranges[0]);
+        for (int i = 1; i < ranges.length; i++)
+          assertTrue(ranges[i - 1] < ranges[i], "ranges must be strictly increasing");
+        assertTrue(ranges[ranges.length - 1] <= TOP);
+      }
+  }
+
+  @Test
+  void testSolidRangesContainBuildings() {
+    final int bottomY = LayerPlan.DEFAULT.getLayerY(6);
+    final int topY = LayerPlan.DEFAULT.getLayerY(7);
+    for (int chunkX = 0; chunkX < 40; chunkX++) {
+      final int[] ranges = LayerPlan.DEFAULT.getSolidRanges(chunkX, 0);
+      boolean contained = false;
+      for (int i = 0; i < ranges.length; i += 2)
+        contained |= ranges[i] <= bottomY && topY <= ranges[i + 1];
+      assertEquals(LayerPlan.DEFAULT.getBuildingsManager().shouldBeFilled(chunkX, 0), contained, "chunk " + chunkX);
+    }
+  }
+
+  @Test
+  void testSettingsRoundTrip() {
+    final var settings = InfiniteCityChunkGeneratorConfig.LayerSettings.DEFAULT;
+    final var encoded = InfiniteCityChunkGeneratorConfig.LayerSettings.CODEC.encodeStart(JsonOps.INSTANCE, settings);
+    final var decoded = encoded.flatMap(json -> InfiniteCityChunkGeneratorConfig.LayerSettings.CODEC.parse(JsonOps.INSTANCE, json));
+    assertEquals(settings, decoded.result().orElseThrow());
+  }
+
+  @Test
+  void testTooHighLayersAreRejected() {
+    final var settings = InfiniteCityChunkGeneratorConfig.LayerSettings.DEFAULT;
+    final var tooHigh = new InfiniteCityChunkGeneratorConfig.LayerSettings(
+        2000, settings.ringsLayerHeight(), settings.ringsRoofSpaceHeight(), settings.holesLayerHeight(),
+        settings.rings(), settings.buildings(), settings.columns(), settings.holes(), settings.bigBlocks());
+    assertTrue(InfiniteCityChunkGeneratorConfig.LayerSettings.CODEC.encodeStart(JsonOps.INSTANCE, tooHigh).error().isPresent());
+  }
+
+  @Test
+  void testRingsLayerThinnerThanItsRoofIsRejected() {
+    final var settings = InfiniteCityChunkGeneratorConfig.LayerSettings.DEFAULT;
+    final var tooThin = new InfiniteCityChunkGeneratorConfig.LayerSettings(
+        settings.bottomSpaceHeight(), InfiniteCityChunkGenerator.RINGS_ROOF_HEIGHT - 1, settings.ringsRoofSpaceHeight(),
+        settings.holesLayerHeight(), settings.rings(), settings.buildings(), settings.columns(), settings.holes(),
+        settings.bigBlocks());
+    assertTrue(InfiniteCityChunkGeneratorConfig.LayerSettings.CODEC.encodeStart(JsonOps.INSTANCE, tooThin).error().isPresent());
+  }
+}
@@ -0,0 +1,91 @@
+package net.darmo_creations.infinitecity.server;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChunkTemplateStoreTest {
+  private static final long KEY = 0x1234_5678_9abc_def0L;
+  private static final long PORTIONS_HASH = 42;
+
+  @TempDir
+  Path directory;
+
+  private Path getPath() {
+    return this.directory.resolve("templates.bin");
+  }
+
+  @Test
+  void testTemplatesAreReadBack() throws IOException {
+    try (final ChunkTemplateStore store = ChunkTemplateStore.open(this.getPath(), KEY, PORTIONS_HASH)) {
+      store.writeTemplate(1, data(1, 2, 3));
+      store.writeTemplate(2, data(4, 5));
+      assertEquals(data(1, 2, 3), store.readTemplate(1));
+      assertEquals(data(4, 5), store.readTemplate(2));
+      assertNull(store.readTemplate(3));
+    }
+  }
+
+  @Test
+  void testTemplatesAreKeptWhenReopened() throws IOException {
+    try (final ChunkTemplateStore store = ChunkTemplateStore.open(this.getPath(), KEY, PORTIONS_HASH)) {
+      store.writeTemplate(1, data(1, 2, 3));
+      store.writeTemplate(2, data(4, 5));
+    }
+    try (final ChunkTemplateStore store = ChunkTemplateStore.open(this.getPath(), KEY, PORTIONS_HASH)) {
+      assertEquals(data(1, 2, 3), store.readTemplate(1));
+      assertEquals(data(4, 5), store.readTemplate(2));
+      assertEquals(2, store.getStats().templates());
+    }
+  }
+
+  @Test
+  void testStoreIsClearedWhenKeyDiffers() throws IOException {
+    try (final ChunkTemplateStore store = ChunkTemplateStore.open(this.getPath(), KEY, PORTIONS_HASH)) {
+      store.writeTemplate(1, data(1, 2, 3));
+    }
+    try (final ChunkTemplateStore store = ChunkTemplateStore.open(this.getPath(), KEY + 1, PORTIONS_HASH)) {
+      assertNull(store.readTemplate(1));
+      assertEquals(0, store.getStats().templates());
+    }
+  }
+
+  @Test
+  void testIncompleteTemplateIsDiscarded() throws IOException {
+    try (final ChunkTemplateStore store = ChunkTemplateStore.open(this.getPath(), KEY, PORTIONS_HASH)) {
+      store.writeTemplate(1, data(1, 2, 3));
+      store.writeTemplate(2, data(4, 5, 6, 7));
+    }
+    final long completeSize;
+    try (final FileChannel channel = FileChannel.open(this.getPath(), StandardOpenOption.WRITE)) {
+      completeSize = channel.size() - 2;
+      // Cut the last template as if the server stopped while it was being written
+      channel.truncate(completeSize);
+    }
+    try (final ChunkTemplateStore store = ChunkTemplateStore.open(this.getPath(), KEY, PORTIONS_HASH)) {
+      assertEquals(data(1, 2, 3), store.readTemplate(1));
+      assertNull(store.readTemplate(2));
+      // New templates are appended right after the last complete one
+      store.writeTemplate(3, data(8));
+    }
+    try (final ChunkTemplateStore store = ChunkTemplateStore.open(this.getPath(), KEY, PORTIONS_HASH)) {
+      assertEquals(data(1, 2, 3), store.readTemplate(1));
+      assertNull(store.readTemplate(2));
+      assertEquals(data(8), store.readTemplate(3));
+    }
+    assertTrue(Files.size(this.getPath()) < completeSize);
+  }
+
+  private static ByteBuffer data(int... bytes) {
+    final ByteBuffer buffer = ByteBuffer.allocate(bytes.length);
+    for (final int b : bytes)
+      buffer.put((byte) b);
+    return buffer.flip();
+  }
+}
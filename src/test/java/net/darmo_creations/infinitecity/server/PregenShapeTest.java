@@ -0,0 +1,68 @@
+package net.darmo_creations.infinitecity.server;
+
+import net.minecraft.util.math.*;
+import org.junit.jupiter.api.*;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PregenShapeTest {
+  private static final ChunkPos CENTER = new ChunkPos(-3, 5);
+  private static final int RADIUS = 4;
+
+  @Test
+  void testChunksCount() {
+    assertEquals(1, PregenShape.getChunksCount(0));
+    assertEquals(9, PregenShape.getChunksCount(1));
+    assertEquals(81, PregenShape.getChunksCount(RADIUS));
+  }
+
+  @Test
+  void testSquareCoversArea() {
+    assertCoversArea(PregenShape.SQUARE);
+  }
+
+  @Test
+  void testSpiralCoversArea() {
+    assertCoversArea(PregenShape.SPIRAL);
+  }
+
+  @Test
+  void testSquareStartsAtNorthWestCorner() {
+    assertEquals(new ChunkPos(CENTER.x - RADIUS, CENTER.z - RADIUS), PregenShape.SQUARE.getChunk(CENTER, RADIUS, 0));
+  }
+
+  @Test
+  void testSpiralStartsAtCenter() {
+    assertEquals(CENTER, PregenShape.SPIRAL.getChunk(CENTER, RADIUS, 0));
+  }
+
+  @Test
+  void testSpiralGoesOutwards() {
+    int previousRing = 0;
+    for (int i = 0; i < PregenShape.getChunksCount(RADIUS); i++) {
+      final ChunkPos pos = PregenShape.SPIRAL.getChunk(CENTER, RADIUS, i);
+      final int ring = Math.max(Math.abs(pos.x - CENTER.x), Math.abs(pos.z - CENTER.z));
+      assertTrue(ring >= previousRing);
+      previousRing = ring;
+    }
+  }
+
+  @Test
+  void testByName() {
+    for (final PregenShape shape : PregenShape.values())
+      assertSame(shape, PregenShape.byName(shape.asString()));
+    assertNull(PregenShape.byName("circle"));
+  }
+
+  private static void assertCoversArea(PregenShape shape) {
+    final Set<ChunkPos> positions = new HashSet<>();
+    for (int i = 0; i < PregenShape.getChunksCount(RADIUS); i++) {
+      final ChunkPos pos = shape.getChunk(CENTER, RADIUS, i);
+      assertTrue(Math.abs(pos.x - CENTER.x) <= RADIUS && Math.abs(pos.z - CENTER.z) <= RADIUS, pos.toString());
+      assertTrue(positions.add(pos), "duplicate " + pos);
+    }
+    assertEquals(PregenShape.getChunksCount(RADIUS), positions.size());
+  }
+}